@@ -0,0 +1,397 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.common;
+
+import com.dalcomlab.sattang.concurrent.VirtualThreads;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The pool of {@link ByteBuffer}s which are sliced from large slabs.
+ * <p>
+ * The buffers are grouped by size class(powers of two from {@link #MIN_BUFFER_SIZE}
+ * to {@link #MAX_BUFFER_SIZE}), and the capacity of an acquired buffer is the
+ * smallest size class which is not less than the requested size. Each thread
+ * keeps a few released buffers of each size class, so that most buffers are
+ * acquired and released without contention. A buffer larger than the maximum
+ * size class is allocated without pooling.
+ * <p>
+ * Every acquired buffer must be released exactly once, and it must not be used
+ * after it is released. When the leak detection is enabled, the pool records
+ * where each buffer is acquired, and {@link #reportLeaks} prints the buffers
+ * which are not released yet.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class ByteBufferPool {
+    public static final int MIN_BUFFER_SIZE = 64;
+    public static final int MAX_BUFFER_SIZE = 64 * 1024;
+    private static final int SLAB_SIZE = 256 * 1024;
+    private static final int THREAD_CACHE_SIZE = 16;
+
+    private static final ByteBufferPool DIRECT = new ByteBufferPool(true);
+    private static final ByteBufferPool HEAP = new ByteBufferPool(false);
+
+    private final boolean direct;
+    private final SizeClass[] classes;
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> caches;
+    private final Map<ByteBuffer, Throwable> tracked = Collections.synchronizedMap(new IdentityHashMap<>());
+    private volatile boolean leakDetection = false;
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder releaseCount = new LongAdder();
+    private final LongAdder cacheHitCount = new LongAdder();
+    private final LongAdder unpooledCount = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * @param direct whether the buffers are direct buffers.
+     */
+    public ByteBufferPool(boolean direct) {
+        this.direct = direct;
+
+        List<SizeClass> classes = new ArrayList<>();
+        for (int size = MIN_BUFFER_SIZE; size <= MAX_BUFFER_SIZE; size <<= 1) {
+            classes.add(new SizeClass(size));
+        }
+        this.classes = classes.toArray(new SizeClass[0]);
+        this.caches = ThreadLocal.withInitial(() -> new ArrayDeque[this.classes.length]);
+    }
+
+    /**
+     * Returns the shared pool of the direct buffers, which are written to or
+     * read from the sockets without copying.
+     *
+     * @return
+     */
+    public static ByteBufferPool direct() {
+        return DIRECT;
+    }
+
+    /**
+     * Returns the shared pool of the heap buffers, which have the backing
+     * array.
+     *
+     * @return
+     */
+    public static ByteBufferPool heap() {
+        return HEAP;
+    }
+
+    /**
+     * Acquires a cleared buffer whose capacity is not less than the given size.
+     *
+     * @param size
+     * @return
+     */
+    public ByteBuffer acquire(int size) {
+        final SizeClass sizeClass = getSizeClass(size);
+        ByteBuffer buffer;
+        if (sizeClass == null) {
+            unpooledCount.increment();
+            buffer = allocate(size);
+        } else {
+            buffer = pollCache(sizeClass);
+            if (buffer != null) {
+                cacheHitCount.increment();
+            } else {
+                buffer = sizeClass.poll();
+            }
+        }
+
+        acquireCount.increment();
+        if (leakDetection) {
+            tracked.put(buffer, new Throwable("the buffer of " + buffer.capacity() + " bytes is acquired here."));
+        }
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Releases the buffer which is acquired from this pool.
+     *
+     * @param buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        if (leakDetection && tracked.remove(buffer) == null) {
+            new IllegalStateException("the buffer is released twice or is not acquired from this pool.").printStackTrace();
+            return;
+        }
+
+        releaseCount.increment();
+        final SizeClass sizeClass = getSizeClass(buffer.capacity());
+        if (sizeClass == null || sizeClass.size != buffer.capacity() || buffer.isDirect() != direct) {
+            return;
+        }
+
+        if (!offerCache(sizeClass, buffer)) {
+            sizeClass.offer(buffer);
+        }
+    }
+
+    /**
+     * Enables or disables the leak detection. The buffers acquired while the
+     * leak detection is disabled are not tracked.
+     *
+     * @param leakDetection
+     */
+    public void setLeakDetection(boolean leakDetection) {
+        if (!leakDetection) {
+            tracked.clear();
+        }
+        this.leakDetection = leakDetection;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isLeakDetection() {
+        return leakDetection;
+    }
+
+    /**
+     * Returns where the buffers which are not released yet are acquired. It
+     * is available only while the leak detection is enabled.
+     *
+     * @return
+     */
+    public List<Throwable> getLeaks() {
+        synchronized (tracked) {
+            return new ArrayList<>(tracked.values());
+        }
+    }
+
+    /**
+     * Prints where the buffers which are not released yet are acquired.
+     */
+    public void reportLeaks() {
+        for (Throwable leak : getLeaks()) {
+            leak.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the number of the acquired buffers.
+     *
+     * @return
+     */
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * Returns the number of the released buffers.
+     *
+     * @return
+     */
+    public long getReleaseCount() {
+        return releaseCount.sum();
+    }
+
+    /**
+     * Returns the number of the buffers which are acquired but not released.
+     *
+     * @return
+     */
+    public long getOutstandingCount() {
+        return acquireCount.sum() - releaseCount.sum();
+    }
+
+    /**
+     * Returns the number of the buffers which are acquired from the cache of
+     * the current thread.
+     *
+     * @return
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.sum();
+    }
+
+    /**
+     * Returns the number of the buffers which are larger than the maximum size
+     * class and are allocated without pooling.
+     *
+     * @return
+     */
+    public long getUnpooledCount() {
+        return unpooledCount.sum();
+    }
+
+    /**
+     * Returns the total size in bytes of the slabs allocated by this pool.
+     *
+     * @return
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public String toString() {
+        return (direct ? "direct" : "heap") + " pool: acquired=" + getAcquireCount()
+                + ", released=" + getReleaseCount()
+                + ", outstanding=" + getOutstandingCount()
+                + ", cacheHits=" + getCacheHitCount()
+                + ", unpooled=" + getUnpooledCount()
+                + ", allocatedBytes=" + getAllocatedBytes();
+    }
+
+    /**
+     * @param size
+     * @return the size class, or <code>null</code> if the size is larger than
+     * the maximum size class.
+     */
+    private SizeClass getSizeClass(int size) {
+        if (size > MAX_BUFFER_SIZE) {
+            return null;
+        }
+
+        int index = 0;
+        while (classes[index].size < size) {
+            index++;
+        }
+        return classes[index];
+    }
+
+    /**
+     * @param sizeClass
+     * @return
+     */
+    private ByteBuffer pollCache(SizeClass sizeClass) {
+        final ArrayDeque<ByteBuffer> cache = getCache(sizeClass);
+        return cache != null ? cache.pollFirst() : null;
+    }
+
+    /**
+     * @param sizeClass
+     * @param buffer
+     * @return
+     */
+    private boolean offerCache(SizeClass sizeClass, ByteBuffer buffer) {
+        final ArrayDeque<ByteBuffer> cache = getCache(sizeClass);
+        if (cache == null || cache.size() >= THREAD_CACHE_SIZE) {
+            return false;
+        }
+        cache.offerFirst(buffer);
+        return true;
+    }
+
+    /**
+     * Returns the cache of the current thread. The virtual threads do not
+     * have the cache, because they are not reused.
+     *
+     * @param sizeClass
+     * @return
+     */
+    private ArrayDeque<ByteBuffer> getCache(SizeClass sizeClass) {
+        if (VirtualThreads.isVirtual(Thread.currentThread())) {
+            return null;
+        }
+
+        final ArrayDeque<ByteBuffer>[] caches = this.caches.get();
+        ArrayDeque<ByteBuffer> cache = caches[sizeClass.index];
+        if (cache == null) {
+            cache = new ArrayDeque<>(THREAD_CACHE_SIZE);
+            caches[sizeClass.index] = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * @param size
+     * @return
+     */
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * The buffers of the same size.
+     */
+    private final class SizeClass {
+        private final int size;
+        private final int index;
+        private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+        /**
+         * @param size
+         */
+        SizeClass(int size) {
+            this.size = size;
+            this.index = Integer.numberOfTrailingZeros(size / MIN_BUFFER_SIZE);
+        }
+
+        /**
+         * @return
+         */
+        ByteBuffer poll() {
+            ByteBuffer buffer = buffers.poll();
+            if (buffer == null) {
+                buffer = allocateSlab();
+            }
+            return buffer;
+        }
+
+        /**
+         * @param buffer
+         */
+        void offer(ByteBuffer buffer) {
+            buffers.offer(buffer);
+        }
+
+        /**
+         * Allocates a new slab and slices it into the buffers. One of them is
+         * returned and the others are pooled.
+         *
+         * @return
+         */
+        private ByteBuffer allocateSlab() {
+            final int count = Math.max(SLAB_SIZE / size, 4);
+            final ByteBuffer slab = allocate(size * count);
+            allocatedBytes.add(slab.capacity());
+
+            ByteBuffer first = null;
+            for (int i = 0; i < count; i++) {
+                slab.limit((i + 1) * size);
+                slab.position(i * size);
+                ByteBuffer buffer = slab.slice();
+                if (first == null) {
+                    first = buffer;
+                } else {
+                    buffers.offer(buffer);
+                }
+            }
+            return first;
+        }
+    }
+}
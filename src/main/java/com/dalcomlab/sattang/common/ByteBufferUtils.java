@@ -33,7 +33,14 @@ public class ByteBufferUtils {
         }
 
         int consume = Math.min(from.remaining(), to.remaining());
-        to.put(from.array(), from.arrayOffset() + from.position(), consume);
+        if (from.hasArray()) {
+            to.put(from.array(), from.arrayOffset() + from.position(), consume);
+        } else {
+            // the direct buffer does not have the backing array.
+            ByteBuffer slice = from.duplicate();
+            slice.limit(slice.position() + consume);
+            to.put(slice);
+        }
         from.position(from.position() + consume);
         return consume;
     }
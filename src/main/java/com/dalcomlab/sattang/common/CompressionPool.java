@@ -0,0 +1,387 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.common;
+
+import com.dalcomlab.sattang.concurrent.VirtualThreads;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The pool of {@link Deflater}s and {@link Inflater}s.
+ * <p>
+ * A deflater or an inflater holds the native memory of zlib, which is freed
+ * only by the <code>end()</code> method or by the finalization. The pool reuses
+ * them instead, keyed by the compression level and the <code>nowrap</code>
+ * option. Each thread keeps a few released instances of each key, and the
+ * others are kept in the shared queue up to the maximum number. The instance
+ * released over the maximum number is ended.
+ * <p>
+ * A released instance is reset, and it must not be used after it is released.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class CompressionPool {
+    public static final int DEFAULT_MAX_POOLED = 64;
+    private static final int THREAD_CACHE_SIZE = 2;
+    private static final int LEVELS = Deflater.BEST_COMPRESSION - Deflater.DEFAULT_COMPRESSION + 1;
+    private static final int DEFLATER_KEYS = LEVELS * 2;
+    private static final int KEYS = DEFLATER_KEYS + 2;
+
+    private static final CompressionPool SHARED = new CompressionPool(DEFAULT_MAX_POOLED);
+
+    private final int maxPooled;
+    private final Pool[] pools = new Pool[KEYS];
+    private final ThreadLocal<ArrayDeque<Object>[]> caches;
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder releaseCount = new LongAdder();
+    private final LongAdder createCount = new LongAdder();
+    private final LongAdder cacheHitCount = new LongAdder();
+    private final LongAdder discardCount = new LongAdder();
+
+    /**
+     * @param maxPooled the maximum number of the instances of each key in the
+     *                  shared queue.
+     */
+    public CompressionPool(int maxPooled) {
+        this.maxPooled = maxPooled;
+        for (int i = 0; i < KEYS; i++) {
+            pools[i] = new Pool();
+        }
+        this.caches = ThreadLocal.withInitial(() -> new ArrayDeque[KEYS]);
+    }
+
+    /**
+     * Returns the pool shared by the compression sites of the server.
+     *
+     * @return
+     */
+    public static CompressionPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Acquires a deflater of the given level and option.
+     *
+     * @param level  the compression level from -1 to 9.
+     * @param nowrap <code>true</code> for the raw deflate stream which is used by
+     *               the gzip format.
+     * @return
+     */
+    public Deflater acquireDeflater(int level, boolean nowrap) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level : " + level);
+        }
+
+        final int key = (level - Deflater.DEFAULT_COMPRESSION) * 2 + (nowrap ? 1 : 0);
+        Deflater deflater = (Deflater) poll(key);
+        if (deflater == null) {
+            createCount.increment();
+            deflater = new PooledDeflater(level, nowrap, key);
+        }
+        return deflater;
+    }
+
+    /**
+     * Releases the deflater which is acquired from this pool. The deflater
+     * which is not acquired from this pool is ended.
+     *
+     * @param deflater
+     */
+    public void releaseDeflater(Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+
+        if (!(deflater instanceof PooledDeflater)) {
+            deflater.end();
+            return;
+        }
+
+        deflater.reset();
+        if (!offer(((PooledDeflater) deflater).key, deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Acquires an inflater of the given option.
+     *
+     * @param nowrap <code>true</code> for the raw deflate stream which is used by
+     *               the gzip format.
+     * @return
+     */
+    public Inflater acquireInflater(boolean nowrap) {
+        final int key = DEFLATER_KEYS + (nowrap ? 1 : 0);
+        Inflater inflater = (Inflater) poll(key);
+        if (inflater == null) {
+            createCount.increment();
+            inflater = new PooledInflater(nowrap, key);
+        }
+        return inflater;
+    }
+
+    /**
+     * Releases the inflater which is acquired from this pool. The inflater
+     * which is not acquired from this pool is ended.
+     *
+     * @param inflater
+     */
+    public void releaseInflater(Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+
+        if (!(inflater instanceof PooledInflater)) {
+            inflater.end();
+            return;
+        }
+
+        inflater.reset();
+        if (!offer(((PooledInflater) inflater).key, inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Ends the instances in the shared queue. The instances in the caches of
+     * the threads are ended when the threads die.
+     */
+    public void clear() {
+        for (Pool pool : pools) {
+            Object instance;
+            while ((instance = pool.poll()) != null) {
+                end(instance);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the acquired instances.
+     *
+     * @return
+     */
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * Returns the number of the released instances.
+     *
+     * @return
+     */
+    public long getReleaseCount() {
+        return releaseCount.sum();
+    }
+
+    /**
+     * Returns the number of the instances which are acquired but not released.
+     *
+     * @return
+     */
+    public long getOutstandingCount() {
+        return acquireCount.sum() - releaseCount.sum();
+    }
+
+    /**
+     * Returns the number of the instances which are created because the pool
+     * is empty.
+     *
+     * @return
+     */
+    public long getCreateCount() {
+        return createCount.sum();
+    }
+
+    /**
+     * Returns the number of the instances which are acquired from the cache of
+     * the current thread.
+     *
+     * @return
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.sum();
+    }
+
+    /**
+     * Returns the number of the released instances which are ended because the
+     * pool is full.
+     *
+     * @return
+     */
+    public long getDiscardCount() {
+        return discardCount.sum();
+    }
+
+    /**
+     * Returns the number of the instances in the shared queue.
+     *
+     * @return
+     */
+    public int getPooledCount() {
+        int count = 0;
+        for (Pool pool : pools) {
+            count += pool.size.get();
+        }
+        return count;
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public String toString() {
+        return "compression pool: acquired=" + getAcquireCount()
+                + ", released=" + getReleaseCount()
+                + ", outstanding=" + getOutstandingCount()
+                + ", created=" + getCreateCount()
+                + ", cacheHits=" + getCacheHitCount()
+                + ", discarded=" + getDiscardCount()
+                + ", pooled=" + getPooledCount();
+    }
+
+    /**
+     * @param key
+     * @return
+     */
+    private Object poll(int key) {
+        acquireCount.increment();
+        final ArrayDeque<Object> cache = getCache(key);
+        if (cache != null) {
+            Object instance = cache.pollFirst();
+            if (instance != null) {
+                cacheHitCount.increment();
+                return instance;
+            }
+        }
+        return pools[key].poll();
+    }
+
+    /**
+     * @param key
+     * @param instance
+     * @return <code>false</code> if the pool is full.
+     */
+    private boolean offer(int key, Object instance) {
+        releaseCount.increment();
+        final ArrayDeque<Object> cache = getCache(key);
+        if (cache != null && cache.size() < THREAD_CACHE_SIZE) {
+            cache.offerFirst(instance);
+            return true;
+        }
+
+        if (pools[key].offer(instance, maxPooled)) {
+            return true;
+        }
+        discardCount.increment();
+        return false;
+    }
+
+    /**
+     * Returns the cache of the current thread. The virtual threads do not
+     * have the cache, because they are not reused.
+     *
+     * @param key
+     * @return
+     */
+    private ArrayDeque<Object> getCache(int key) {
+        if (VirtualThreads.isVirtual(Thread.currentThread())) {
+            return null;
+        }
+
+        final ArrayDeque<Object>[] caches = this.caches.get();
+        ArrayDeque<Object> cache = caches[key];
+        if (cache == null) {
+            cache = new ArrayDeque<>(THREAD_CACHE_SIZE);
+            caches[key] = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * @param instance
+     */
+    private static void end(Object instance) {
+        if (instance instanceof Deflater) {
+            ((Deflater) instance).end();
+        } else if (instance instanceof Inflater) {
+            ((Inflater) instance).end();
+        }
+    }
+
+    /**
+     * The shared queue of the instances of the same key.
+     */
+    private static final class Pool {
+        private final Queue<Object> instances = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * @return
+         */
+        Object poll() {
+            Object instance = instances.poll();
+            if (instance != null) {
+                size.decrementAndGet();
+            }
+            return instance;
+        }
+
+        /**
+         * @param instance
+         * @param max
+         * @return <code>false</code> if the queue is full.
+         */
+        boolean offer(Object instance, int max) {
+            if (size.incrementAndGet() > max) {
+                size.decrementAndGet();
+                return false;
+            }
+            instances.offer(instance);
+            return true;
+        }
+    }
+
+    /**
+     * The deflater which remembers its key.
+     */
+    private static final class PooledDeflater extends Deflater {
+        private final int key;
+
+        PooledDeflater(int level, boolean nowrap, int key) {
+            super(level, nowrap);
+            this.key = key;
+        }
+    }
+
+    /**
+     * The inflater which remembers its key.
+     */
+    private static final class PooledInflater extends Inflater {
+        private final int key;
+
+        PooledInflater(boolean nowrap, int key) {
+            super(nowrap);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.common;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The hashed wheel timer which schedules and cancels a task in O(1).
+ * <p>
+ * Any thread can schedule or cancel a task, but only the owner thread
+ * advances the wheel by calling the {@link #advance} method and the expired
+ * tasks are executed on that thread. So the tasks must not block. The timer
+ * does not create its own thread, and the owner(usually an event loop) must
+ * call the {@link #advance} method at least every tick while the timer is
+ * not empty.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class HashedWheelTimer {
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final Deadline[] wheel;
+    private final int mask;
+    private final Queue<Deadline> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Deadline> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final long startTime;
+    private long tick = 0;
+
+    /**
+     *
+     */
+    public HashedWheelTimer() {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @param tickDuration the duration between the ticks.
+     * @param unit
+     * @param wheelSize    the number of the buckets, which is rounded up to a power of two.
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("the tick duration must be greater than 0.");
+        }
+
+        int length = 1;
+        while (length < wheelSize) {
+            length <<= 1;
+        }
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Deadline[length];
+        this.mask = length - 1;
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Schedules the task which is executed once after the given delay.
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @return the {@link Deadline} which can cancel the task.
+     */
+    public Deadline schedule(Runnable task, long delay, TimeUnit unit) {
+        final Deadline deadline = new Deadline(this, task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)));
+        size.incrementAndGet();
+        pending.offer(deadline);
+        return deadline;
+    }
+
+    /**
+     * Returns the number of the tasks which are neither expired nor cancelled.
+     *
+     * @return
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return
+     */
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Returns the duration between the ticks.
+     *
+     * @param unit
+     * @return
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Advances the wheel to the current time and executes the expired tasks.
+     * This method must be called only by the owner thread.
+     *
+     * @return the number of the expired tasks.
+     */
+    public int advance() {
+        return advance(System.nanoTime());
+    }
+
+    /**
+     * Advances the wheel to the given time and executes the expired tasks.
+     * This method must be called only by the owner thread.
+     *
+     * @param now the current time in nanoseconds({@link System#nanoTime}).
+     * @return the number of the expired tasks.
+     */
+    public int advance(long now) {
+        removeCancelled();
+
+        final long current = (now - startTime) / tickNanos;
+        if (size.get() == 0) {
+            tick = Math.max(tick, current + 1);
+            return 0;
+        }
+
+        transferPending();
+
+        int expired = 0;
+        while (tick <= current) {
+            expired += expireBucket((int) (tick & mask));
+            tick++;
+        }
+        return expired;
+    }
+
+    /**
+     * Moves the scheduled tasks into the buckets.
+     */
+    private void transferPending() {
+        Deadline deadline;
+        while ((deadline = pending.poll()) != null) {
+            if (deadline.isCancelled()) {
+                continue;
+            }
+
+            // rounds up the deadline, so the task is never expired before it.
+            final long target = Math.max((deadline.deadline - startTime + tickNanos - 1) / tickNanos, tick);
+            deadline.rounds = (target - tick) / wheel.length;
+            link(deadline, (int) (target & mask));
+        }
+    }
+
+    /**
+     * Removes the cancelled tasks from the buckets.
+     */
+    private void removeCancelled() {
+        Deadline deadline;
+        while ((deadline = cancelled.poll()) != null) {
+            unlink(deadline);
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param index
+     * @return
+     */
+    private int expireBucket(int index) {
+        int expired = 0;
+        Deadline deadline = wheel[index];
+        while (deadline != null) {
+            final Deadline next = deadline.next;
+            if (deadline.isCancelled()) {
+                // the size is decreased when the cancelled queue is drained.
+                unlink(deadline);
+            } else if (deadline.rounds <= 0) {
+                unlink(deadline);
+                if (deadline.expire()) {
+                    size.decrementAndGet();
+                    expired++;
+                }
+            } else {
+                deadline.rounds--;
+            }
+            deadline = next;
+        }
+        return expired;
+    }
+
+    /**
+     * @param deadline
+     * @param index
+     */
+    private void link(Deadline deadline, int index) {
+        final Deadline head = wheel[index];
+        deadline.bucket = index;
+        deadline.prev = null;
+        deadline.next = head;
+        if (head != null) {
+            head.prev = deadline;
+        }
+        wheel[index] = deadline;
+    }
+
+    /**
+     * @param deadline
+     */
+    private void unlink(Deadline deadline) {
+        if (deadline.bucket < 0) {
+            return;
+        }
+
+        if (deadline.prev != null) {
+            deadline.prev.next = deadline.next;
+        } else {
+            wheel[deadline.bucket] = deadline.next;
+        }
+
+        if (deadline.next != null) {
+            deadline.next.prev = deadline.prev;
+        }
+
+        deadline.bucket = -1;
+        deadline.prev = null;
+        deadline.next = null;
+    }
+
+    /**
+     * The handle of a scheduled task.
+     */
+    public static final class Deadline {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Deadline> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Deadline.class, "state");
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = INIT;
+
+        // accessed only by the owner thread of the timer.
+        private long rounds;
+        private int bucket = -1;
+        private Deadline prev;
+        private Deadline next;
+
+        /**
+         * @param timer
+         * @param task
+         * @param deadline
+         */
+        private Deadline(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task. The cancelled task is removed from the timer on
+         * the next tick.
+         *
+         * @return <code>true</code> if the task is cancelled, or <code>false</code>
+         * if the task is already expired or cancelled.
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+                return false;
+            }
+            timer.cancelled.offer(this);
+            return true;
+        }
+
+        /**
+         * @return
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * @return
+         */
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        /**
+         * @return
+         */
+        private boolean expire() {
+            if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+                return false;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+            return true;
+        }
+    }
+}
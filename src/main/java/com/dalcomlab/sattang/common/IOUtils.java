@@ -16,6 +16,7 @@
 package com.dalcomlab.sattang.common;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -61,6 +62,26 @@ public class IOUtils {
         }
     }
 
+    /**
+     * Skips the given number of bytes of the input stream.
+     *
+     * @param in
+     * @param bytes
+     * @throws IOException if the stream ends before the bytes are skipped.
+     */
+    public static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("the stream ends before " + bytes + " bytes are skipped.");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
     public static void copy(InputStream in, OutputStream out, long bytes) throws IOException {
         byte buffer[] = new byte[BUFFERSIZE];
         copyLarge(in, out, bytes, buffer);
@@ -0,0 +1,133 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The bounded lock-free queue of many producers and a single consumer, which
+ * is backed by a ring of the power of two slots. Unlike the linked queues, an
+ * offer does not allocate a node.
+ * <p>
+ * A producer claims a slot by increasing the producer index, and publishes
+ * the element to the slot. The consumer does not wait for the publication of
+ * the claimed slot, so {@link #poll} may return <code>null</code> while this
+ * queue is not empty; the caller polls again after the producer signals it.
+ * The elements are polled in the order of the claims. Only one thread at a
+ * time may call the {@link #poll} method.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class MpscArrayQueue<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+    private volatile long producerLimit;
+
+    /**
+     * Creates the queue which holds the given number of the elements at
+     * least, rounded up to the power of two.
+     *
+     * @param capacity
+     */
+    public MpscArrayQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("the capacity must be between 1 and 2^30.");
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.producerLimit = size;
+    }
+
+    /**
+     * Inserts the element at the tail of this queue if it is not full.
+     *
+     * @param element
+     * @return <code>false</code> if this queue is full.
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index >= producerLimit) {
+                // reads the consumer index only when the cached limit is reached.
+                final long limit = consumerIndex.get() + mask + 1;
+                if (index >= limit) {
+                    return false;
+                }
+                producerLimit = limit;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+
+        buffer.lazySet((int) index & mask, element);
+        return true;
+    }
+
+    /**
+     * Removes and returns the head of this queue. It must be called by the
+     * single consumer.
+     *
+     * @return <code>null</code> if this queue is empty, or the head slot is
+     * claimed but its element is not published yet.
+     */
+    public E poll() {
+        final long index = consumerIndex.get();
+        final int offset = (int) index & mask;
+        final E element = buffer.get(offset);
+        if (element == null) {
+            return null;
+        }
+
+        buffer.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return element;
+    }
+
+    /**
+     * Determines whether this queue is empty.
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return consumerIndex.get() == producerIndex.get();
+    }
+
+    /**
+     * Returns the number of the elements in this queue.
+     *
+     * @return
+     */
+    public int size() {
+        final long size = producerIndex.get() - consumerIndex.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    /**
+     * Returns the number of the slots of this queue.
+     *
+     * @return
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.concurrent;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Provides the virtual threads of the running platform.
+ * <p>
+ * This class is the version for the platforms before Java 21, which do not
+ * support the virtual threads. The multi-release jar built on Java 21 contains
+ * the version which supports them.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Determines whether the running platform supports the virtual threads.
+     *
+     * @return
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Determines whether the given thread is a virtual thread.
+     *
+     * @param thread
+     * @return
+     */
+    public static boolean isVirtual(Thread thread) {
+        return false;
+    }
+
+    /**
+     * Creates the {@link ExecutorService} which starts a new virtual thread for
+     * each task.
+     *
+     * @param name the prefix of the name of the threads.
+     * @return
+     * @throws UnsupportedOperationException if the virtual threads are not supported.
+     */
+    public static ExecutorService newExecutor(String name) {
+        throw new UnsupportedOperationException("the virtual threads require Java 21 or later.");
+    }
+}
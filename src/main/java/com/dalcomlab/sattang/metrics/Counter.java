@@ -0,0 +1,56 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counter which only increases. The count is striped over the cells of
+ * {@link LongAdder}, so the threads which increment the same counter do not
+ * contend with each other.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds the given amount to the counter. A negative amount is ignored.
+     *
+     * @param amount
+     */
+    public void add(long amount) {
+        if (amount > 0) {
+            count.add(amount);
+        }
+    }
+
+    /**
+     * Returns the current count.
+     *
+     * @return
+     */
+    public long get() {
+        return count.sum();
+    }
+}
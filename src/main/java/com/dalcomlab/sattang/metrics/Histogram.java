@@ -0,0 +1,192 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The histogram of durations with the fixed bucket bounds. Recording a
+ * duration increments the {@link LongAdder} of its bucket without locking,
+ * and the percentiles are estimated from the bucket counts by the linear
+ * interpolation within the bucket.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class Histogram {
+    /**
+     * The default upper bounds of the buckets in seconds, from 100us to 10s.
+     */
+    public static final double[] DEFAULT_BOUNDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025,
+            0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     *
+     */
+    public Histogram() {
+        this(DEFAULT_BOUNDS);
+    }
+
+    /**
+     * @param bounds the upper bounds of the buckets in seconds, in ascending
+     *               order. The last bucket, which has no upper bound, is added.
+     */
+    public Histogram(double[] bounds) {
+        this.bounds = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            this.bounds[i] = (long) (bounds[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the given duration.
+     *
+     * @param duration
+     * @param unit
+     */
+    public void record(long duration, TimeUnit unit) {
+        long nanos = Math.max(unit.toNanos(duration), 0);
+        buckets[indexOf(nanos)].increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * Returns the number of the recorded durations.
+     *
+     * @return
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of the recorded durations in seconds.
+     *
+     * @return
+     */
+    public double getSum() {
+        return toSeconds(sum.sum());
+    }
+
+    /**
+     * Returns the number of the buckets, including the last bucket which has
+     * no upper bound.
+     *
+     * @return
+     */
+    public int getBucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * Returns the upper bound of the bucket in seconds, or
+     * {@link Double#POSITIVE_INFINITY} for the last bucket.
+     *
+     * @param index
+     * @return
+     */
+    public double getBound(int index) {
+        return index < bounds.length ? toSeconds(bounds[index]) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the number of the recorded durations in the given bucket, which
+     * are not counted in the lower buckets.
+     *
+     * @param index
+     * @return
+     */
+    public long getBucket(int index) {
+        return buckets[index].sum();
+    }
+
+    /**
+     * Returns the estimated duration in seconds at the given percentile. The
+     * durations in the last bucket are estimated as its lower bound.
+     *
+     * @param percentile between 0 and 100.
+     * @return
+     */
+    public double getPercentile(double percentile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        double rank = Math.min(Math.max(percentile, 0), 100) / 100 * total;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0 || cumulative + counts[i] < rank) {
+                cumulative += counts[i];
+                continue;
+            }
+
+            long lower = i == 0 ? 0 : bounds[i - 1];
+            if (i == bounds.length) {
+                return toSeconds(lower);
+            }
+            double fraction = (rank - cumulative) / counts[i];
+            return toSeconds(lower + (long) ((bounds[i] - lower) * fraction));
+        }
+        return toSeconds(bounds[bounds.length - 1]);
+    }
+
+    /**
+     * @param nanos
+     * @return
+     */
+    private int indexOf(long nanos) {
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bounds[middle] < nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param nanos
+     * @return
+     */
+    private static double toSeconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
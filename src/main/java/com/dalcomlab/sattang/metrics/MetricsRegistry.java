@@ -0,0 +1,304 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The registry of the metrics, which writes them in the Prometheus text
+ * exposition format.
+ * <p>
+ * A metric is identified by its name and its labels, which are given in pairs
+ * of the label name and the label value. The registration is synchronized, so
+ * the callers on the hot path keep the returned metric instead of looking it
+ * up for each update.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class MetricsRegistry {
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Returns the counter of the given name and labels. It is created if it
+     * is not registered yet.
+     *
+     * @param name
+     * @param help
+     * @param labels the pairs of the label name and the label value.
+     * @return
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, help, Type.COUNTER, labels, Counter::new, false);
+    }
+
+    /**
+     * Registers the given counter, which replaces the counter of the same
+     * name and labels.
+     *
+     * @param name
+     * @param help
+     * @param counter
+     * @param labels  the pairs of the label name and the label value.
+     */
+    public void counter(String name, String help, Counter counter, String... labels) {
+        register(name, help, Type.COUNTER, labels, () -> counter, true);
+    }
+
+    /**
+     * Returns the histogram of the given name and labels. It is created with
+     * the default bounds if it is not registered yet.
+     *
+     * @param name
+     * @param help
+     * @param labels the pairs of the label name and the label value.
+     * @return
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) register(name, help, Type.HISTOGRAM, labels, Histogram::new, false);
+    }
+
+    /**
+     * Registers the given histogram, which replaces the histogram of the same
+     * name and labels.
+     *
+     * @param name
+     * @param help
+     * @param histogram
+     * @param labels    the pairs of the label name and the label value.
+     */
+    public void histogram(String name, String help, Histogram histogram, String... labels) {
+        register(name, help, Type.HISTOGRAM, labels, () -> histogram, true);
+    }
+
+    /**
+     * Registers the gauge of which value is read from the given supplier when
+     * the metrics are written. It replaces the gauge of the same name and
+     * labels.
+     *
+     * @param name
+     * @param help
+     * @param supplier
+     * @param labels   the pairs of the label name and the label value.
+     */
+    public void gauge(String name, String help, LongSupplier supplier, String... labels) {
+        register(name, help, Type.GAUGE, labels, () -> supplier, true);
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @param out
+     */
+    public void write(StringBuilder out) {
+        final List<Family> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(families.size());
+            for (Family family : families.values()) {
+                snapshot.add(family.copy());
+            }
+        }
+
+        for (Family family : snapshot) {
+            family.write(out);
+        }
+    }
+
+    /**
+     * Returns the metrics in the Prometheus text exposition format.
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        write(out);
+        return out.toString();
+    }
+
+    /**
+     * @param name
+     * @param help
+     * @param type
+     * @param labels
+     * @param factory
+     * @param replace whether the registered metric is replaced with the new one.
+     * @return
+     */
+    private synchronized Object register(String name, String help, Type type, String[] labels, Supplier<Object> factory, boolean replace) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("the labels must be the pairs of the name and the value.");
+        }
+
+        Family family = families.get(name);
+        if (family == null) {
+            family = new Family(name, help, type);
+            families.put(name, family);
+        } else if (family.type != type) {
+            throw new IllegalArgumentException("the metric " + name + " is already registered as " + family.type + ".");
+        }
+
+        String key = formatLabels(labels);
+        Object metric = family.metrics.get(key);
+        if (metric == null || replace) {
+            metric = factory.get();
+            family.metrics.put(key, metric);
+        }
+        return metric;
+    }
+
+    /**
+     * Formats the labels as <code>name="value",...</code>.
+     *
+     * @param labels
+     * @return
+     */
+    private static String formatLabels(String[] labels) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"");
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+        return out.toString();
+    }
+
+    /**
+     * @param value
+     * @return
+     */
+    private static String formatDouble(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * The type of the metric.
+     */
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * The metrics of the same name, which have the different labels.
+     */
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> metrics = new LinkedHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        /**
+         * @return
+         */
+        Family copy() {
+            Family family = new Family(name, help, type);
+            family.metrics.putAll(metrics);
+            return family;
+        }
+
+        /**
+         * @param out
+         */
+        void write(StringBuilder out) {
+            if (help != null) {
+                out.append("# HELP ").append(name).append(' ')
+                        .append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            }
+            out.append("# TYPE ").append(name).append(' ').append(type.text).append('\n');
+
+            for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof Counter) {
+                    sample(out, name, labels, Long.toString(((Counter) metric).get()));
+                } else if (metric instanceof LongSupplier) {
+                    sample(out, name, labels, Long.toString(((LongSupplier) metric).getAsLong()));
+                } else if (metric instanceof Histogram) {
+                    write(out, labels, (Histogram) metric);
+                }
+            }
+        }
+
+        /**
+         * @param out
+         * @param labels
+         * @param histogram
+         */
+        private void write(StringBuilder out, String labels, Histogram histogram) {
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < histogram.getBucketCount(); i++) {
+                cumulative += histogram.getBucket(i);
+                String le = prefix + "le=\"" + formatDouble(histogram.getBound(i)) + "\"";
+                sample(out, name + "_bucket", le, Long.toString(cumulative));
+            }
+            sample(out, name + "_sum", labels, formatDouble(histogram.getSum()));
+            sample(out, name + "_count", labels, Long.toString(cumulative));
+        }
+
+        /**
+         * @param out
+         * @param name
+         * @param labels
+         * @param value
+         */
+        private static void sample(StringBuilder out, String name, String labels, String value) {
+            out.append(name);
+            if (!labels.isEmpty()) {
+                out.append('{').append(labels).append('}');
+            }
+            out.append(' ').append(value).append('\n');
+        }
+    }
+}
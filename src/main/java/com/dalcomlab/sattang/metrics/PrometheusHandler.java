@@ -0,0 +1,68 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.metrics;
+
+import com.dalcomlab.sattang.protocol.HttpRequest;
+import com.dalcomlab.sattang.protocol.HttpResponse;
+import com.dalcomlab.sattang.protocol.http.HttpHandler;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@link HttpHandler} which serves the metrics of the {@link MetricsRegistry}
+ * in the Prometheus text exposition format.
+ * <pre>
+ *     HttpServer server = new HttpServer("0.0.0.0", 8080);
+ *     server.handle("/metrics", new PrometheusHandler(server.getMetrics().getRegistry()));
+ * </pre>
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public class PrometheusHandler implements HttpHandler {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private final MetricsRegistry registry;
+
+    /**
+     * @param registry
+     */
+    public PrometheusHandler(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Writes the metrics of the registry.
+     *
+     * @param request
+     * @param response
+     */
+    @Override
+    public void handle(HttpRequest request, HttpResponse response) {
+        try {
+            byte[] body = registry.toString().getBytes(StandardCharsets.UTF_8);
+            response.addHeader(HttpHeader.CONTENT_TYPE, CONTENT_TYPE);
+            response.addHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length));
+            OutputStream output = response.getOutputStream();
+            if (output != null) {
+                output.write(body);
+                output.flush();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
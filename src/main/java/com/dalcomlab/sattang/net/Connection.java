@@ -52,6 +52,14 @@ public interface Connection extends Service, Reusable {
      */
     void close();
 
+    /**
+     * Asks the connection to close after the request which is being processed,
+     * when the transport is stopping gracefully. An idle connection is closed
+     * immediately.
+     */
+    default void drain() {
+    }
+
     /**
      * Returns the read buffer size in bytes.
      *
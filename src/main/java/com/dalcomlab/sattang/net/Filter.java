@@ -34,4 +34,13 @@ public interface Filter<T> {
     default T next(T next) {
         return null;
     }
+
+    /**
+     * Releases the resources, such as the pooled buffers, of this filter. It is
+     * called when the filter is removed, and the filter can not be used after
+     * it is released.
+     */
+    default void release() {
+
+    }
 }
\ No newline at end of file
@@ -120,7 +120,9 @@ public interface Filterable<T extends Filter<T>> {
         if (filters == null || filter == null) {
             return;
         }
-        filters.remove(filter);
+        if (filters.remove(filter)) {
+            filter.release();
+        }
     }
 
     /**
@@ -131,6 +133,10 @@ public interface Filterable<T extends Filter<T>> {
         if (filters == null) {
             return;
         }
-        filters.clear();
+
+        T filter;
+        while ((filter = filters.pollFirst()) != null) {
+            filter.release();
+        }
     }
 }
\ No newline at end of file
@@ -31,7 +31,8 @@ public interface ReadQueue {
     void read(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler);
 
     /**
-     * Close the queue and release associated resources.
+     * Ends the queue. The queued buffers are still filled, but no more buffer
+     * can be queued.
      */
     void end();
 
@@ -15,14 +15,20 @@
  */
 package com.dalcomlab.sattang.net;
 
+import com.dalcomlab.sattang.net.event.EventDispatcher;
+import com.dalcomlab.sattang.net.event.EventDispatcherGroup;
+import com.dalcomlab.sattang.net.event.EventExecutor;
 import com.dalcomlab.sattang.net.io.channel.AbstractSocket;
 import com.dalcomlab.sattang.net.io.read.ReadChannel;
 import com.dalcomlab.sattang.net.io.read.channels.SocketReadChannel;
 import com.dalcomlab.sattang.net.io.write.WriteChannel;
 import com.dalcomlab.sattang.net.io.write.channels.SocketWriteChannel;
+import com.dalcomlab.sattang.net.socket.SocketReadQueue;
+import com.dalcomlab.sattang.net.socket.SocketWriteQueue;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -35,15 +41,78 @@ public abstract class SocketConnection implements Connection {
     protected final SocketReadChannel readChannel;
     protected final SocketWriteChannel writeChannel;
     protected AtomicReference<State> state = new AtomicReference(State.STOPPED);
+    private final SocketChannel channel;
+    private final EventDispatcher dispatcher;
+    private SocketReadQueue readQueue = null;
+    private SocketWriteQueue writeQueue = null;
 
     /**
      * @param transport
      */
     public SocketConnection(Transport transport, AbstractSocket socket) {
+        this(transport, socket, null);
+    }
+
+    /**
+     * @param transport
+     * @param socket
+     * @param channel the channel of the socket, which the read and write queues
+     *                use. The queues are not available if it is <code>null</code>.
+     */
+    public SocketConnection(Transport transport, AbstractSocket socket, SocketChannel channel) {
         this.transport = transport;
         this.socket = socket;
+        this.channel = channel;
+        this.dispatcher = bindEventDispatcher(transport);
         this.readChannel = new SocketReadChannel(socket);
         this.writeChannel = new SocketWriteChannel(socket);
+
+        TransportMetrics metrics = transport.getMetrics();
+        if (metrics != null) {
+            this.readChannel.setByteCounter(metrics.getBytesRead());
+            this.writeChannel.setByteCounter(metrics.getBytesWritten());
+        }
+    }
+
+    /**
+     * Binds the connection to one event dispatcher of the transport, so that
+     * the events, the queues and the timers of the connection are handled by
+     * the same event loop.
+     *
+     * @param transport
+     * @return <code>null</code> if the transport is not started.
+     */
+    private static EventDispatcher bindEventDispatcher(Transport transport) {
+        EventDispatcher dispatcher = transport.getEventDispatcher();
+        if (dispatcher instanceof EventDispatcherGroup) {
+            return ((EventDispatcherGroup) dispatcher).next();
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Returns the {@link EventDispatcher} which owns this connection, or
+     * <code>null</code> if the transport was not started when the connection
+     * was created.
+     *
+     * @return
+     */
+    public EventDispatcher getEventDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Registers the event of this connection in the event dispatcher which
+     * owns this connection.
+     *
+     * @param event
+     */
+    protected void async(EventExecutor<SocketChannel> event) {
+        if (dispatcher != null) {
+            dispatcher.register(event);
+        } else {
+            transport.async(event);
+        }
     }
 
     /**
@@ -84,6 +153,11 @@ public abstract class SocketConnection implements Connection {
             socket.close();
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            readChannel.release();
+            writeChannel.release();
+            closeQueues();
+            transport.onClose(this);
         }
     }
 
@@ -125,25 +199,56 @@ public abstract class SocketConnection implements Connection {
      */
     @Override
     public long getWriteTimeoutMillis() {
-        return transport.getReadTimeout(TimeUnit.MILLISECONDS);
+        return transport.getWriteTimeout(TimeUnit.MILLISECONDS);
     }
 
 
     /**
+     * Returns the {@link ReadQueue} which reads the data without blocking the
+     * caller, or <code>null</code> if the queue is not available.
+     *
      * @return
      */
     @Override
-    public ReadQueue getReadQueue() {
-        return null;
+    public synchronized ReadQueue getReadQueue() {
+        if (readQueue == null) {
+            if (channel == null || dispatcher == null) {
+                return null;
+            }
+            readQueue = new SocketReadQueue(channel, dispatcher);
+        }
+        return readQueue;
     }
 
 
     /**
+     * Returns the {@link WriteQueue} which writes the data without blocking the
+     * caller, or <code>null</code> if the queue is not available.
+     *
      * @return
      */
     @Override
-    public WriteQueue getWriteQueue() {
-        return null;
+    public synchronized WriteQueue getWriteQueue() {
+        if (writeQueue == null) {
+            if (channel == null || dispatcher == null) {
+                return null;
+            }
+            writeQueue = new SocketWriteQueue(channel, dispatcher);
+        }
+        return writeQueue;
+    }
+
+    /**
+     * Closes the read and write queues, and fails the queued buffers.
+     */
+    private synchronized void closeQueues() {
+        if (readQueue != null) {
+            readQueue.close();
+        }
+
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
     }
 
 
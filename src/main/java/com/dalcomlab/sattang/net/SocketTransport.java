@@ -15,36 +15,67 @@
  */
 package com.dalcomlab.sattang.net;
 
+import com.dalcomlab.sattang.concurrent.VirtualThreads;
+import com.dalcomlab.sattang.metrics.MetricsRegistry;
 import com.dalcomlab.sattang.net.event.EventDispatcher;
 import com.dalcomlab.sattang.net.event.EventExecutor;
+import com.dalcomlab.sattang.net.event.SocketEvent;
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcher;
 import com.dalcomlab.sattang.net.event.nio.NioEventDispatcherGroup;
+import com.dalcomlab.sattang.net.io.channel.SocketOptions;
 import com.dalcomlab.sattang.net.socket.SocketSelectorPool;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public abstract class SocketTransport implements Transport {
-    private ServerSocketChannel server;
+    public static final int DEFAULT_BACKLOG = 1024;
+    private static final int MAX_ACCEPTS_PER_EVENT = 64;
+
+    private final List<ServerSocketChannel> servers = new ArrayList<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final List<Acceptor> acceptors = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean acceptPaused = new AtomicBoolean(false);
+    private final TransportMetrics metrics = new TransportMetrics(new MetricsRegistry(), connections::size);
+    private int maxConnections = 0;
+    private int connectionLowWatermark = 0;
+    private boolean shedConnections = false;
+    private int backlog = DEFAULT_BACKLOG;
+    private int acceptorCount = 1;
+    private int eventLoopCount = Runtime.getRuntime().availableProcessors();
+    private boolean virtualThreads = false;
+    private long eventLoopStallThreshold = TimeUnit.SECONDS.toMillis(1);
+    private int eventQueueCapacity = NioEventDispatcher.DEFAULT_EVENT_QUEUE_CAPACITY;
+    private SocketOptions socketOptions = SocketOptions.defaults();
+    private volatile long readTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_READ_TIMEOUT);
+    private volatile long writeTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_WRITE_TIMEOUT);
+    private CountDownLatch terminated;
     private ExecutorService executor = null;
     private SocketSelectorPool selectorPool = new SocketSelectorPool(100);
     private InetSocketAddress address = null;
     private AtomicReference<State> state = new AtomicReference(State.STOPPED);
-    private EventDispatcher dispatcher;
+    private NioEventDispatcherGroup dispatcher;
 
     /**
      *
      */
     public SocketTransport() {
         this.executor = createExecutorService(100);
-        this.dispatcher = new NioEventDispatcherGroup(this.executor, 10);
     }
 
     /**
@@ -125,6 +156,11 @@ public abstract class SocketTransport implements Transport {
 
     /**
      * Starts the transport.
+     * <p>
+     * The listening channels are registered in the event dispatcher and new
+     * connections are accepted on the {@link SocketEvent#ACCEPT} event, so the
+     * calling thread does not accept any connection. It just waits until the
+     * transport is stopped.
      *
      * @throws IOException
      */
@@ -133,11 +169,21 @@ public abstract class SocketTransport implements Transport {
         if (!state.compareAndSet(State.STOPPED, State.STARTING)) {
             return;
         }
+
+        terminated = new CountDownLatch(1);
+        if (virtualThreads) {
+            if (VirtualThreads.isSupported()) {
+                executor.shutdown();
+                executor = VirtualThreads.newExecutor(getName() + " : socket.virtual.worker");
+            } else {
+                System.err.println("The virtual threads are not supported, the worker threads are used instead.");
+            }
+        }
+        dispatcher = new NioEventDispatcherGroup(executor, createThreadFactory("socket.event.loop"), eventLoopCount, eventQueueCapacity);
+        dispatcher.setStallThreshold(eventLoopStallThreshold, TimeUnit.MILLISECONDS);
+        metrics.register(dispatcher, executor);
         try {
-            server = ServerSocketChannel.open();
-            server.configureBlocking(true);
-            ServerSocket socket = server.socket();
-            socket.bind(address);
+            bind();
         } catch (Exception e) {
             stop();
             throw e;
@@ -145,58 +191,126 @@ public abstract class SocketTransport implements Transport {
 
         dispatcher.start();
         state.set(State.STARTED);
+        // the acceptor i is pinned to the event loop i, so the listening
+        // channels are spread over the event loops and never move between them.
+        List<NioEventDispatcher> loops = dispatcher.getEventDispatchers();
+        for (int i = 0; i < servers.size(); i++) {
+            Acceptor acceptor = new Acceptor(servers.get(i), loops.get(i % loops.size()));
+            acceptors.add(acceptor);
+            acceptor.register();
+        }
+        onStarted();
 
         try {
-            while (true) {
-                if (state.get() == State.STOPPING || state.get() == State.STOPPED) {
-                    break;
-                }
-                System.out.println("-------------------------------------------");
-                System.out.println("* waiting accept client.");
-                System.out.println("-------------------------------------------");
-                SocketChannel channel = server.accept();
-                if (channel != null) {
-                    channel.configureBlocking(false);
-                    Connection connection = createConnection(channel);
-                    if (connection != null) {
-                        if (connection.handshake()) {
-                            connection.start();
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-
+            terminated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
-     * Stops the transport and close all connections.
+     * Called on the thread which starts the transport when the listening
+     * channels are bound and accept the connections, just before the thread
+     * waits until the transport is stopped.
+     */
+    protected void onStarted() {
+    }
+
+    /**
+     * Stops the transport and closes all connections immediately.
      *
      * @return
      */
     @Override
     public void stop() {
+        stop(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the transport gracefully.
+     * <ul>
+     *     <li>The listening channels are closed, so no connection is accepted.</li>
+     *     <li>The idle connections are closed immediately, and the other connections
+     *     are closed after the response of the current request, which has
+     *     the <code>Connection: close</code> header.</li>
+     *     <li>The connections which are still open after the timeout are closed.</li>
+     * </ul>
+     *
+     * @param timeout
+     * @param timeUnit
+     * @return
+     */
+    @Override
+    public void stop(long timeout, TimeUnit timeUnit) {
         state.set(State.STOPPING);
-        try {
-            server.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+        for (ServerSocketChannel server : servers) {
+            try {
+                server.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        servers.clear();
+        acceptors.clear();
+        acceptPaused.set(false);
+
+        for (Connection connection : connections) {
+            connection.drain();
+        }
+        awaitConnections(timeout, timeUnit);
+        for (Connection connection : connections) {
+            connection.stop();
+        }
+        connections.clear();
+
+        if (dispatcher != null) {
+            dispatcher.stop();
         }
         executor.shutdown();
         state.set(State.STOPPED);
+        if (terminated != null) {
+            terminated.countDown();
+        }
     }
 
     /**
-     * Stops the service and close all connections.
+     * Called when the given connection of this transport is closed.
+     *
+     * @param connection
+     */
+    @Override
+    public void onClose(Connection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        metrics.getConnectionsClosed().increment();
+
+        if (connections.isEmpty()) {
+            synchronized (connections) {
+                connections.notifyAll();
+            }
+        }
+        resumeAccept();
+    }
+
+    /**
+     * Returns the {@link TransportMetrics} of this transport. The metrics of
+     * the protocol are registered in the same registry.
      *
-     * @param timeout
-     * @param timeUnit
      * @return
      */
     @Override
-    public void stop(long timeout, TimeUnit timeUnit) {
-        stop();
+    public TransportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the number of the open connections of this transport.
+     *
+     * @return
+     */
+    public int getConnectionCount() {
+        return connections.size();
     }
 
 
@@ -251,18 +365,20 @@ public abstract class SocketTransport implements Transport {
      */
     @Override
     public long getReadTimeout(TimeUnit timeUnit) {
-        return 0;
+        return timeUnit.convert(readTimeout, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Sets the timeout for the blocking reads.
+     * Sets the timeout for the blocking reads. A blocking read which waits for
+     * the next data longer than the timeout closes the connection. A value
+     * less than or equal to zero means no timeout.
      *
      * @param timeout
      * @param timeUnit
      */
     @Override
     public void setReadTimeout(long timeout, TimeUnit timeUnit) {
-
+        this.readTimeout = timeUnit.toMillis(timeout);
     }
 
     /**
@@ -272,18 +388,20 @@ public abstract class SocketTransport implements Transport {
      * @return the write timeout value
      */
     public long getWriteTimeout(TimeUnit timeUnit) {
-        return 0;
+        return timeUnit.convert(writeTimeout, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Sets the timeout for the blocking writes.
+     * Sets the timeout for the blocking writes. A blocking write which can not
+     * send any data longer than the timeout closes the connection. A value
+     * less than or equal to zero means no timeout.
      *
      * @param timeout
      * @param timeUnit
      */
     @Override
     public void setWriteTimeout(long timeout, TimeUnit timeUnit) {
-
+        this.writeTimeout = timeUnit.toMillis(timeout);
     }
 
 
@@ -291,23 +409,554 @@ public abstract class SocketTransport implements Transport {
         return this.selectorPool;
     }
 
+    /**
+     * Returns the group of the event loops, or <code>null</code> if the
+     * transport is not started. The connection count and the pending task
+     * count of each event loop can be read from it.
+     *
+     * @return
+     */
+    @Override
+    public NioEventDispatcherGroup getEventDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Returns the address which the listening channels are bound to, or
+     * <code>null</code> if the transport is not started. When the transport
+     * listens on the port 0, it has the port which the system has chosen.
+     *
+     * @return
+     */
+    public InetSocketAddress getLocalAddress() {
+        if (servers.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return (InetSocketAddress) servers.get(0).getLocalAddress();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the maximum length of the queue of pending connections.
+     *
+     * @return
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Sets the maximum length of the queue of pending connections. A value
+     * less than or equal to zero means the system default.
+     *
+     * @param backlog
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * Returns the number of listening channels which accept connections.
+     *
+     * @return
+     */
+    public int getAcceptorCount() {
+        return acceptorCount;
+    }
+
+    /**
+     * Sets the number of listening channels which accept connections. When
+     * the count is greater than one, each channel is bound to the same address
+     * with the <code>SO_REUSEPORT</code> option, so the kernel balances the
+     * incoming connections between them. If the platform does not support
+     * the option, only one channel is bound.
+     *
+     * @param acceptorCount
+     */
+    public void setAcceptorCount(int acceptorCount) {
+        this.acceptorCount = acceptorCount;
+    }
+
+    /**
+     * Returns the number of event loop threads which select the socket events.
+     *
+     * @return
+     */
+    public int getEventLoopCount() {
+        return eventLoopCount;
+    }
+
+    /**
+     * Sets the number of event loop threads which select the socket events.
+     * The event loop threads are not shared with the worker threads which run
+     * the offloaded events. The default is the number of available processors.
+     *
+     * @param eventLoopCount
+     */
+    public void setEventLoopCount(int eventLoopCount) {
+        if (eventLoopCount > 0) {
+            this.eventLoopCount = eventLoopCount;
+        }
+    }
+
+    /**
+     * Determines whether the offloaded events are executed on virtual threads.
+     *
+     * @return
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sets whether the offloaded events are executed on virtual threads, one
+     * virtual thread per event, instead of the fixed pool of worker threads.
+     * The blocking reads and writes of a virtual thread park it until the
+     * event loop selects the channel. It requires Java 21 or later and the
+     * multi-release jar; otherwise the worker threads are used.
+     *
+     * @param virtualThreads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Returns the time in milliseconds after which an event loop which has
+     * not returned to the select is reported.
+     *
+     * @return
+     */
+    public long getEventLoopStallThreshold() {
+        return eventLoopStallThreshold;
+    }
+
+    /**
+     * Sets the time after which an event loop which has not returned to the
+     * select is reported with the stack of the blocking task. The default is
+     * one second, and a value less than or equal to zero disables the report.
+     *
+     * @param threshold
+     * @param unit
+     */
+    public void setEventLoopStallThreshold(long threshold, TimeUnit unit) {
+        this.eventLoopStallThreshold = unit.toMillis(threshold);
+    }
+
+    /**
+     * Returns the capacity of the queue of the events which each event loop
+     * takes from the other threads.
+     *
+     * @return
+     */
+    public int getEventQueueCapacity() {
+        return eventQueueCapacity;
+    }
+
+    /**
+     * Sets the capacity of the queue of the events which each event loop takes
+     * from the other threads, which is rounded up to a power of two. A thread
+     * which finds the queue full waits until the event loop drains it. The
+     * default is 1024.
+     *
+     * @param eventQueueCapacity
+     */
+    public void setEventQueueCapacity(int eventQueueCapacity) {
+        this.eventQueueCapacity = eventQueueCapacity;
+    }
+
+    /**
+     * Returns the maximum number of the open connections. A value less than or
+     * equal to zero means unlimited.
+     *
+     * @return
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of the open connections. When the limit is
+     * reached, the listening channels are not selected for the accept events,
+     * so the new connections wait in the backlog of the kernel until the
+     * number of the connections falls to the low watermark. A value less than
+     * or equal to zero means unlimited.
+     *
+     * @param maxConnections
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns the number of the open connections at or below which the paused
+     * listening channels accept the connections again. If it is not set, it is
+     * 90% of the maximum number of the connections.
+     *
+     * @return
+     */
+    public int getConnectionLowWatermark() {
+        if (connectionLowWatermark > 0 && connectionLowWatermark < maxConnections) {
+            return connectionLowWatermark;
+        }
+        return maxConnections * 9 / 10;
+    }
+
+    /**
+     * Sets the number of the open connections at or below which the paused
+     * listening channels accept the connections again.
+     *
+     * @param connectionLowWatermark
+     */
+    public void setConnectionLowWatermark(int connectionLowWatermark) {
+        this.connectionLowWatermark = connectionLowWatermark;
+    }
+
+    /**
+     * Determines whether the connections over the limit are accepted and shed
+     * instead of waiting in the backlog.
+     *
+     * @return
+     */
+    public boolean isShedConnections() {
+        return shedConnections;
+    }
+
+    /**
+     * Sets whether the connections over the limit are accepted and shed
+     * instead of waiting in the backlog. A shed connection receives the
+     * response of {@link #getShedResponse()} if any, and then it is closed.
+     * The listening channels are not paused in this mode.
+     *
+     * @param shedConnections
+     */
+    public void setShedConnections(boolean shedConnections) {
+        this.shedConnections = shedConnections;
+    }
+
+    /**
+     * Returns the pre-encoded response which is sent to a shed connection, or
+     * <code>null</code> if the connection is closed without a response.
+     *
+     * @return
+     */
+    protected ByteBuffer getShedResponse() {
+        return null;
+    }
+
+    /**
+     * Returns the {@link SocketOptions} which are applied to the listening
+     * channels and the accepted channels.
+     *
+     * @return
+     */
+    public SocketOptions getSocketOptions() {
+        return socketOptions;
+    }
+
+    /**
+     * Sets the {@link SocketOptions} which are applied to the listening
+     * channels before they are bound, and to each accepted channel before
+     * the connection is created.
+     *
+     * @param socketOptions
+     */
+    public void setSocketOptions(SocketOptions socketOptions) {
+        if (socketOptions != null) {
+            this.socketOptions = socketOptions;
+        }
+    }
+
+    /**
+     * Binds the listening channels.
+     *
+     * @throws IOException
+     */
+    private void bind() throws IOException {
+        int count = Math.max(acceptorCount, 1);
+        SocketOption<Boolean> reusePort = count > 1 ? getReusePortOption() : null;
+        SocketAddress address = this.address;
+        for (int i = 0; i < count; i++) {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            servers.add(server);
+            server.configureBlocking(false);
+            if (count > 1) {
+                if (reusePort == null || !server.supportedOptions().contains(reusePort)) {
+                    count = 1;
+                } else {
+                    server.setOption(reusePort, true);
+                }
+            }
+            socketOptions.apply(server);
+            bind(server, address, backlog);
+            // the other channels share the port which is chosen for the first one.
+            address = server.getLocalAddress();
+        }
+    }
+
+    /**
+     * Binds the given listening channel to the address.
+     *
+     * @param server
+     * @param address
+     * @param backlog
+     * @throws IOException
+     */
+    protected void bind(ServerSocketChannel server, SocketAddress address, int backlog) throws IOException {
+        server.bind(address, backlog);
+    }
+
+    /**
+     * Accepts the given channel and starts the connection.
+     *
+     * @param channel
+     */
+    private void accept(SocketChannel channel) {
+        Connection connection = null;
+        try {
+            channel.configureBlocking(false);
+            configure(channel);
+            connection = createConnection(channel);
+            if (connection != null && connection.handshake()) {
+                connections.add(connection);
+                metrics.getConnectionsOpened().increment();
+                if (!isStarted()) {
+                    // the transport is stopped while the channel is accepted.
+                    connection.close();
+                    return;
+                }
+                connection.start();
+            } else {
+                channel.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (connection != null) {
+                connection.close();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Determines whether the number of the open connections reaches the limit.
+     *
+     * @return
+     */
+    private boolean isFull() {
+        return maxConnections > 0 && connections.size() >= maxConnections;
+    }
+
+    /**
+     * Stops selecting the accept events of the listening channels. The caller
+     * must not register its acceptor again.
+     */
+    private void pauseAccept() {
+        acceptPaused.set(true);
+        // the connections may have been closed before the flag is set.
+        resumeAccept();
+    }
+
+    /**
+     * Registers the paused listening channels again if the number of the open
+     * connections falls to the low watermark.
+     */
+    private void resumeAccept() {
+        if (!acceptPaused.get() || connections.size() > getConnectionLowWatermark()) {
+            return;
+        }
+
+        if (acceptPaused.compareAndSet(true, false) && isStarted()) {
+            for (Acceptor acceptor : acceptors) {
+                acceptor.register();
+            }
+        }
+    }
+
+    /**
+     * Sends the shed response to the accepted channel and closes it. The
+     * response is written once without blocking.
+     *
+     * @param channel
+     */
+    private void shed(SocketChannel channel) {
+        metrics.getConnectionsShed().increment();
+        try {
+            ByteBuffer response = getShedResponse();
+            if (response != null) {
+                channel.configureBlocking(false);
+                channel.write(response);
+                channel.shutdownOutput();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Waits until all connections are closed or the timeout is elapsed.
+     *
+     * @param timeout
+     * @param timeUnit
+     */
+    private void awaitConnections(long timeout, TimeUnit timeUnit) {
+        final long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        synchronized (connections) {
+            while (!connections.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(connections, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the socket options to the accepted channel. The connection is
+     * still served if an option can not be applied.
+     *
+     * @param channel
+     */
+    private void configure(SocketChannel channel) {
+        try {
+            socketOptions.apply(channel);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the <code>SO_REUSEPORT</code> option, or <code>null</code>
+     * if the running platform does not provide it (before Java 9).
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> getReusePortOption() {
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     /**
      * @param count
      * @return
      */
     private ExecutorService createExecutorService(int count) {
-        final ThreadFactory factory = new ThreadFactory() {
+        return Executors.newFixedThreadPool(count, createThreadFactory("socket.event.worker"));
+    }
+
+    /**
+     * @param role
+     * @return
+     */
+    private ThreadFactory createThreadFactory(String role) {
+        return new ThreadFactory() {
             private int counter;
 
             @Override
             public Thread newThread(Runnable r) {
-                final String name = getName() + " : socket.event.worker <" + counter++ + ">";
+                final String name = getName() + " : " + role + " <" + counter++ + ">";
                 Thread t = new Thread(r, name);
                 t.setDaemon(true);
                 return t;
             }
         };
+    }
+
+    /**
+     * The event executor which accepts the pending connections of the
+     * listening channel whenever the channel is ready.
+     */
+    private class Acceptor implements EventExecutor<ServerSocketChannel> {
+        private final ServerSocketChannel server;
+        private final NioEventDispatcher loop;
+
+        /**
+         * @param server
+         * @param loop   the event loop which selects the accept event.
+         */
+        Acceptor(ServerSocketChannel server, NioEventDispatcher loop) {
+            this.server = server;
+            this.loop = loop;
+        }
 
-        return Executors.newFixedThreadPool(count, factory);
+        /**
+         * Registers the accept event in the event loop of this acceptor.
+         */
+        void register() {
+            loop.register(this);
+        }
+
+        @Override
+        public ServerSocketChannel channel() {
+            return server;
+        }
+
+        @Override
+        public SocketEvent event() {
+            return SocketEvent.ACCEPT;
+        }
+
+        @Override
+        public void execute(ServerSocketChannel server, EventDispatcher dispatcher) {
+            boolean pause = false;
+            try {
+                for (int i = 0; i < MAX_ACCEPTS_PER_EVENT; i++) {
+                    if (isFull() && !shedConnections) {
+                        // the new connections wait in the backlog.
+                        pause = true;
+                        break;
+                    }
+
+                    SocketChannel channel = server.accept();
+                    if (channel == null) {
+                        break;
+                    }
+
+                    if (isFull()) {
+                        shed(channel);
+                    } else {
+                        accept(channel);
+                    }
+                }
+            } catch (IOException e) {
+                if (!server.isOpen()) {
+                    return;
+                }
+                e.printStackTrace();
+            }
+
+            if (!isStarted()) {
+                return;
+            }
+
+            if (pause) {
+                pauseAccept();
+            } else {
+                register();
+            }
+        }
     }
 }
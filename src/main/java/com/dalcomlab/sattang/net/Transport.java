@@ -15,6 +15,7 @@
  */
 package com.dalcomlab.sattang.net;
 
+import com.dalcomlab.sattang.net.event.EventDispatcher;
 import com.dalcomlab.sattang.Reusable;
 import com.dalcomlab.sattang.net.event.EventExecutor;
 
@@ -46,6 +47,15 @@ public interface Transport extends Service, Reusable {
      */
     ExecutorService getExecutor();
 
+    /**
+     * Returns the {@link EventDispatcher} which the connections of this
+     * transport are registered in, or <code>null</code> if the transport is
+     * not started.
+     *
+     * @return
+     */
+    EventDispatcher getEventDispatcher();
+
     /**
      * Listens
      *
@@ -67,6 +77,25 @@ public interface Transport extends Service, Reusable {
      */
     void async(EventExecutor<SocketChannel> event);
 
+    /**
+     * Returns the {@link TransportMetrics} of this transport, or <code>null</code>
+     * if the transport does not record the metrics.
+     *
+     * @return
+     */
+    default TransportMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * Called when the given connection of this transport is closed, so that
+     * the transport does not track it any more.
+     *
+     * @param connection
+     */
+    default void onClose(Connection connection) {
+    }
+
 
     /**
      * Returns the default size of a buffer, which will be allocated for
@@ -0,0 +1,138 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.net;
+
+import com.dalcomlab.sattang.metrics.Counter;
+import com.dalcomlab.sattang.metrics.MetricsRegistry;
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcher;
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcherGroup;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.LongSupplier;
+
+/**
+ * The metrics of the connections of a {@link Transport}, which are registered
+ * in its {@link MetricsRegistry}.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class TransportMetrics {
+    private final MetricsRegistry registry;
+    private final Counter connectionsOpened;
+    private final Counter connectionsClosed;
+    private final Counter connectionsShed;
+    private final Counter bytesRead;
+    private final Counter bytesWritten;
+
+    /**
+     * @param registry
+     * @param activeConnections the supplier of the number of the open connections.
+     */
+    public TransportMetrics(MetricsRegistry registry, LongSupplier activeConnections) {
+        this.registry = registry;
+        this.connectionsOpened = registry.counter("sattang_connections_opened_total", "The number of the accepted connections.");
+        this.connectionsClosed = registry.counter("sattang_connections_closed_total", "The number of the closed connections.");
+        this.connectionsShed = registry.counter("sattang_connections_shed_total", "The number of the connections which are shed over the limit.");
+        registry.gauge("sattang_connections_active", "The number of the open connections.", activeConnections);
+        this.bytesRead = registry.counter("sattang_bytes_read_total", "The number of the bytes which are read from the sockets.");
+        this.bytesWritten = registry.counter("sattang_bytes_written_total", "The number of the bytes which are written to the sockets.");
+    }
+
+    /**
+     * Registers the health metrics of each event loop of the given group with
+     * the <code>loop</code> label, and the queue depth of the given executor.
+     * The metrics of the previous group are replaced.
+     *
+     * @param group
+     * @param executor
+     */
+    public void register(NioEventDispatcherGroup group, ExecutorService executor) {
+        final List<NioEventDispatcher> dispatchers = group.getEventDispatchers();
+        for (int i = 0; i < dispatchers.size(); i++) {
+            final NioEventDispatcher dispatcher = dispatchers.get(i);
+            final String loop = Integer.toString(i);
+            registry.histogram("sattang_event_loop_dispatch_lag_seconds",
+                    "The time from the selection of an event to the start of its execution.",
+                    dispatcher.getDispatchLag(), "loop", loop);
+            registry.histogram("sattang_event_loop_process_seconds",
+                    "The time which an iteration of the event loop spends on the selected keys.",
+                    dispatcher.getProcessTime(), "loop", loop);
+            registry.counter("sattang_event_loop_wakeups_total",
+                    "The number of the selector wakeups.",
+                    dispatcher.getWakeups(), "loop", loop);
+            registry.gauge("sattang_event_loop_registration_queue",
+                    "The number of the events waiting to be registered in the selector.",
+                    dispatcher::getRegistrationQueueDepth, "loop", loop);
+            registry.gauge("sattang_event_loop_offloaded_tasks",
+                    "The number of the events handed off to the executor and not completed.",
+                    dispatcher::getOffloadedTaskCount, "loop", loop);
+            registry.gauge("sattang_event_loop_connections",
+                    "The number of the connections registered in the event loop.",
+                    dispatcher::getConnectionCount, "loop", loop);
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            registry.gauge("sattang_executor_queue", "The number of the tasks waiting for a worker thread.",
+                    () -> pool.getQueue().size());
+        }
+    }
+
+    /**
+     * Returns the registry which the metrics are registered in.
+     *
+     * @return
+     */
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return
+     */
+    public Counter getConnectionsOpened() {
+        return connectionsOpened;
+    }
+
+    /**
+     * @return
+     */
+    public Counter getConnectionsClosed() {
+        return connectionsClosed;
+    }
+
+    /**
+     * @return
+     */
+    public Counter getConnectionsShed() {
+        return connectionsShed;
+    }
+
+    /**
+     * @return
+     */
+    public Counter getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return
+     */
+    public Counter getBytesWritten() {
+        return bytesWritten;
+    }
+}
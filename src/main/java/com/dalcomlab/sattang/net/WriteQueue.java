@@ -31,7 +31,16 @@ public interface WriteQueue {
     void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler);
 
     /**
-     * Close the queue and release associated resources.
+     * Runs the given task once when the queue can be written again. If the
+     * queue can be written now, the task is run immediately.
+     *
+     * @param task
+     */
+    void onWritable(Runnable task);
+
+    /**
+     * Ends the queue. The queued data is still written, but no more data can
+     * be queued.
      */
     void end();
 
@@ -41,6 +50,8 @@ public interface WriteQueue {
     void close();
 
     /**
+     * Determines whether the queue can take more data without exceeding the
+     * high watermark.
      *
      * @return
      */
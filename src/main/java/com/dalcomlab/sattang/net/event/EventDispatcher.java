@@ -15,6 +15,10 @@
  */
 package com.dalcomlab.sattang.net.event;
 
+import com.dalcomlab.sattang.common.HashedWheelTimer;
+
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
@@ -36,6 +40,28 @@ public interface EventDispatcher {
      */
     EventFuture register(EventExecutor event);
 
+    /**
+     * Schedules the task which is executed once on the event loop thread after
+     * the given delay. The task must not block.
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @return the {@link HashedWheelTimer.Deadline} which can cancel the task.
+     */
+    HashedWheelTimer.Deadline schedule(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * Determines whether the current thread is the event loop thread of this
+     * event dispatcher. The event loop thread must not wait for the events of
+     * its own event dispatcher.
+     *
+     * @return
+     */
+    default boolean inEventLoop() {
+        return false;
+    }
+
     /**
      * Stops the event dispatcher.
      * <p>
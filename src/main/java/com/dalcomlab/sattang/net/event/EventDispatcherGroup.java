@@ -20,4 +20,13 @@ package com.dalcomlab.sattang.net.event;
  */
 public interface EventDispatcherGroup extends EventDispatcher {
 
+    /**
+     * Returns one of the event dispatchers of this group, which a new
+     * connection is bound to for its whole life. The events and the timers of
+     * the connection must be registered in the returned event dispatcher
+     * rather than in this group.
+     *
+     * @return
+     */
+    EventDispatcher next();
 }
@@ -47,6 +47,17 @@ public interface EventExecutor<T> {
 
     }
 
+    /**
+     * Determines whether the event is executed on the event loop thread which
+     * selected it, instead of being handed off to a worker thread. An inline
+     * executor must not block.
+     *
+     * @return
+     */
+    default boolean isInline() {
+        return false;
+    }
+
     /**
      *
      */
@@ -67,4 +78,11 @@ public interface EventExecutor<T> {
     default boolean isWrite() {
         return event().isWrite();
     }
+
+    /**
+     * @return
+     */
+    default boolean isAccept() {
+        return event().isAccept();
+    }
 }
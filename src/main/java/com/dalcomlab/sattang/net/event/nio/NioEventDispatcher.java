@@ -15,36 +15,80 @@
  */
 package com.dalcomlab.sattang.net.event.nio;
 
+import com.dalcomlab.sattang.common.HashedWheelTimer;
+import com.dalcomlab.sattang.concurrent.MpscArrayQueue;
+import com.dalcomlab.sattang.metrics.Counter;
+import com.dalcomlab.sattang.metrics.Histogram;
 import com.dalcomlab.sattang.net.Service;
 import com.dalcomlab.sattang.net.event.EventDispatcher;
 import com.dalcomlab.sattang.net.event.EventExecutor;
 import com.dalcomlab.sattang.net.event.EventFuture;
 
 import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
-import java.util.Queue;
-import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class NioEventDispatcher implements EventDispatcher {
-    private final Queue<EventExecutor<SocketChannel>> events = new ConcurrentLinkedQueue<>();
+    /**
+     * The upper bounds of the buckets of the event loop histograms in seconds,
+     * from 10us to 1s.
+     */
+    private static final double[] LOOP_BOUNDS = {
+            0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025,
+            0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1
+    };
+    public static final int DEFAULT_EVENT_QUEUE_CAPACITY = 1024;
+    private static final int MAX_FULL_QUEUE_YIELDS = 16;
+    private static final long FULL_QUEUE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private final MpscArrayQueue<EventExecutor<? extends SelectableChannel>> events;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
     private AtomicReference<Service.State> state = new AtomicReference(Service.State.STOPPED);
     private final ExecutorService executor;
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final AtomicInteger offloadedTasks = new AtomicInteger();
+    private final Histogram dispatchLag = new Histogram(LOOP_BOUNDS);
+    private final Histogram processTime = new Histogram(LOOP_BOUNDS);
+    private final Counter wakeups = new Counter();
+    private final HashedWheelTimer timer = new HashedWheelTimer();
+    private volatile int connections = 0;
+    private volatile int listeners = 0;
     private Selector selector = null;
+    private SelectedKeySet selectedKeys = null;
+    private boolean optimizeSelectedKeys = true;
+    private volatile Thread thread = null;
+    private volatile long busySince = 0;
+    private volatile long iterations = 0;
 
     /**
      * @param executor
      */
     public NioEventDispatcher(ExecutorService executor) {
+        this(executor, DEFAULT_EVENT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param executor
+     * @param eventQueueCapacity the capacity of the queue of the events which
+     *                           are registered by the other threads, which is
+     *                           rounded up to a power of two.
+     */
+    public NioEventDispatcher(ExecutorService executor, int eventQueueCapacity) {
         this.executor = executor;
+        this.events = new MpscArrayQueue<>(eventQueueCapacity);
     }
 
     /**
@@ -61,6 +105,7 @@ public class NioEventDispatcher implements EventDispatcher {
         if (selector == null) {
             try {
                 selector = Selector.open();
+                selectedKeys = optimizeSelectedKeys ? SelectedKeySet.install(selector) : null;
             } catch (Exception e) {
                 selector = null;
             }
@@ -72,6 +117,7 @@ public class NioEventDispatcher implements EventDispatcher {
         }
 
         System.out.println("The NIO channel event dispatcher is starting in " + Thread.currentThread());
+        thread = Thread.currentThread();
 
         try {
             while (true) {
@@ -79,40 +125,52 @@ public class NioEventDispatcher implements EventDispatcher {
                     break;
                 }
 
+                // the producers after this point wake up the selector.
+                wakeupPending.set(false);
                 registerEvents();
-                selector.select();
+                connections = selector.keys().size() - listeners;
+                busySince = 0;
+                if (hasEvents()) {
+                    selector.selectNow();
+                } else if (timer.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.select(timer.getTickDuration(TimeUnit.MILLISECONDS));
+                }
+                final long selected = System.nanoTime();
+                busySince = selected;
+                iterations++;
+                connections = selector.keys().size() - listeners;
+                timer.advance();
 
                 if (isStop()) {
                     break;
                 }
 
-                Set<SelectionKey> keys = selector.selectedKeys();
-                Iterator<SelectionKey> iterator = keys.iterator();
-                while (iterator.hasNext()) {
-                    SelectionKey key = iterator.next();
-                    iterator.remove();
-                    if (!key.isValid()) {
-                        continue;
+                final SelectedKeySet selectedKeys = this.selectedKeys;
+                if (selectedKeys != null) {
+                    final int size = selectedKeys.size();
+                    for (int i = 0; i < size; i++) {
+                        processKey(selectedKeys.get(i), selected);
                     }
-
-                    key.interestOps(key.interestOps() & (~key.readyOps()));
-                    EventExecutor event = (EventExecutor) key.attachment();
-                    if (event == null) {
-                        continue;
-                    }
-
-                    if (executor != null) {
-                        executor.submit(() -> {
-                            event.execute(key.channel(), NioEventDispatcher.this);
-                        });
-                    } else {
-                        event.execute(key.channel(), NioEventDispatcher.this);
+                    selectedKeys.reset();
+                } else {
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while (iterator.hasNext()) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        processKey(key, selected);
                     }
-
                 }
+                processTime.record(System.nanoTime() - selected, TimeUnit.NANOSECONDS);
             }
         } catch (Exception e) {
             stop();
+        } finally {
+            // only the event loop thread polls the events while it runs.
+            cancelEvents();
+            busySince = 0;
+            thread = null;
         }
     }
 
@@ -120,19 +178,76 @@ public class NioEventDispatcher implements EventDispatcher {
      * Registers a {@link EventExecutor} in this event dispatcher.
      * When the event of interest of the {@link EventExecutor}  occurs, this dispatcher
      * calls the {@link EventExecutor#execute} method of the given EventExecutor.
+     * <p>
+     * On the event loop thread the interest is set to the selection key
+     * directly. The other threads put the event in the queue, and only the
+     * first of them wakes up the selector until the event loop polls the queue.
+     * When the queue is full, the thread waits until the event loop drains it,
+     * so the events are registered in order without allocating a node.
      *
      * @param event
      * @return
      */
     @Override
     public EventFuture register(EventExecutor event) {
-        events.offer(event);
-        if (selector != null) {
-            selector.wakeup();
+        if (inEventLoop() && !isStop()) {
+            try {
+                registerEvent(event);
+            } catch (IOException e) {
+                event.cancel();
+            }
+            return null;
+        }
+
+        pendingTasks.incrementAndGet();
+        int spins = 0;
+        while (!events.offer(event)) {
+            if (isStopping()) {
+                // the event loop does not drain the queue any more.
+                pendingTasks.decrementAndGet();
+                event.cancel();
+                return null;
+            }
+
+            wakeup();
+            if (++spins < MAX_FULL_QUEUE_YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, FULL_QUEUE_PARK_NANOS);
+            }
         }
+        wakeup();
         return null;
     }
 
+    /**
+     * Schedules the task which is executed once on the event loop thread after
+     * the given delay. The task must not block.
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @return
+     */
+    @Override
+    public HashedWheelTimer.Deadline schedule(Runnable task, long delay, TimeUnit unit) {
+        final boolean idle = timer.isEmpty();
+        final HashedWheelTimer.Deadline deadline = timer.schedule(task, delay, unit);
+        if (idle) {
+            // the event loop may be selecting without timeout.
+            wakeup();
+        }
+        return deadline;
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public boolean inEventLoop() {
+        return thread == Thread.currentThread();
+    }
+
     /**
      * Stops the event dispatcher.
      * <p>
@@ -143,11 +258,11 @@ public class NioEventDispatcher implements EventDispatcher {
     public void stop() {
 
         state.set(Service.State.STOPPING);
-        for (EventExecutor event : events) {
-            event.cancel();
+        if (thread == null) {
+            cancelEvents();
         }
-
-        events.clear();
+        pendingTasks.set(0);
+        offloadedTasks.set(0);
 
         if (selector != null) {
             selector.wakeup();
@@ -162,38 +277,347 @@ public class NioEventDispatcher implements EventDispatcher {
 
     }
 
+    /**
+     * Returns the number of connections registered in this event dispatcher,
+     * as of the last selection.
+     *
+     * @return
+     */
+    public int getConnectionCount() {
+        return connections;
+    }
+
+    /**
+     * Returns the number of listening channels registered in this event
+     * dispatcher.
+     *
+     * @return
+     */
+    public int getListenerCount() {
+        return listeners;
+    }
+
+    /**
+     * Returns the number of events which are waiting to be registered in this
+     * event dispatcher or are being executed by the worker threads.
+     *
+     * @return
+     */
+    public int getPendingTaskCount() {
+        return Math.max(pendingTasks.get(), 0);
+    }
+
+    /**
+     * Returns the load of this event dispatcher, which is the sum of the
+     * connections and the pending tasks.
+     *
+     * @return
+     */
+    public int getLoad() {
+        return getConnectionCount() + getPendingTaskCount();
+    }
+
+    /**
+     * Determines whether the selector of this event dispatcher uses the array
+     * of the selected keys instead of its own hash set.
+     *
+     * @return
+     */
+    public boolean isSelectedKeysOptimized() {
+        return selectedKeys != null;
+    }
+
+    /**
+     * Sets whether the array of the selected keys is installed into the
+     * selector when this event dispatcher starts. The default is
+     * <code>true</code>, and the selector keeps its own set if the
+     * installation is not permitted.
+     *
+     * @param optimizeSelectedKeys
+     */
+    public void setOptimizeSelectedKeys(boolean optimizeSelectedKeys) {
+        this.optimizeSelectedKeys = optimizeSelectedKeys;
+    }
+
+    /**
+     * Returns the histogram of the time from the selection of an event to the
+     * start of its execution, on the event loop thread or on a worker thread.
+     *
+     * @return
+     */
+    public Histogram getDispatchLag() {
+        return dispatchLag;
+    }
+
+    /**
+     * Returns the histogram of the time which each iteration of the event loop
+     * spends on the timer and the selected keys.
+     *
+     * @return
+     */
+    public Histogram getProcessTime() {
+        return processTime;
+    }
+
+    /**
+     * Returns the counter of the selector wakeups.
+     *
+     * @return
+     */
+    public Counter getWakeups() {
+        return wakeups;
+    }
+
+    /**
+     * Returns the number of the events which are waiting to be registered in
+     * the selector.
+     *
+     * @return
+     */
+    public int getRegistrationQueueDepth() {
+        return events.size();
+    }
+
+    /**
+     * Returns the number of the events which are handed off to the executor
+     * and are not completed yet.
+     *
+     * @return
+     */
+    public int getOffloadedTaskCount() {
+        return Math.max(offloadedTasks.get(), 0);
+    }
+
+    /**
+     * Returns the thread which runs this event loop, or <code>null</code> if
+     * it is not running.
+     *
+     * @return
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    /**
+     * Returns the number of the iterations of this event loop.
+     *
+     * @return
+     */
+    public long getIterationCount() {
+        return iterations;
+    }
+
+    /**
+     * Returns the time in nanoseconds since this event loop returned from
+     * the last select, or zero if it is selecting now.
+     *
+     * @return
+     */
+    public long getBusyNanos() {
+        final long since = busySince;
+        return since == 0 ? 0 : System.nanoTime() - since;
+    }
+
+    /**
+     * Called when the event handed off to a worker thread starts.
+     *
+     * @param selected the time when the event is selected.
+     */
+    void begin(long selected) {
+        dispatchLag.record(System.nanoTime() - selected, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Called when the event handed off to a worker thread is completed.
+     */
+    void complete() {
+        offloadedTasks.decrementAndGet();
+        pendingTasks.decrementAndGet();
+    }
+
+    /**
+     * Clears the ready operations from the interest of the selected key, and
+     * dispatches the event executors of them.
+     *
+     * @param key
+     * @param selected the time when the key is selected.
+     */
+    private void processKey(SelectionKey key, long selected) {
+        if (!key.isValid()) {
+            return;
+        }
+
+        final Registration registration = (Registration) key.attachment();
+        final int ready;
+        try {
+            ready = key.readyOps();
+            key.interestOps(registration.clear(ready));
+        } catch (CancelledKeyException e) {
+            // the channel is closed by another thread.
+            return;
+        }
+
+        final SelectableChannel channel = key.channel();
+        dispatch(channel, registration.take(ready & SelectionKey.OP_READ), selected);
+        dispatch(channel, registration.take(ready & SelectionKey.OP_WRITE), selected);
+        dispatch(channel, registration.take(ready & SelectionKey.OP_ACCEPT), selected);
+    }
+
+    /**
+     * Executes the selected event on this event loop thread if it is inline,
+     * otherwise hands it off to a worker thread.
+     *
+     * @param channel
+     * @param event
+     * @param selected the time when the event is selected.
+     */
+    private void dispatch(SelectableChannel channel, EventExecutor event, long selected) {
+        if (event == null) {
+            return;
+        }
+
+        if (executor == null || event.isInline()) {
+            dispatchLag.record(System.nanoTime() - selected, TimeUnit.NANOSECONDS);
+            try {
+                event.execute(channel, this);
+            } catch (RuntimeException e) {
+                // the failed event must not stop the other channels of this loop.
+                e.printStackTrace();
+                event.cancel();
+            }
+            return;
+        }
+
+        pendingTasks.incrementAndGet();
+        offloadedTasks.incrementAndGet();
+        if (event instanceof NioEventExecutor) {
+            executor.execute(((NioEventExecutor) event).bind(this, selected));
+        } else {
+            executor.execute(() -> {
+                begin(selected);
+                try {
+                    event.execute(channel, this);
+                } finally {
+                    complete();
+                }
+            });
+        }
+    }
+
     /**
      * @throws IOException
      */
     private void registerEvents() throws IOException {
-        while (!events.isEmpty()) {
-            final EventExecutor<SocketChannel> event = events.poll();
-            final SocketChannel channel = event.channel();
-            if (!channel.isConnected()) {
-                continue;
-            }
+        EventExecutor<? extends SelectableChannel> event;
+        while ((event = pollEvent()) != null) {
+            pendingTasks.decrementAndGet();
+            registerEvent(event);
+        }
+    }
+
+    /**
+     * Sets the interest of the given event to the selection key of its
+     * channel. It must be called on the event loop thread.
+     *
+     * @param event
+     * @throws IOException
+     */
+    private void registerEvent(EventExecutor<? extends SelectableChannel> event) throws IOException {
+        final SelectableChannel channel = event.channel();
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        if (channel instanceof SocketChannel && !((SocketChannel) channel).isConnected()) {
+            return;
+        }
+
+        final int ops = getInterestOps(event);
+        if (ops == 0) {
+            return;
+        }
 
+        try {
             SelectionKey key = channel.keyFor(selector);
             if (key == null) {
-                if (event.isRead()) {
-                    key = channel.register(selector, SelectionKey.OP_READ);
-                } else if (event.isWrite()) {
-                    key = channel.register(selector, SelectionKey.OP_WRITE);
+                final Registration registration = new Registration();
+                key = channel.register(selector, registration.add(ops), registration);
+                if (!(channel instanceof SocketChannel)) {
+                    listeners++;
                 }
             } else {
-                if (event.isRead()) {
-                    key.interestOps(SelectionKey.OP_READ);
-                } else if (event.isWrite()) {
-                    key.interestOps(SelectionKey.OP_WRITE);
-                }
+                key.interestOps(((Registration) key.attachment()).add(ops));
             }
+            ((Registration) key.attachment()).set(ops, event);
+        } catch (CancelledKeyException | ClosedChannelException e) {
+            // the channel is closed by another thread.
+            event.cancel();
+        }
+    }
 
-            if (key != null) {
-                key.attach(event);
-            }
+    /**
+     * @return
+     */
+    private EventExecutor<? extends SelectableChannel> pollEvent() {
+        return events.poll();
+    }
+
+    /**
+     * @return
+     */
+    private boolean hasEvents() {
+        return !events.isEmpty();
+    }
+
+    /**
+     * Cancels the events which are not registered in the selector.
+     */
+    private void cancelEvents() {
+        EventExecutor<? extends SelectableChannel> event;
+        while ((event = pollEvent()) != null) {
+            event.cancel();
+        }
+    }
+
+    /**
+     * @param event
+     * @return
+     */
+    private int getInterestOps(EventExecutor event) {
+        if (event.isRead()) {
+            return SelectionKey.OP_READ;
+        }
+
+        if (event.isWrite()) {
+            return SelectionKey.OP_WRITE;
+        }
+
+        if (event.isAccept()) {
+            return SelectionKey.OP_ACCEPT;
+        }
+        return 0;
+    }
+
+    /**
+     * Wakes up the selector and counts the wakeup, unless another thread has
+     * woken it up since the event loop polled the queue.
+     */
+    private void wakeup() {
+        final Selector selector = this.selector;
+        if (selector != null && wakeupPending.compareAndSet(false, true)) {
+            wakeups.increment();
+            selector.wakeup();
         }
     }
 
+    /**
+     * @return
+     */
+    private boolean isStopping() {
+        final Service.State state = this.state.get();
+        return state == Service.State.STOPPING || state == Service.State.STOPPED;
+    }
+
     /**
      * @return
      */
@@ -207,4 +631,74 @@ public class NioEventDispatcher implements EventDispatcher {
         }
         return false;
     }
+
+    /**
+     * The event executors which are registered for a channel. A channel can
+     * wait for the read and the write events at the same time, and each event
+     * is dispatched to its own event executor once.
+     * <p>
+     * The interest operations are changed only on the event loop thread, so
+     * they are kept here instead of being read back from the selection key.
+     */
+    private static final class Registration {
+        private EventExecutor read;
+        private EventExecutor write;
+        private EventExecutor accept;
+        private int interestOps;
+
+        /**
+         * Adds the given operations to the interest.
+         *
+         * @param ops
+         * @return the new interest operations.
+         */
+        int add(int ops) {
+            return interestOps |= ops;
+        }
+
+        /**
+         * Removes the given operations from the interest.
+         *
+         * @param ops
+         * @return the new interest operations.
+         */
+        int clear(int ops) {
+            return interestOps &= ~ops;
+        }
+
+        /**
+         * @param ops
+         * @param event
+         */
+        void set(int ops, EventExecutor event) {
+            if (ops == SelectionKey.OP_READ) {
+                read = event;
+            } else if (ops == SelectionKey.OP_WRITE) {
+                write = event;
+            } else if (ops == SelectionKey.OP_ACCEPT) {
+                accept = event;
+            }
+        }
+
+        /**
+         * Removes and returns the event executor of the given ready operation.
+         *
+         * @param ops
+         * @return
+         */
+        EventExecutor take(int ops) {
+            EventExecutor event = null;
+            if (ops == SelectionKey.OP_READ) {
+                event = read;
+                read = null;
+            } else if (ops == SelectionKey.OP_WRITE) {
+                event = write;
+                write = null;
+            } else if (ops == SelectionKey.OP_ACCEPT) {
+                event = accept;
+                accept = null;
+            }
+            return event;
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.dalcomlab.sattang.net.event.nio;
 
+import com.dalcomlab.sattang.common.HashedWheelTimer;
 import com.dalcomlab.sattang.net.Service;
 import com.dalcomlab.sattang.net.event.EventDispatcher;
 import com.dalcomlab.sattang.net.event.EventDispatcherGroup;
@@ -23,8 +24,12 @@ import com.dalcomlab.sattang.net.event.EventFuture;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -32,16 +37,37 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class NioEventDispatcherGroup implements EventDispatcherGroup {
     private ExecutorService executor;
-    private List<EventDispatcher> dispatchers = new ArrayList();
+    private ThreadFactory factory;
+    private List<NioEventDispatcher> dispatchers = new ArrayList();
     private AtomicReference<Service.State> state = new AtomicReference(Service.State.STOPPED);
-    private int counter = 0;
+    private long stallThreshold = 0;
+    private NioEventLoopWatchdog watchdog;
 
     /**
+     * Creates the group which runs each event dispatcher on its own thread
+     * made by the given factory. The ready events are handed off to the given
+     * executor unless the {@link EventExecutor#isInline} method returns
+     * <code>true</code>.
+     *
+     * @param executor
+     * @param factory
      * @param count
      */
-    public NioEventDispatcherGroup(ExecutorService executor, int count) {
+    public NioEventDispatcherGroup(ExecutorService executor, ThreadFactory factory, int count) {
+        this(executor, factory, count, NioEventDispatcher.DEFAULT_EVENT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param executor
+     * @param factory
+     * @param count
+     * @param eventQueueCapacity the capacity of the registration queue of each
+     *                           event dispatcher.
+     */
+    public NioEventDispatcherGroup(ExecutorService executor, ThreadFactory factory, int count, int eventQueueCapacity) {
         this.executor = executor;
-        this.dispatchers = createEventDispatchers(count);
+        this.factory = factory;
+        this.dispatchers = createEventDispatchers(Math.max(count, 1), eventQueueCapacity);
     }
 
 
@@ -57,7 +83,13 @@ public class NioEventDispatcherGroup implements EventDispatcherGroup {
         }
 
         for (EventDispatcher dispatcher : dispatchers) {
-            executor.submit(() -> dispatcher.start());
+            factory.newThread(dispatcher::start).start();
+        }
+        if (stallThreshold > 0) {
+            watchdog = new NioEventLoopWatchdog(dispatchers, stallThreshold);
+            final Thread thread = factory.newThread(watchdog);
+            thread.setName(thread.getName() + " watchdog");
+            thread.start();
         }
 
         state.set(Service.State.STARTED);
@@ -70,7 +102,7 @@ public class NioEventDispatcherGroup implements EventDispatcherGroup {
      */
     @Override
     public EventFuture register(EventExecutor event) {
-        final EventDispatcher dispatcher = takeEventDispatcher();
+        final NioEventDispatcher dispatcher = takeEventDispatcher();
         if (dispatcher != null) {
             dispatcher.register(event);
         } else {
@@ -79,12 +111,52 @@ public class NioEventDispatcherGroup implements EventDispatcherGroup {
         return null;
     }
 
+    /**
+     * Returns the least loaded one of two event dispatchers chosen at random.
+     *
+     * @return
+     */
+    @Override
+    public NioEventDispatcher next() {
+        return takeEventDispatcher();
+    }
+
+    /**
+     * Schedules the task on the timer of the least loaded event dispatcher.
+     *
+     * @param task
+     * @param delay
+     * @param unit
+     * @return
+     */
+    @Override
+    public HashedWheelTimer.Deadline schedule(Runnable task, long delay, TimeUnit unit) {
+        return takeEventDispatcher().schedule(task, delay, unit);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public boolean inEventLoop() {
+        for (EventDispatcher dispatcher : dispatchers) {
+            if (dispatcher.inEventLoop()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Stops the event dispatcher.
      */
     @Override
     public void stop() {
         state.set(Service.State.STOPPING);
+        if (watchdog != null) {
+            watchdog.stop();
+            watchdog = null;
+        }
         for (EventDispatcher dispatcher : dispatchers) {
             dispatcher.stop();
         }
@@ -92,26 +164,81 @@ public class NioEventDispatcherGroup implements EventDispatcherGroup {
     }
 
     /**
+     * Returns the event dispatchers of this group. The load of each event
+     * dispatcher can be read from the returned list.
+     *
      * @return
      */
-    private EventDispatcher takeEventDispatcher() {
-        int i = counter % dispatchers.size();
-        if (counter >= Integer.MAX_VALUE) {
-            counter = 0;
-        } else {
-            counter++;
+    public List<NioEventDispatcher> getEventDispatchers() {
+        return Collections.unmodifiableList(dispatchers);
+    }
+
+    /**
+     * Returns the time in nanoseconds after which an event loop which has not
+     * returned to the select is reported.
+     *
+     * @return
+     */
+    public long getStallThreshold() {
+        return stallThreshold;
+    }
+
+    /**
+     * Sets the time after which an event loop which has not returned to the
+     * select is reported with the stack of its thread. A value less than or
+     * equal to zero disables the watchdog. It must be set before the group is
+     * started.
+     *
+     * @param threshold
+     * @param unit
+     */
+    public void setStallThreshold(long threshold, TimeUnit unit) {
+        this.stallThreshold = unit.toNanos(threshold);
+    }
+
+    /**
+     * Sets whether the array of the selected keys is installed into the
+     * selector of each event dispatcher. It must be set before the group is
+     * started.
+     *
+     * @param optimizeSelectedKeys
+     * @see NioEventDispatcher#setOptimizeSelectedKeys
+     */
+    public void setOptimizeSelectedKeys(boolean optimizeSelectedKeys) {
+        for (NioEventDispatcher dispatcher : dispatchers) {
+            dispatcher.setOptimizeSelectedKeys(optimizeSelectedKeys);
+        }
+    }
+
+    /**
+     * Returns the least loaded one of two event dispatchers chosen at random
+     * (the power of two choices), which spreads the connections evenly without
+     * scanning all event dispatchers.
+     *
+     * @return
+     */
+    private NioEventDispatcher takeEventDispatcher() {
+        final int size = dispatchers.size();
+        if (size == 1) {
+            return dispatchers.get(0);
         }
-        return dispatchers.get(i);
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int i = random.nextInt(size);
+        final int j = (i + 1 + random.nextInt(size - 1)) % size;
+        final NioEventDispatcher first = dispatchers.get(i);
+        final NioEventDispatcher second = dispatchers.get(j);
+        return first.getLoad() <= second.getLoad() ? first : second;
     }
 
     /**
      * @param count
      * @return
      */
-    private List<EventDispatcher> createEventDispatchers(int count) {
-        List<EventDispatcher> dispatchers = new ArrayList(count);
+    private List<NioEventDispatcher> createEventDispatchers(int count, int eventQueueCapacity) {
+        List<NioEventDispatcher> dispatchers = new ArrayList(count);
         for (int i = 0; i < count; i++) {
-            dispatchers.add(new NioEventDispatcher(this.executor));
+            dispatchers.add(new NioEventDispatcher(this.executor, eventQueueCapacity));
         }
         return dispatchers;
     }
@@ -23,9 +23,11 @@ import java.nio.channels.SocketChannel;
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
-public abstract class NioEventExecutor implements EventExecutor<SocketChannel> {
+public abstract class NioEventExecutor implements EventExecutor<SocketChannel>, Runnable {
     private SocketChannel channel;
     private SocketEvent event;
+    private volatile NioEventDispatcher dispatcher;
+    private volatile long selected;
 
     /**
      * @param channel
@@ -51,4 +53,33 @@ public abstract class NioEventExecutor implements EventExecutor<SocketChannel> {
     public SocketEvent event() {
         return event;
     }
+
+    /**
+     * Binds the dispatcher which fired the event, so that this executor can be
+     * handed off to a worker thread as a {@link Runnable} without allocating
+     * a task for every event.
+     *
+     * @param dispatcher
+     * @param selected   the time when the event is selected.
+     * @return
+     */
+    Runnable bind(NioEventDispatcher dispatcher, long selected) {
+        this.dispatcher = dispatcher;
+        this.selected = selected;
+        return this;
+    }
+
+    /**
+     * Executes the event on the current thread.
+     */
+    @Override
+    public void run() {
+        final NioEventDispatcher dispatcher = this.dispatcher;
+        dispatcher.begin(selected);
+        try {
+            execute(channel, dispatcher);
+        } finally {
+            dispatcher.complete();
+        }
+    }
 }
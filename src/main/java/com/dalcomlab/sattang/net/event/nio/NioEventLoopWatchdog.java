@@ -0,0 +1,104 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.net.event.nio;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The watchdog which reports the event loops blocked by a task. An event loop
+ * which has not returned to the select for longer than the threshold is
+ * reported once per iteration with the stack of its thread, which shows the
+ * blocking task.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public class NioEventLoopWatchdog implements Runnable {
+    private final List<NioEventDispatcher> dispatchers;
+    private final long threshold;
+    private final long[] reported;
+    private volatile boolean running = true;
+
+    /**
+     * @param dispatchers the event dispatchers to watch.
+     * @param threshold   the threshold in nanoseconds.
+     */
+    public NioEventLoopWatchdog(List<NioEventDispatcher> dispatchers, long threshold) {
+        this.dispatchers = dispatchers;
+        this.threshold = threshold;
+        this.reported = new long[dispatchers.size()];
+    }
+
+    /**
+     * Checks the event loops at the half of the threshold until stopped.
+     */
+    @Override
+    public void run() {
+        final long interval = Math.max(TimeUnit.NANOSECONDS.toMillis(threshold / 2), 1);
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            check();
+        }
+    }
+
+    /**
+     * Stops the watchdog.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Reports the event loops which have not returned to the select for
+     * longer than the threshold.
+     */
+    void check() {
+        for (int i = 0; i < dispatchers.size(); i++) {
+            final NioEventDispatcher dispatcher = dispatchers.get(i);
+            final long iteration = dispatcher.getIterationCount();
+            final long busy = dispatcher.getBusyNanos();
+            if (busy < threshold || reported[i] == iteration) {
+                continue;
+            }
+
+            final Thread thread = dispatcher.getThread();
+            if (thread == null) {
+                continue;
+            }
+            reported[i] = iteration;
+            report(thread, busy);
+        }
+    }
+
+    /**
+     * @param thread
+     * @param busy
+     */
+    private void report(Thread thread, long busy) {
+        final StringBuilder message = new StringBuilder();
+        message.append("The event loop ").append(thread.getName())
+                .append(" has not returned to select() for ")
+                .append(TimeUnit.NANOSECONDS.toMillis(busy)).append("ms");
+        for (StackTraceElement element : thread.getStackTrace()) {
+            message.append(System.lineSeparator()).append("\tat ").append(element);
+        }
+        System.err.println(message);
+    }
+}
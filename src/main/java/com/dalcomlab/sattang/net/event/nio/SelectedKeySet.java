@@ -0,0 +1,155 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.net.event.nio;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The array of the selected keys, which replaces the hash set of the JDK
+ * selector. The selector adds each selected key to the end of the array, and
+ * the event loop reads the keys by index and resets the array, so neither of
+ * them allocates or hashes per key.
+ * <p>
+ * It is installed into the selector by reflection. On Java 9 or later it
+ * requires <code>--add-opens java.base/sun.nio.ch=ALL-UNNAMED</code>; if the
+ * access is not permitted, the selector keeps its own set.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+    private SelectionKey[] keys = new SelectionKey[1024];
+    private int size = 0;
+
+    /**
+     * Installs a new key set into the given selector.
+     *
+     * @param selector
+     * @return <code>null</code> if the selector does not permit it.
+     */
+    static SelectedKeySet install(Selector selector) {
+        try {
+            final Class<?> type = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+            if (!type.isAssignableFrom(selector.getClass())) {
+                return null;
+            }
+
+            final Field selectedKeys = type.getDeclaredField("selectedKeys");
+            final Field publicSelectedKeys = type.getDeclaredField("publicSelectedKeys");
+            selectedKeys.setAccessible(true);
+            publicSelectedKeys.setAccessible(true);
+
+            final SelectedKeySet keySet = new SelectedKeySet();
+            selectedKeys.set(selector, keySet);
+            publicSelectedKeys.set(selector, keySet);
+            return keySet;
+        } catch (Exception | LinkageError e) {
+            // the module of the selector is not open, or the fields are changed.
+            return null;
+        }
+    }
+
+    /**
+     * @param key
+     * @return
+     */
+    @Override
+    public boolean add(SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size++] = key;
+        return true;
+    }
+
+    /**
+     * Returns the selected key at the given index.
+     *
+     * @param index
+     * @return
+     */
+    SelectionKey get(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Removes all keys, and releases the references of them.
+     */
+    void reset() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * The selector adds a key once per select, so the keys are not looked up.
+     *
+     * @param o
+     * @return
+     */
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    /**
+     * @param o
+     * @return
+     */
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index++];
+            }
+        };
+    }
+}
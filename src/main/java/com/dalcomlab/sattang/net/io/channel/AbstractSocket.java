@@ -17,8 +17,12 @@ package com.dalcomlab.sattang.net.io.channel;
 
 import com.dalcomlab.sattang.concurrent.CompletionHandler;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -57,6 +61,54 @@ public interface AbstractSocket {
      */
     int writeBlocking(ByteBuffer buffer) throws IOException;
 
+    /**
+     * Write the given buffers in order to this write channel in blocking mode.
+     * The socket which supports the gathering write writes them together.
+     *
+     * @param buffers
+     * @return
+     * @throws IOException
+     */
+    default long writeBlocking(ByteBuffer[] buffers) throws IOException {
+        long consume = 0;
+        for (ByteBuffer buffer : buffers) {
+            consume += writeBlocking(buffer);
+        }
+        return consume;
+    }
+
+    /**
+     * Transfers the given region of the file to this socket in blocking mode.
+     * The socket which supports the zero-copy transfer sends the file without
+     * copying it to the user space; otherwise the file is written through a
+     * pooled buffer.
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    default long transferBlocking(FileChannel file, long position, long count) throws IOException {
+        final ByteBuffer buffer = ByteBufferPool.direct().acquire(ByteBufferPool.MAX_BUFFER_SIZE);
+        try {
+            long transferred = 0;
+            while (transferred < count) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+                int n = file.read(buffer, position + transferred);
+                if (n < 0) {
+                    throw new EOFException("the file is shorter than " + (position + count) + " bytes.");
+                }
+                buffer.flip();
+                transferred += writeBlocking(buffer);
+            }
+            return transferred;
+        } finally {
+            ByteBufferPool.direct().release(buffer);
+        }
+    }
+
     /**
      * Reads some data from this read channel in async mode.
      *
@@ -16,10 +16,24 @@
 
 package com.dalcomlab.sattang.net.io.channel;
 
+import java.io.IOException;
 import java.net.NetworkInterface;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
 import java.util.Optional;
+import java.util.Set;
 
 /**
+ * The profile of the socket options which is applied to a channel. An option
+ * which is not set keeps the system default, and an option which the channel
+ * does not support is ignored.
+ * <p>
+ * The extended options of <code>jdk.net.ExtendedSocketOptions</code>, such as
+ * <code>TCP_QUICKACK</code> and <code>TCP_KEEPIDLE</code>, are looked up by
+ * name from the options of the channel, so they are applied only on the
+ * platforms which provide them (Linux on Java 10 or later).
+ *
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public final class SocketOptions {
@@ -35,6 +49,23 @@ public final class SocketOptions {
     private Integer ipMulticastTtl = null;
     private Boolean ipMulticastLoop = null;
     private Boolean tcpNoDelay = null;
+    private Boolean tcpQuickAck = null;
+    private Integer tcpKeepIdle = null;
+    private Integer tcpKeepInterval = null;
+    private Integer tcpKeepCount = null;
+
+    /**
+     * Returns the default profile of the server sockets, which disables the
+     * Nagle's algorithm (<code>TCP_NODELAY</code>) so that the small responses
+     * are not delayed.
+     *
+     * @return
+     */
+    public static SocketOptions defaults() {
+        SocketOptions options = new SocketOptions();
+        options.setTcpNodelay(true);
+        return options;
+    }
 
 
     /**
@@ -191,4 +222,137 @@ public final class SocketOptions {
         this.tcpNoDelay = tcpNoDelay;
     }
 
+    /**
+     * @return
+     */
+    public Optional<Boolean> getTcpQuickAck() {
+        return Optional.ofNullable(tcpQuickAck);
+    }
+
+    /**
+     * Sets the <code>TCP_QUICKACK</code> option which sends the acknowledgements
+     * immediately instead of delaying them. Linux resets the option after some
+     * operations, so it only affects the first exchanges of a connection.
+     *
+     * @param tcpQuickAck
+     */
+    public void setTcpQuickAck(Boolean tcpQuickAck) {
+        this.tcpQuickAck = tcpQuickAck;
+    }
+
+    /**
+     * @return
+     */
+    public Optional<Integer> getTcpKeepIdle() {
+        return Optional.ofNullable(tcpKeepIdle);
+    }
+
+    /**
+     * Sets the <code>TCP_KEEPIDLE</code> option, the idle time in seconds
+     * before the first keep-alive probe is sent.
+     *
+     * @param tcpKeepIdle
+     */
+    public void setTcpKeepIdle(Integer tcpKeepIdle) {
+        this.tcpKeepIdle = tcpKeepIdle;
+    }
+
+    /**
+     * @return
+     */
+    public Optional<Integer> getTcpKeepInterval() {
+        return Optional.ofNullable(tcpKeepInterval);
+    }
+
+    /**
+     * Sets the <code>TCP_KEEPINTERVAL</code> option, the time in seconds between
+     * the keep-alive probes.
+     *
+     * @param tcpKeepInterval
+     */
+    public void setTcpKeepInterval(Integer tcpKeepInterval) {
+        this.tcpKeepInterval = tcpKeepInterval;
+    }
+
+    /**
+     * @return
+     */
+    public Optional<Integer> getTcpKeepCount() {
+        return Optional.ofNullable(tcpKeepCount);
+    }
+
+    /**
+     * Sets the <code>TCP_KEEPCOUNT</code> option, the number of the keep-alive
+     * probes which are sent before the connection is dropped.
+     *
+     * @param tcpKeepCount
+     */
+    public void setTcpKeepCount(Integer tcpKeepCount) {
+        this.tcpKeepCount = tcpKeepCount;
+    }
+
+    /**
+     * Applies the options which are set to the given channel. It can be a
+     * listening channel; the receive buffer size of a listening channel is
+     * inherited by the accepted channels.
+     *
+     * @param channel
+     * @throws IOException
+     */
+    public void apply(NetworkChannel channel) throws IOException {
+        final Set<SocketOption<?>> supported = channel.supportedOptions();
+        apply(channel, supported, StandardSocketOptions.SO_BROADCAST, soBroadcast);
+        apply(channel, supported, StandardSocketOptions.SO_KEEPALIVE, soKeepalive);
+        apply(channel, supported, StandardSocketOptions.SO_SNDBUF, soSendBufferSize);
+        apply(channel, supported, StandardSocketOptions.SO_RCVBUF, soReceiveBufferSize);
+        apply(channel, supported, StandardSocketOptions.SO_REUSEADDR, soReuseaddr);
+        apply(channel, supported, StandardSocketOptions.SO_LINGER, soLinger);
+        apply(channel, supported, StandardSocketOptions.IP_TOS, ipTos);
+        apply(channel, supported, StandardSocketOptions.IP_MULTICAST_IF, ipMulticastIf);
+        apply(channel, supported, StandardSocketOptions.IP_MULTICAST_TTL, ipMulticastTtl);
+        apply(channel, supported, StandardSocketOptions.IP_MULTICAST_LOOP, ipMulticastLoop);
+        apply(channel, supported, StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        apply(channel, supported, "TCP_QUICKACK", tcpQuickAck);
+        apply(channel, supported, "TCP_KEEPIDLE", tcpKeepIdle);
+        apply(channel, supported, "TCP_KEEPINTERVAL", tcpKeepInterval);
+        apply(channel, supported, "TCP_KEEPCOUNT", tcpKeepCount);
+    }
+
+    /**
+     * @param channel
+     * @param supported
+     * @param option
+     * @param value
+     * @param <T>
+     * @throws IOException
+     */
+    private static <T> void apply(NetworkChannel channel, Set<SocketOption<?>> supported, SocketOption<T> option, T value) throws IOException {
+        if (value != null && supported.contains(option)) {
+            channel.setOption(option, value);
+        }
+    }
+
+    /**
+     * Applies the extended option which is found by the name.
+     *
+     * @param channel
+     * @param supported
+     * @param name
+     * @param value
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    private static void apply(NetworkChannel channel, Set<SocketOption<?>> supported, String name, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        for (SocketOption<?> option : supported) {
+            if (option.name().equals(name) && option.type().isInstance(value)) {
+                channel.setOption((SocketOption<Object>) option, value);
+                return;
+            }
+        }
+    }
+
 }
@@ -15,21 +15,44 @@
  */
 package com.dalcomlab.sattang.net.io.channel.nio;
 
+import com.dalcomlab.sattang.common.HashedWheelTimer;
 import com.dalcomlab.sattang.concurrent.CompletionHandler;
 import com.dalcomlab.sattang.net.ChannelCloseException;
+import com.dalcomlab.sattang.net.event.EventDispatcher;
+import com.dalcomlab.sattang.net.event.EventExecutor;
+import com.dalcomlab.sattang.net.event.SocketEvent;
 import com.dalcomlab.sattang.net.io.channel.AbstractSocket;
 import com.dalcomlab.sattang.net.io.channel.SocketOptions;
+import com.dalcomlab.sattang.net.socket.SocketSelectorPool;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.net.StandardSocketOptions;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class NioSocket implements AbstractSocket {
+    private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_DEFERRED_CHUNK = 64 * 1024;
     private final SocketChannel channel;
+    private final Deque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private final Waiter readWaiter = new Waiter(SocketEvent.READ);
+    private final Waiter writeWaiter = new Waiter(SocketEvent.WRITE);
+    private volatile EventDispatcher dispatcher;
+    private volatile SocketSelectorPool selectors;
+    private volatile long readTimeout = 0;
+    private volatile long writeTimeout = 0;
 
     /**
      * @param channel
@@ -46,32 +69,54 @@ public class NioSocket implements AbstractSocket {
     @Override
     public void config(SocketOptions options) {
         try {
-            if (options.getBroadcast().get() != null) {
-                channel.setOption(StandardSocketOptions.SO_BROADCAST, options.getBroadcast().get());
-            }
-
-            if (options.getSolLinger().get() != null) {
-                channel.setOption(StandardSocketOptions.SO_LINGER, options.getSolLinger().get());
-            }
+            options.apply(channel);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-            if (options.getReceiveBufferSize().get() != null) {
-                channel.setOption(StandardSocketOptions.SO_RCVBUF, options.getReceiveBufferSize().get());
-            }
+    /**
+     * Sets the {@link EventDispatcher} which the channel is registered in. The
+     * blocking read and write wait for the readiness of the channel through it.
+     *
+     * @param dispatcher
+     */
+    public void setEventDispatcher(EventDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
 
-            if (options.getSendBufferSize().get() != null) {
-                channel.setOption(StandardSocketOptions.SO_SNDBUF, options.getSendBufferSize().get());
-            }
+    /**
+     * Sets the {@link SocketSelectorPool} which the blocking read and write on
+     * the event loop thread wait with.
+     *
+     * @param selectors
+     */
+    public void setSelectorPool(SocketSelectorPool selectors) {
+        this.selectors = selectors;
+    }
 
-            if (options.getKeepAlive().get() != null) {
-                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, options.getKeepAlive().get());
-            }
+    /**
+     * Sets the maximum time in milliseconds that a blocking read waits for the
+     * next data. When the time is elapsed, the socket is closed and the read
+     * throws the {@link SocketTimeoutException}. A value less than or equal to
+     * zero means no timeout.
+     *
+     * @param readTimeout
+     */
+    public void setReadTimeout(long readTimeout) {
+        this.readTimeout = readTimeout;
+    }
 
-            if (options.getTcpNodelay().get() != null) {
-                channel.setOption(StandardSocketOptions.TCP_NODELAY, options.getTcpNodelay().get());
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /**
+     * Sets the maximum time in milliseconds that a blocking write waits until
+     * the peer receives more data. When the time is elapsed, the socket is
+     * closed and the write throws the {@link SocketTimeoutException}. A value
+     * less than or equal to zero means no timeout.
+     *
+     * @param writeTimeout
+     */
+    public void setWriteTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
     }
 
     /**
@@ -95,6 +140,11 @@ public class NioSocket implements AbstractSocket {
 
     /**
      * Write some data to this write channel in blocking mode.
+     * <p>
+     * When the socket buffer is full, the thread waits until the channel is
+     * writable instead of retrying the write. The event loop thread must not
+     * wait, so the bytes which can not be written are copied and kept as the
+     * pending writes, which are written by {@link #flush} later.
      *
      * @param buffer
      * @return
@@ -102,14 +152,278 @@ public class NioSocket implements AbstractSocket {
     @Override
     public int writeBlocking(ByteBuffer buffer) throws IOException {
         int consume = buffer.remaining();
+        if (inEventLoop()) {
+            if (!flushPending() || !writeNow(buffer)) {
+                defer(buffer);
+            }
+            return consume;
+        }
+
+        flush();
+        writeFully(buffer);
+        return consume;
+    }
+
+    /**
+     * Writes all bytes of the given buffer, waiting until the channel is
+     * writable whenever the socket buffer is full.
+     *
+     * @param buffer
+     * @throws IOException
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        long stalled = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                int n = channel.write(buffer);
+                if (n == -1) {
+                    throw new ChannelCloseException("");
+                }
+
+                if (n > 0) {
+                    stalled = 0;
+                    continue;
+                }
+
+                if (stalled == 0) {
+                    stalled = System.nanoTime();
+                }
+
+                await(writeWaiter, stalled);
+            }
+        } finally {
+            writeWaiter.disarm();
+        }
+    }
+
+    /**
+     * Write the given buffers in order to this write channel in blocking mode.
+     * The buffers are written together by a gathering write, so that they are
+     * sent by one system call as far as the socket buffer allows.
+     *
+     * @param buffers
+     * @return
+     */
+    @Override
+    public long writeBlocking(ByteBuffer[] buffers) throws IOException {
+        long consume = 0;
+        for (ByteBuffer buffer : buffers) {
+            consume += buffer.remaining();
+        }
+
+        if (inEventLoop()) {
+            for (ByteBuffer buffer : buffers) {
+                writeBlocking(buffer);
+            }
+            return consume;
+        }
+
+        flush();
+        int offset = 0;
+        long stalled = 0;
+        try {
+            while (offset < buffers.length) {
+                if (!buffers[offset].hasRemaining()) {
+                    offset++;
+                    continue;
+                }
+
+                long n = channel.write(buffers, offset, buffers.length - offset);
+                if (n == -1) {
+                    throw new ChannelCloseException("");
+                }
+
+                if (n > 0) {
+                    stalled = 0;
+                    continue;
+                }
+
+                if (stalled == 0) {
+                    stalled = System.nanoTime();
+                }
+
+                await(writeWaiter, stalled);
+            }
+        } finally {
+            writeWaiter.disarm();
+        }
+
+        return consume;
+    }
+
+    /**
+     * Transfers the given region of the file to this socket in blocking mode
+     * by {@link FileChannel#transferTo}, which lets the kernel send the file
+     * without copying it to the user space.
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public long transferBlocking(FileChannel file, long position, long count) throws IOException {
+        if (inEventLoop()) {
+            return transferNow(file, position, count);
+        }
+
+        flush();
+        long transferred = 0;
+        long stalled = 0;
+        try {
+            while (transferred < count) {
+                long n = file.transferTo(position + transferred, count - transferred, channel);
+                if (n > 0) {
+                    transferred += n;
+                    stalled = 0;
+                    continue;
+                }
+
+                if (position + transferred >= file.size()) {
+                    throw new EOFException("the file is shorter than " + (position + count) + " bytes.");
+                }
+
+                if (stalled == 0) {
+                    stalled = System.nanoTime();
+                }
+
+                await(writeWaiter, stalled);
+            }
+        } finally {
+            writeWaiter.disarm();
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Transfers the given region of the file to this socket without waiting on
+     * the event loop thread. The bytes which can not be sent are read from the
+     * file into the pending writes, because the file may be closed after the
+     * transfer.
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    private long transferNow(FileChannel file, long position, long count) throws IOException {
+        long transferred = 0;
+        if (flushPending()) {
+            while (transferred < count) {
+                long n = file.transferTo(position + transferred, count - transferred, channel);
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+        }
+
+        while (transferred < count) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count - transferred, MAX_DEFERRED_CHUNK));
+            while (buffer.hasRemaining()) {
+                if (file.read(buffer, position + transferred + buffer.position()) < 0) {
+                    throw new EOFException("the file is shorter than " + (position + count) + " bytes.");
+                }
+            }
+            buffer.flip();
+            transferred += buffer.remaining();
+            pendingWrites.add(buffer);
+        }
+        return transferred;
+    }
+
+    /**
+     * Determines whether some bytes written on the event loop thread are not
+     * written to the socket yet.
+     *
+     * @return
+     */
+    public boolean hasPendingWrites() {
+        return !pendingWrites.isEmpty();
+    }
+
+    /**
+     * Writes the pending writes in order. On the event loop thread, only the
+     * bytes which the socket buffer can take are written, otherwise the thread
+     * waits until all of them are written.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (inEventLoop()) {
+            flushPending();
+            return;
+        }
+
+        ByteBuffer buffer;
+        while ((buffer = pendingWrites.peek()) != null) {
+            writeFully(buffer);
+            pendingWrites.poll();
+        }
+    }
+
+    /**
+     * Writes the pending writes in order without waiting.
+     *
+     * @return <code>true</code> if all pending writes are written.
+     * @throws IOException
+     */
+    private boolean flushPending() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = pendingWrites.peek()) != null) {
+            if (!writeNow(buffer)) {
+                return false;
+            }
+            pendingWrites.poll();
+        }
+        return true;
+    }
 
+    /**
+     * Writes the given buffer as far as the socket buffer allows.
+     *
+     * @param buffer
+     * @return <code>true</code> if all bytes of the buffer are written.
+     * @throws IOException
+     */
+    private boolean writeNow(ByteBuffer buffer) throws IOException {
         while (buffer.hasRemaining()) {
-            if (channel.write(buffer) == -1) {
+            int n = channel.write(buffer);
+            if (n == -1) {
                 throw new ChannelCloseException("");
             }
+            if (n == 0) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        return consume;
+    /**
+     * Copies the remaining bytes of the given buffer to the pending writes,
+     * because the caller may reuse the buffer.
+     *
+     * @param buffer
+     */
+    private void defer(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer);
+        copy.flip();
+        pendingWrites.add(copy);
+    }
+
+    /**
+     * Determines whether the current thread is the event loop thread which the
+     * channel is registered in.
+     *
+     * @return
+     */
+    private boolean inEventLoop() {
+        final EventDispatcher dispatcher = this.dispatcher;
+        return dispatcher != null && dispatcher.inEventLoop();
     }
 
     /**
@@ -126,6 +440,9 @@ public class NioSocket implements AbstractSocket {
 
     /**
      * Reads some data from this read channel in blocking mode.
+     * <p>
+     * When there is no data to read, the thread waits until the channel is
+     * readable instead of retrying the read.
      *
      * @param buffer
      * @return
@@ -133,11 +450,27 @@ public class NioSocket implements AbstractSocket {
     @Override
     public int readBlocking(ByteBuffer buffer) throws IOException {
         int consume = buffer.remaining();
+        long idle = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer);
+                if (n == -1) {
+                    throw new ChannelCloseException("");
+                }
 
-        while (buffer.hasRemaining()) {
-            if (channel.read(buffer) == -1) {
-                throw new ChannelCloseException("");
+                if (n > 0) {
+                    idle = 0;
+                    continue;
+                }
+
+                if (idle == 0) {
+                    idle = System.nanoTime();
+                }
+
+                await(readWaiter, idle);
             }
+        } finally {
+            readWaiter.disarm();
         }
 
         return consume;
@@ -152,4 +485,205 @@ public class NioSocket implements AbstractSocket {
     public void close() throws IOException {
        this.channel.close();
     }
+
+    /**
+     * Returns the remaining time in nanoseconds until the timeout of the
+     * blocking operation which has been waiting since the given time.
+     *
+     * @param since
+     * @param timeout the timeout in milliseconds, or zero if there is no timeout.
+     * @return
+     */
+    private long getRemainingNanos(long since, long timeout) {
+        if (timeout <= 0) {
+            return MAX_WAIT_NANOS;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeout) - (System.nanoTime() - since);
+        return Math.min(remaining, MAX_WAIT_NANOS);
+    }
+
+    /**
+     * Waits until the event of the given waiter is ready, or fails when the
+     * blocking operation has been waiting since the given time for longer
+     * than its timeout.
+     * <p>
+     * The thread is parked until the event dispatcher which the channel is
+     * registered in selects the event, and the timeout is a deadline on the
+     * timer wheel of the event dispatcher, which unparks the thread when it is
+     * expired. The event loop thread itself can not wait for its own event
+     * dispatcher, and so it selects the event with a temporary selector from
+     * the {@link SocketSelectorPool} and checks the elapsed time instead. The
+     * writes on the event loop thread never wait, and the connection hands off
+     * the request of which body is not read yet to a worker thread, so only
+     * the socket without the event dispatcher waits that way in practice.
+     *
+     * @param waiter
+     * @param since the time when the operation has stopped making progress.
+     * @throws IOException
+     */
+    private void await(Waiter waiter, long since) throws IOException {
+        final long timeout = waiter.isRead() ? readTimeout : writeTimeout;
+        final EventDispatcher dispatcher = this.dispatcher;
+        if (dispatcher == null || dispatcher.inEventLoop()) {
+            long remaining = getRemainingNanos(since, timeout);
+            if (remaining <= 0) {
+                throw timeout(waiter, timeout);
+            }
+            select(waiter, remaining);
+            return;
+        }
+
+        if (timeout > 0 && waiter.since != since) {
+            waiter.arm(dispatcher, since, timeout);
+        }
+
+        waiter.thread = Thread.currentThread();
+        if (!waiter.expired) {
+            dispatcher.register(waiter);
+            LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+        }
+        waiter.thread = null;
+        if (waiter.expired) {
+            throw timeout(waiter, timeout);
+        }
+    }
+
+    /**
+     * Closes the socket whose blocking operation is timed out.
+     *
+     * @param waiter
+     * @param timeout
+     * @return
+     * @throws IOException
+     */
+    private SocketTimeoutException timeout(Waiter waiter, long timeout) throws IOException {
+        waiter.disarm();
+        close();
+        if (waiter.isRead()) {
+            return new SocketTimeoutException("no data is read for " + timeout + "ms.");
+        }
+        return new SocketTimeoutException("the write is stalled for " + timeout + "ms.");
+    }
+
+    /**
+     * Selects the event of the given waiter with a temporary selector.
+     *
+     * @param waiter
+     * @param nanos
+     * @throws IOException
+     */
+    private void select(Waiter waiter, long nanos) throws IOException {
+        final SocketSelectorPool selectors = this.selectors;
+        final Selector selector = selectors != null ? selectors.poll() : null;
+        if (selector == null) {
+            // there is nothing to wait with.
+            LockSupport.parkNanos(this, MIN_WAIT_NANOS);
+            return;
+        }
+
+        SelectionKey key = null;
+        try {
+            key = channel.register(selector, waiter.isRead() ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+            selector.select(Math.max(TimeUnit.NANOSECONDS.toMillis(nanos), 1));
+        } finally {
+            if (key != null) {
+                // deregisters the channel, so that the selector can be reused.
+                key.cancel();
+                selector.selectNow();
+            }
+            selectors.offer(selector);
+        }
+    }
+
+    /**
+     * The inline event executor which unparks the waiting thread when the
+     * channel is ready, or when the deadline of the blocking operation is
+     * expired.
+     */
+    private class Waiter implements EventExecutor<SocketChannel> {
+        private final SocketEvent event;
+        private volatile Thread thread;
+        private volatile boolean expired;
+        private volatile int generation;
+        private HashedWheelTimer.Deadline deadline;
+        private long since;
+
+        /**
+         * @param event
+         */
+        Waiter(SocketEvent event) {
+            this.event = event;
+        }
+
+        @Override
+        public SocketChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public SocketEvent event() {
+            return event;
+        }
+
+        @Override
+        public boolean isInline() {
+            return true;
+        }
+
+        @Override
+        public void execute(SocketChannel channel, EventDispatcher dispatcher) {
+            cancel();
+        }
+
+        @Override
+        public void cancel() {
+            final Thread thread = this.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Schedules the deadline of the operation which has stopped making
+         * progress since the given time, replacing the previous deadline.
+         *
+         * @param dispatcher
+         * @param since
+         * @param timeout    the timeout in milliseconds.
+         */
+        void arm(EventDispatcher dispatcher, long since, long timeout) {
+            disarm();
+            this.since = since;
+            final int armed = ++generation;
+            final long delay = TimeUnit.MILLISECONDS.toNanos(timeout) - (System.nanoTime() - since);
+            deadline = dispatcher.schedule(() -> expire(armed), Math.max(delay, 0), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Cancels the deadline when the operation is completed.
+         */
+        void disarm() {
+            if (deadline != null) {
+                deadline.cancel();
+                deadline = null;
+            }
+            since = 0;
+            if (expired) {
+                expired = false;
+            }
+        }
+
+        /**
+         * Called on the event loop thread when the deadline is expired. The
+         * deadline which has been replaced is ignored.
+         *
+         * @param armed
+         */
+        private void expire(int armed) {
+            if (armed == generation) {
+                expired = true;
+                cancel();
+            }
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.dalcomlab.sattang.net.io.read;
 
+import com.dalcomlab.sattang.Reusable;
 import com.dalcomlab.sattang.concurrent.CompletionHandler;
 import com.dalcomlab.sattang.net.Connection;
 import com.dalcomlab.sattang.net.Filterable;
@@ -24,7 +25,7 @@ import java.nio.ByteBuffer;
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
-public interface ReadChannel extends Filterable<ReadFilter> {
+public interface ReadChannel extends Filterable<ReadFilter>, Reusable {
 
     /**
      * Returns the {@link ByteBuffer} for this read channel.
@@ -103,6 +104,13 @@ public interface ReadChannel extends Filterable<ReadFilter> {
      */
     void close();
 
+    /**
+     * Releases the buffers and the filters of the read channel. It is called
+     * when the connection is closed, and the read channel can not be used
+     * after it is released.
+     */
+    void release();
+
     /**
      * Sets the new {@link ReadChannelListener} instance on the read channel.
      * <ul>
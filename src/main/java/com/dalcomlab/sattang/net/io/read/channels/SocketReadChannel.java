@@ -15,7 +15,9 @@
  */
 package com.dalcomlab.sattang.net.io.read.channels;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
 import com.dalcomlab.sattang.concurrent.CompletionHandler;
+import com.dalcomlab.sattang.metrics.Counter;
 import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.Connection;
 import com.dalcomlab.sattang.net.io.ChannelState;
@@ -41,6 +43,7 @@ public class SocketReadChannel implements ReadChannel {
     private ReadChannelListener listener = null;
     private ByteBuffer buffer;
     private ChannelState state = ChannelState.INIT;
+    private Counter bytesRead = null;
 
     /**
      * @param socket
@@ -59,15 +62,54 @@ public class SocketReadChannel implements ReadChannel {
             }
 
             public int read(ReadChannel channel, ByteBuffer dst) throws IOException {
-                return socket.readBlocking(dst);
+                int consume = socket.readBlocking(dst);
+                count(consume);
+                return consume;
             }
         };
 
-        this.buffer = ByteBuffer.allocate(1024 * 8);
+        // the read buffer is in a read mode, and it is empty at first. the
+        // decoders read the backing array, so it is a heap buffer.
+        this.buffer = ByteBufferPool.heap().acquire(1024 * 8);
+        this.buffer.flip();
         this.bufferFilter = new ReadBufferFilter(this.buffer);
         bufferFilter.next(readFilter);
     }
 
+    /**
+     * Sets the {@link Counter} which counts the bytes read from the socket.
+     *
+     * @param bytesRead
+     */
+    public void setByteCounter(Counter bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    /**
+     * Counts the bytes read from the socket, which includes the bytes read by
+     * the connection directly into the read buffer.
+     *
+     * @param read
+     */
+    public void count(int read) {
+        if (bytesRead != null) {
+            bytesRead.add(read);
+        }
+    }
+
+    /**
+     * Initializes the read channel for the next request on the same connection.
+     * <p>
+     * The installed filters are removed, so the {@link ReadChannelListener#onStart}
+     * event will be fired again by the next {@link #start} call. The read buffer
+     * is not touched because it may still hold bytes of the next request.
+     */
+    @Override
+    public void reuse() {
+        removeAllFilters();
+        state = ChannelState.INIT;
+    }
+
     /**
      * Returns the {@link ByteBuffer} for this read channel.
      *
@@ -254,6 +296,19 @@ public class SocketReadChannel implements ReadChannel {
         }
     }
 
+    /**
+     * Releases the read buffer to the pool, and removes the all filters.
+     */
+    @Override
+    public void release() {
+        close();
+        removeAllFilters();
+        if (buffer != null) {
+            ByteBufferPool.heap().release(buffer);
+            buffer = null;
+        }
+    }
+
     /**
      * Sets the new {@link ReadChannelListener} instance on the read channel.
      * <ul>
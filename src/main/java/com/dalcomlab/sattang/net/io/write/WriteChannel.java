@@ -15,16 +15,18 @@
  */
 package com.dalcomlab.sattang.net.io.write;
 
+import com.dalcomlab.sattang.Reusable;
 import com.dalcomlab.sattang.net.Connection;
 import com.dalcomlab.sattang.net.Filterable;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
-public interface WriteChannel extends Filterable<WriteFilter> {
+public interface WriteChannel extends Filterable<WriteFilter>, Reusable {
 
     /**
      * Returns the {@link ByteBuffer} for this write channel.
@@ -67,6 +69,34 @@ public interface WriteChannel extends Filterable<WriteFilter> {
      */
     int writeBlocking(ByteBuffer buffer, boolean useFilter);
 
+    /**
+     * Write the given buffers in order to this write channel in blocking mode.
+     * <p>
+     * The buffers are passed to the first filter's {@link WriteFilter#write(WriteChannel, ByteBuffer[])}
+     * method at once, so that the socket can write them by a gathering write.
+     *
+     * @param buffers
+     * @param useFilter
+     * @return
+     */
+    long writeBlocking(ByteBuffer[] buffers, boolean useFilter);
+
+    /**
+     * Transfers the given region of the file to this write channel in blocking
+     * mode.
+     * <p>
+     * The file is passed to the first filter's {@link WriteFilter#transferFrom}
+     * method. If no filter needs to see the bytes, the socket sends the file
+     * without copying it to the user space.
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @param useFilter
+     * @return
+     */
+    long transferBlocking(FileChannel file, long position, long count, boolean useFilter);
+
 
     /**
      * Flushes the remaining buffer in this write channel.
@@ -80,6 +110,22 @@ public interface WriteChannel extends Filterable<WriteFilter> {
      */
     void flush() throws IOException;
 
+    /**
+     * Corks this write channel.
+     * <p>
+     * While the write channel is corked, the written data is collected in the
+     * write buffer instead of being written to the socket one by one, and is
+     * written only when the write buffer is full or {@link #uncork} is called.
+     * This is used to write several pipelined responses with as few system
+     * calls as possible.
+     */
+    void cork();
+
+    /**
+     * Uncorks this write channel and writes the collected data to the socket.
+     */
+    void uncork();
+
     /**
      * This method calls the {@link WriteChannelListener#onStart} method.
      *
@@ -112,6 +158,13 @@ public interface WriteChannel extends Filterable<WriteFilter> {
      */
     void close();
 
+    /**
+     * Releases the buffers and the filters of the write channel. It is called
+     * when the connection is closed, and the write channel can not be used
+     * after it is released.
+     */
+    void release();
+
     /**
      * Sets the new {@link WriteChannelListener} instance on the write channel.
      * <ul>
@@ -15,10 +15,14 @@
  */
 package com.dalcomlab.sattang.net.io.write;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.Filter;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -45,6 +49,70 @@ public interface WriteFilter extends Filter<WriteFilter> {
         return 0;
     }
 
+    /**
+     * Writes the given buffers in order to this filter.
+     * <p>
+     * By default, the buffers are written one by one by the {@link #write(WriteChannel, ByteBuffer)}
+     * method. The filter which only adds the framing around the data, or passes
+     * the data through, overrides this method and passes the buffers to the next
+     * filter at once, so that the socket writes them by a gathering write.
+     *
+     * @param channel
+     * @param sources
+     * @return
+     * @throws IOException
+     */
+    default long write(WriteChannel channel, ByteBuffer[] sources) throws IOException {
+        long consume = 0;
+        for (ByteBuffer source : sources) {
+            int n = write(channel, source);
+            if (n == ChannelConstants.END_OF_CHANNEL) {
+                return n;
+            }
+            consume += n;
+        }
+        return consume;
+    }
+
+    /**
+     * Transfers the given region of the file to this filter.
+     * <p>
+     * By default, the file is read into a pooled buffer and written by the
+     * {@link #write(WriteChannel, ByteBuffer)} method, so that the filter which
+     * transforms the data sees the bytes. The filter which does not change the
+     * data overrides this method and passes the file to the next filter, so
+     * that the socket sends it without copying it to the user space.
+     *
+     * @param channel
+     * @param file
+     * @param position
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    default long transferFrom(WriteChannel channel, FileChannel file, long position, long count) throws IOException {
+        final ByteBuffer buffer = ByteBufferPool.direct().acquire(ByteBufferPool.MAX_BUFFER_SIZE);
+        try {
+            long consume = 0;
+            while (consume < count) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), count - consume));
+                int n = file.read(buffer, position + consume);
+                if (n < 0) {
+                    throw new EOFException("the file is shorter than " + (position + count) + " bytes.");
+                }
+                buffer.flip();
+                if (write(channel, buffer) == ChannelConstants.END_OF_CHANNEL) {
+                    return ChannelConstants.END_OF_CHANNEL;
+                }
+                consume += n;
+            }
+            return consume;
+        } finally {
+            ByteBufferPool.direct().release(buffer);
+        }
+    }
+
     /**
      * Flushes the remaining buffer in this filter.
      * This method will be called in the {@link WriteChannel#flush}
@@ -15,6 +15,8 @@
  */
 package com.dalcomlab.sattang.net.io.write.channels;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+import com.dalcomlab.sattang.metrics.Counter;
 import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.Connection;
 import com.dalcomlab.sattang.net.io.ChannelState;
@@ -25,6 +27,7 @@ import com.dalcomlab.sattang.net.io.write.WriteFilter;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Deque;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
@@ -37,8 +40,10 @@ public class SocketWriteChannel implements WriteChannel {
     private final WriteFilter writeFilter;
     private WriteChannelListener listener = null;
     private boolean isCommitted = false;
+    private boolean isCorked = false;
     private ByteBuffer buffer;
     private ChannelState state = ChannelState.INIT;
+    private Counter bytesWritten = null;
 
     /**
      * @param socket
@@ -47,11 +52,55 @@ public class SocketWriteChannel implements WriteChannel {
         this.socket = socket;
         this.writeFilter = new WriteFilter() {
             public int write(WriteChannel channel, ByteBuffer source) throws IOException {
-               return socket.writeBlocking(source);
+                if (isCorked) {
+                    return writeCorked(source);
+                }
+                return count(socket.writeBlocking(source));
+            }
+
+            public long write(WriteChannel channel, ByteBuffer[] sources) throws IOException {
+                if (isCorked) {
+                    long consume = 0;
+                    for (ByteBuffer source : sources) {
+                        consume += writeCorked(source);
+                    }
+                    return consume;
+                }
+                return count(socket.writeBlocking(sources));
+            }
+
+            public long transferFrom(WriteChannel channel, FileChannel file, long position, long count) throws IOException {
+                if (isCorked) {
+                    // the collected data goes before the file.
+                    flushCorked();
+                }
+                return count(socket.transferBlocking(file, position, count));
             }
         };
 
-        this.buffer = ByteBuffer.allocate(1024 * 8);
+        this.buffer = ByteBufferPool.direct().acquire(1024 * 8);
+    }
+
+    /**
+     * Sets the {@link Counter} which counts the bytes written to the socket.
+     *
+     * @param bytesWritten
+     */
+    public void setByteCounter(Counter bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * Initializes the write channel for the next response on the same connection.
+     * <p>
+     * The installed filters are removed, so the {@link WriteChannelListener#onStart}
+     * event will be fired again by the next write.
+     */
+    @Override
+    public void reuse() {
+        removeAllFilters();
+        isCommitted = false;
+        state = ChannelState.INIT;
     }
 
     /**
@@ -171,6 +220,94 @@ public class SocketWriteChannel implements WriteChannel {
     }
 
 
+    /**
+     * Write the given buffers in order to this write channel in blocking mode.
+     * <p>
+     * The buffers are passed to the first filter's {@link WriteFilter#write(WriteChannel, ByteBuffer[])}
+     * method at once, so that the socket can write them by a gathering write.
+     *
+     * @param buffers
+     * @param useFilter
+     * @return
+     */
+    @Override
+    public long writeBlocking(ByteBuffer[] buffers, boolean useFilter) {
+        if (isEndOfChannel()) {
+            return ChannelConstants.END_OF_CHANNEL;
+        }
+
+        if (!isCommitted) {
+            start();
+            isCommitted = true;
+        }
+        long consume = 0;
+        try {
+            if (useFilter) {
+                WriteFilter last = getLastFilter();
+                if (last != null) {
+                    last.next(writeFilter);
+                }
+
+                WriteFilter filter = getFirstFilter();
+                if (filter != null) {
+                    consume = filter.write(this, buffers);
+                }
+            } else {
+                consume = writeFilter.write(this, buffers);
+            }
+        } catch (IOException e) {
+            consume = ChannelConstants.END_OF_CHANNEL;
+            error(e);
+        }
+        return consume;
+    }
+
+    /**
+     * Transfers the given region of the file to this write channel in blocking
+     * mode.
+     * <p>
+     * The file is passed to the first filter's {@link WriteFilter#transferFrom}
+     * method. If no filter needs to see the bytes, the socket sends the file
+     * without copying it to the user space.
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @param useFilter
+     * @return
+     */
+    @Override
+    public long transferBlocking(FileChannel file, long position, long count, boolean useFilter) {
+        if (isEndOfChannel()) {
+            return ChannelConstants.END_OF_CHANNEL;
+        }
+
+        if (!isCommitted) {
+            start();
+            isCommitted = true;
+        }
+        long consume = 0;
+        try {
+            if (useFilter) {
+                WriteFilter last = getLastFilter();
+                if (last != null) {
+                    last.next(writeFilter);
+                }
+
+                WriteFilter filter = getFirstFilter();
+                if (filter != null) {
+                    consume = filter.transferFrom(this, file, position, count);
+                }
+            } else {
+                consume = writeFilter.transferFrom(this, file, position, count);
+            }
+        } catch (IOException e) {
+            consume = ChannelConstants.END_OF_CHANNEL;
+            error(e);
+        }
+        return consume;
+    }
+
     /**
      * Flushes the remaining buffer in this write channel.
      * <p>
@@ -193,6 +330,35 @@ public class SocketWriteChannel implements WriteChannel {
         }
     }
 
+    /**
+     * Corks this write channel.
+     * <p>
+     * While the write channel is corked, the written data is collected in the
+     * write buffer instead of being written to the socket one by one, and is
+     * written only when the write buffer is full or {@link #uncork} is called.
+     */
+    @Override
+    public void cork() {
+        isCorked = true;
+    }
+
+    /**
+     * Uncorks this write channel and writes the collected data to the socket.
+     */
+    @Override
+    public void uncork() {
+        if (!isCorked) {
+            return;
+        }
+
+        isCorked = false;
+        try {
+            flushCorked();
+        } catch (IOException e) {
+            error(e);
+        }
+    }
+
     /**
      * This method calls the {@link WriteChannelListener#onStart} method.
      *
@@ -217,6 +383,13 @@ public class SocketWriteChannel implements WriteChannel {
         if (listener != null) {
             listener.onStart(this);
         }
+
+        // link the socket to the last filter, so that the filters can be flushed
+        // even if nothing has been written.
+        WriteFilter last = getLastFilter();
+        if (last != null) {
+            last.next(writeFilter);
+        }
     }
 
     /**
@@ -273,6 +446,8 @@ public class SocketWriteChannel implements WriteChannel {
             end();
         }
 
+        uncork();
+
         state = ChannelState.CLOSE;
 
         if (listener != null) {
@@ -280,6 +455,19 @@ public class SocketWriteChannel implements WriteChannel {
         }
     }
 
+    /**
+     * Releases the write buffer to the pool, and removes the all filters.
+     */
+    @Override
+    public void release() {
+        close();
+        removeAllFilters();
+        if (buffer != null) {
+            ByteBufferPool.direct().release(buffer);
+            buffer = null;
+        }
+    }
+
     /**
      * Sets the new {@link WriteChannelListener} instance on the write channel.
      * <ul>
@@ -299,6 +487,78 @@ public class SocketWriteChannel implements WriteChannel {
         this.listener = listener;
     }
 
+    /**
+     * Collects the given buffer in the write buffer. If the write buffer is full,
+     * the collected data is written to the socket.
+     *
+     * @param source
+     * @return
+     * @throws IOException
+     */
+    private int writeCorked(ByteBuffer source) throws IOException {
+        int consume = source.remaining();
+        while (source.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flushCorked();
+            }
+
+            // too large to be collected, write it directly.
+            if (buffer.position() == 0 && source.remaining() >= buffer.capacity()) {
+                count(socket.writeBlocking(source));
+                break;
+            }
+
+            int length = Math.min(source.remaining(), buffer.remaining());
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + length);
+            buffer.put(slice);
+            source.position(source.position() + length);
+        }
+        return consume;
+    }
+
+    /**
+     * Counts the bytes written to the socket.
+     *
+     * @param written
+     * @return
+     */
+    private int count(int written) {
+        if (bytesWritten != null) {
+            bytesWritten.add(written);
+        }
+        return written;
+    }
+
+    /**
+     * @param written
+     * @return
+     */
+    private long count(long written) {
+        if (bytesWritten != null) {
+            bytesWritten.add(written);
+        }
+        return written;
+    }
+
+    /**
+     * Writes the collected data in the write buffer to the socket.
+     *
+     * @throws IOException
+     */
+    private void flushCorked() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+
+        buffer.flip();
+        try {
+            count(socket.writeBlocking(buffer));
+        } finally {
+            buffer.clear();
+        }
+    }
+
     /**
      * @return
      */
@@ -15,6 +15,8 @@
  */
 package com.dalcomlab.sattang.net.io.write.filters;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+import com.dalcomlab.sattang.common.ByteBufferUtils;
 import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.io.write.WriteChannel;
 
@@ -25,16 +27,16 @@ import java.nio.ByteBuffer;
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class WriteBufferFilter extends WriteAbstractFilter {
-    private final ByteBuffer buffer;
+    private ByteBuffer buffer;
 
     /**
      *
      */
     public WriteBufferFilter(int size) {
         if (size <= 0) {
-            buffer = ByteBuffer.allocate(1024);
+            buffer = ByteBufferPool.direct().acquire(1024);
         } else {
-            buffer = ByteBuffer.allocate(size);
+            buffer = ByteBufferPool.direct().acquire(size);
         }
     }
 
@@ -57,7 +59,7 @@ public class WriteBufferFilter extends WriteAbstractFilter {
             return ChannelConstants.END_OF_CHANNEL;
         }
 
-        if (source.remaining() == 0 || !source.hasArray()) {
+        if (source.remaining() == 0) {
             return 0;
         }
 
@@ -66,11 +68,8 @@ public class WriteBufferFilter extends WriteAbstractFilter {
         if (buffer.remaining() > source.remaining()) {
             buffer.put(source);
         } else {
-            int remaining = buffer.remaining();
-            buffer.put(source.array(), source.arrayOffset() + source.position(), remaining);
+            consume = ByteBufferUtils.copy(source, buffer);
             flushBuffer(channel);
-            source.position(source.position() + remaining);
-            consume = remaining;
         }
 
         return consume;
@@ -94,6 +93,17 @@ public class WriteBufferFilter extends WriteAbstractFilter {
         }
     }
 
+    /**
+     * Releases the buffer to the pool.
+     */
+    @Override
+    public void release() {
+        if (buffer != null) {
+            ByteBufferPool.direct().release(buffer);
+            buffer = null;
+        }
+    }
+
     /**
      * @return
      * @throws IOException
@@ -16,20 +16,40 @@
 package com.dalcomlab.sattang.net.socket;
 
 import com.dalcomlab.sattang.concurrent.CompletionHandler;
+import com.dalcomlab.sattang.net.ChannelCloseException;
 import com.dalcomlab.sattang.net.ReadQueue;
 import com.dalcomlab.sattang.net.event.EventDispatcher;
 import com.dalcomlab.sattang.net.event.EventExecutor;
+import com.dalcomlab.sattang.net.event.SocketEvent;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * The read queue which reads the data from the socket into the queued buffers
+ * without blocking the caller.
+ * <p>
+ * The buffers are filled in order. When there is no data to read, the rest of
+ * the buffers are filled by the event loop thread when the socket becomes
+ * readable. The {@link CompletionHandler#completed} method of each buffer is
+ * called when the buffer is full, so it must not block.
+ * <p>
+ * The channel has only one read event, so the read queue can not be used while
+ * the connection waits for the next request.
+ *
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class SocketReadQueue implements ReadQueue {
     private final EventDispatcher dispatcher;
     private final SocketChannel channel;
-    //private final Queue<IORecord> queue = new ConcurrentLinkedQueue<>();
+    private final Queue<Record> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean filling = new AtomicBoolean(false);
+    private final EventExecutor<SocketChannel> reader;
+    private volatile State state = State.OPEN;
 
     /**
      * @param channel
@@ -38,85 +58,80 @@ public class SocketReadQueue implements ReadQueue {
     public SocketReadQueue(SocketChannel channel, EventDispatcher dispatcher) {
         this.channel = channel;
         this.dispatcher = dispatcher;
+        this.reader = new EventExecutor<SocketChannel>() {
+            @Override
+            public SocketChannel channel() {
+                return channel;
+            }
+
+            @Override
+            public SocketEvent event() {
+                return SocketEvent.READ;
+            }
+
+            @Override
+            public boolean isInline() {
+                return true;
+            }
+
+            @Override
+            public void execute(SocketChannel channel, EventDispatcher dispatcher) {
+                fill();
+            }
+
+            @Override
+            public void cancel() {
+                close();
+            }
+        };
     }
 
     /**
+     * Queues the buffer to be filled. The buffer must not be accessed until
+     * the handler is called.
+     *
      * @param buffer
      * @param handler
      */
     @Override
     public void read(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler) {
-      /*  if (handler == null) {
+        if (handler == null) {
             handler = CompletionHandler.INSTANCE;
         }
 
-        // workaround for an empty buffer.
-        if (!buffer.hasRemaining()) {
-                handler.completed(buffer);
+        if (state != State.OPEN) {
+            handler.failed(new ChannelCloseException("the read queue is closed."));
             return;
         }
 
-        if (queue.isEmpty()) {
-            try {
-                channel.read(buffer);
-            } catch (Exception e) {
-                handler.failed(e);
-            }
-
-            if (!buffer.hasRemaining()) {
-                handler.completed(buffer);
-                return;
-            } else {
-                handler.update(buffer);
-            }
-
+        if (!buffer.hasRemaining()) {
+            handler.completed(buffer);
+            return;
         }
 
-        queue.offer(new IORecord(buffer, handler));
-
-        dispatcher.register(new EventExecutor<SocketChannel>() {
-            @Override
-            public SocketChannel channel() {
-                return channel;
-            }
-
-            public SocketEvent event() {
-                return SocketEvent.READ;
-            }
-
-            @Override
-            public void execute(SocketChannel channel, EventDispatcher dispatcher) {
-                process(channel, dispatcher, this);
-            }
-        });
-       */
+        queue.offer(new Record(buffer, handler));
+        fill();
     }
 
     /**
-     *
+     * Ends the queue. The queued buffers are still filled, but no more buffer
+     * can be queued.
      */
     @Override
     public void end() {
-        /*
-        queue.stream().forEach(record -> {
-            record.end();
-        });
-        queue.clear();
-
-         */
+        if (state == State.OPEN) {
+            state = State.END;
+        }
     }
 
     /**
-     *
+     * Closes the queue. The queued buffers which are not filled yet are
+     * failed.
      */
     @Override
     public void close() {
-        /*
-        queue.stream().forEach(record -> {
-            record.end();
-        });
-        queue.clear();
-         */
+        state = State.CLOSE;
+        fill();
     }
 
     /**
@@ -124,36 +139,103 @@ public class SocketReadQueue implements ReadQueue {
      */
     @Override
     public boolean canRead() {
-        return false;
+        return state == State.OPEN;
     }
 
     /**
-     * @param channel
-     * @param dispatcher
+     * Fills the queued buffers until the queue is empty or there is no data to
+     * read. Only one thread reads at a time, and the thread which fails to
+     * read leaves the queued buffers to the reading thread.
      */
-    private void process(SocketChannel channel, EventDispatcher dispatcher, EventExecutor<SocketChannel> event) {
-        /*
-        IORecord record = queue.peek();
-        if (record != null) {
-            ByteBuffer buffer = record.getBuffer();
+    private void fill() {
+        while (!queue.isEmpty() && filling.compareAndSet(false, true)) {
+            boolean drained = true;
             try {
-                channel.read(buffer);
-                if (buffer.hasRemaining()) {
-                    record.update();
-                } else {
-                    record.complete();
-                    queue.poll();
+                drained = drain();
+            } finally {
+                filling.set(false);
+            }
+
+            if (!drained) {
+                // waits until the socket becomes readable.
+                dispatcher.register(reader);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the all queued buffers are filled, or
+     * <code>false</code> if there is no data to read.
+     */
+    private boolean drain() {
+        if (state == State.CLOSE) {
+            fail(new ChannelCloseException("the read queue is closed."));
+            return true;
+        }
+
+        Record record;
+        while ((record = queue.peek()) != null) {
+            int consume;
+            try {
+                consume = channel.read(record.buffer);
+                if (consume == -1) {
+                    throw new ChannelCloseException("the channel is closed.");
                 }
+            } catch (IOException e) {
+                state = State.CLOSE;
+                fail(e);
+                return true;
+            }
 
-            } catch (Exception e) {
-                queue.poll();
-            } finally {
-                if (!queue.isEmpty()) {
-                    dispatcher.register(event);
+            if (record.buffer.hasRemaining()) {
+                if (consume > 0) {
+                    record.handler.update(record.buffer);
                 }
+                return false;
             }
+
+            queue.poll();
+            record.handler.completed(record.buffer);
+        }
+        return true;
+    }
+
+    /**
+     * Fails the all queued buffers.
+     *
+     * @param t
+     */
+    private void fail(Throwable t) {
+        Record record;
+        while ((record = queue.poll()) != null) {
+            record.handler.failed(t);
         }
+    }
+
+    /**
+     * The queued buffer and its handler.
+     */
+    private static class Record {
+        private final ByteBuffer buffer;
+        private final CompletionHandler<ByteBuffer> handler;
+
+        /**
+         * @param buffer
+         * @param handler
          */
+        Record(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler) {
+            this.buffer = buffer;
+            this.handler = handler;
+        }
     }
 
+    /**
+     *
+     */
+    private enum State {
+        OPEN,
+        END,
+        CLOSE
+    }
 }
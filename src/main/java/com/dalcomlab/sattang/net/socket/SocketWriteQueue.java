@@ -16,20 +16,53 @@
 package com.dalcomlab.sattang.net.socket;
 
 import com.dalcomlab.sattang.concurrent.CompletionHandler;
+import com.dalcomlab.sattang.net.ChannelCloseException;
 import com.dalcomlab.sattang.net.WriteQueue;
 import com.dalcomlab.sattang.net.event.EventDispatcher;
 import com.dalcomlab.sattang.net.event.EventExecutor;
+import com.dalcomlab.sattang.net.event.SocketEvent;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * The write queue which writes the queued buffers to the socket without
+ * blocking the caller.
+ * <p>
+ * The buffers are written in order, and the consecutive buffers are written
+ * together by a gathering write. When the socket buffer is full, the rest of
+ * the buffers are written by the event loop thread when the socket becomes
+ * writable. The {@link CompletionHandler#completed} method of each buffer is
+ * called when the buffer is written completely, so it must not block.
+ * <p>
+ * When the queued bytes reach the high watermark, {@link #canWrite} returns
+ * <code>false</code> until the queued bytes drop to the low watermark, and
+ * then the tasks given by {@link #onWritable} are run.
+ *
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class SocketWriteQueue implements WriteQueue {
+    public static final int DEFAULT_HIGH_WATERMARK = 64 * 1024;
+    public static final int DEFAULT_LOW_WATERMARK = 32 * 1024;
+    private static final int MAX_GATHER_COUNT = 16;
     private final EventDispatcher dispatcher;
     private final SocketChannel channel;
-   // private final Queue<IORecord> queue = new ConcurrentLinkedQueue<>();
+    private final Queue<Record> queue = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final AtomicLong pending = new AtomicLong();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER_COUNT];
+    private final EventExecutor<SocketChannel> writer;
+    private volatile int highWatermark = DEFAULT_HIGH_WATERMARK;
+    private volatile int lowWatermark = DEFAULT_LOW_WATERMARK;
+    private volatile boolean writable = true;
+    private volatile State state = State.OPEN;
 
     /**
      * @param channel
@@ -38,115 +71,280 @@ public class SocketWriteQueue implements WriteQueue {
     public SocketWriteQueue(SocketChannel channel, EventDispatcher dispatcher) {
         this.channel = channel;
         this.dispatcher = dispatcher;
-    }
+        this.writer = new EventExecutor<SocketChannel>() {
+            @Override
+            public SocketChannel channel() {
+                return channel;
+            }
+
+            @Override
+            public SocketEvent event() {
+                return SocketEvent.WRITE;
+            }
+
+            @Override
+            public boolean isInline() {
+                return true;
+            }
+
+            @Override
+            public void execute(SocketChannel channel, EventDispatcher dispatcher) {
+                flush();
+            }
 
+            @Override
+            public void cancel() {
+                close();
+            }
+        };
+    }
 
     /**
+     * Queues the buffer to be written. The buffer must not be modified until
+     * the handler is called.
+     *
      * @param buffer
      * @param handler
      */
     @Override
     public void write(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler) {
-        /*
         if (handler == null) {
             handler = CompletionHandler.INSTANCE;
         }
 
-        // workaround for an empty buffer.
+        if (state != State.OPEN) {
+            handler.failed(new ChannelCloseException("the write queue is closed."));
+            return;
+        }
+
         if (!buffer.hasRemaining()) {
             handler.completed(buffer);
             return;
         }
 
-        if (queue.isEmpty()) {
-            try {
-                channel.write(buffer);
-            } catch (Exception e) {
-                handler.failed(e);
-            }
-
-            if (!buffer.hasRemaining()) {
-                handler.completed(buffer);
-                return;
-            } else {
-                handler.update(buffer);
-            }
-
+        if (pending.addAndGet(buffer.remaining()) >= highWatermark) {
+            writable = false;
         }
-
-        queue.offer(new IORecord(buffer, handler));
-
-        dispatcher.register(new EventExecutor<SocketChannel>() {
-            @Override
-            public SocketChannel channel() {
-                return channel;
-            }
-
-            public SocketEvent event() {
-                return SocketEvent.WRITE;
-            }
-
-            @Override
-            public void execute(SocketChannel channel, EventDispatcher dispatcher) {
-                process(channel, dispatcher, this);
-            }
-        });
-
-         */
+        queue.offer(new Record(buffer, handler));
+        flush();
     }
 
     /**
+     * Runs the given task once when the queue can be written again. If the
+     * queue can be written now, the task is run immediately.
      *
+     * @param task
      */
     @Override
-    public void end() {
+    public void onWritable(Runnable task) {
+        waiters.offer(task);
+        if (writable) {
+            resume();
+        }
+    }
 
+    /**
+     * Ends the queue. The queued buffers are still written, but no more
+     * buffer can be queued.
+     */
+    @Override
+    public void end() {
+        if (state == State.OPEN) {
+            state = State.END;
+        }
     }
 
     /**
-     *
+     * Closes the queue. The queued buffers which are not written yet are
+     * failed.
      */
     @Override
     public void close() {
-
+        state = State.CLOSE;
+        flush();
     }
 
     /**
+     * Determines whether the queued bytes are below the high watermark.
+     *
      * @return
      */
     @Override
     public boolean canWrite() {
-        return false;
+        return state == State.OPEN && writable;
     }
 
+    /**
+     * Returns the number of bytes which are queued but not written yet.
+     *
+     * @return
+     */
+    public long getPendingBytes() {
+        return pending.get();
+    }
 
+    /**
+     * @return
+     */
+    public int getHighWatermark() {
+        return highWatermark;
+    }
 
     /**
-     * @param channel
-     * @param dispatcher
+     * Sets the number of the queued bytes at which {@link #canWrite} starts
+     * returning <code>false</code>.
+     *
+     * @param highWatermark
+     */
+    public void setHighWatermark(int highWatermark) {
+        this.highWatermark = highWatermark;
+    }
+
+    /**
+     * @return
+     */
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    /**
+     * Sets the number of the queued bytes at which {@link #canWrite} starts
+     * returning <code>true</code> again.
+     *
+     * @param lowWatermark
+     */
+    public void setLowWatermark(int lowWatermark) {
+        this.lowWatermark = lowWatermark;
+    }
+
+    /**
+     * Writes the queued buffers until the queue is empty or the socket buffer
+     * is full. Only one thread writes at a time, and the thread which fails to
+     * write leaves the queued buffers to the writing thread.
      */
-    private void process(SocketChannel channel, EventDispatcher dispatcher, EventExecutor<SocketChannel> event) {
-     /*
-        IORecord record = queue.peek();
-        if (record != null) {
-            ByteBuffer buffer = record.getBuffer();
+    private void flush() {
+        while (!queue.isEmpty() && flushing.compareAndSet(false, true)) {
+            boolean drained = true;
             try {
-                channel.write(buffer);
-                if (buffer.hasRemaining()) {
-                    record.update();
-                } else {
-                    record.complete();
-                    queue.poll();
+                drained = drain();
+            } finally {
+                flushing.set(false);
+            }
+
+            if (!writable && pending.get() <= lowWatermark) {
+                writable = true;
+            }
+
+            if (writable) {
+                resume();
+            }
+
+            if (!drained) {
+                // waits until the socket becomes writable.
+                dispatcher.register(writer);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the all queued buffers are written, or
+     * <code>false</code> if the socket buffer is full.
+     */
+    private boolean drain() {
+        if (state == State.CLOSE) {
+            fail(new ChannelCloseException("the write queue is closed."));
+            return true;
+        }
+
+        while (true) {
+            int count = 0;
+            long total = 0;
+            for (Record record : queue) {
+                if (count == gather.length) {
+                    break;
                 }
+                gather[count++] = record.buffer;
+                total += record.buffer.remaining();
+            }
 
-            } catch (Exception e) {
-                queue.poll();
+            if (count == 0) {
+                return true;
+            }
+
+            long consume;
+            try {
+                consume = channel.write(gather, 0, count);
+            } catch (IOException e) {
+                state = State.CLOSE;
+                fail(e);
+                return true;
             } finally {
-                if (!queue.isEmpty()) {
-                    dispatcher.register(event);
+                Arrays.fill(gather, 0, count, null);
+            }
+            pending.addAndGet(-consume);
+
+            Record record;
+            while ((record = queue.peek()) != null && !record.buffer.hasRemaining()) {
+                queue.poll();
+                record.handler.completed(record.buffer);
+            }
+
+            if (consume < total) {
+                if (consume > 0 && record != null) {
+                    record.handler.update(record.buffer);
                 }
+                return false;
             }
         }
-      */
+    }
+
+    /**
+     * Fails the all queued buffers.
+     *
+     * @param t
+     */
+    private void fail(Throwable t) {
+        Record record;
+        while ((record = queue.poll()) != null) {
+            pending.addAndGet(-record.buffer.remaining());
+            record.handler.failed(t);
+        }
+    }
+
+    /**
+     * Runs the tasks which wait until the queue can be written.
+     */
+    private void resume() {
+        Runnable task;
+        while (writable && (task = waiters.poll()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * The queued buffer and its handler.
+     */
+    private static class Record {
+        private final ByteBuffer buffer;
+        private final CompletionHandler<ByteBuffer> handler;
+
+        /**
+         * @param buffer
+         * @param handler
+         */
+        Record(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler) {
+            this.buffer = buffer;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     *
+     */
+    private enum State {
+        OPEN,
+        END,
+        CLOSE
     }
 }
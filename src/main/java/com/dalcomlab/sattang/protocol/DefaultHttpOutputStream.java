@@ -17,8 +17,11 @@ package com.dalcomlab.sattang.protocol;
 
 import com.dalcomlab.sattang.net.io.write.WriteChannel;
 
+import com.dalcomlab.sattang.net.ChannelConstants;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -92,6 +95,26 @@ public class DefaultHttpOutputStream extends HttpOutputStream {
         }
     }
 
+    /**
+     * Writes the given region of the file to the write channel, which sends it
+     * without copying it to the user space unless a filter needs to see the
+     * bytes.
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public long transferFrom(FileChannel file, long position, long count) throws IOException {
+        final long consume = channel.transferBlocking(file, position, count, true);
+        if (consume == ChannelConstants.END_OF_CHANNEL) {
+            throw new IOException("the channel is closed.");
+        }
+        return consume;
+    }
+
     @Override
     public void flush() {
         try {
@@ -70,6 +70,7 @@ public class DefaultHttpRequest implements HttpRequest {
         httpForms = null;
         usingStream = false;
         usingParser = false;
+        attributes.clear();
     }
 
     /**
@@ -15,16 +15,30 @@
  */
 package com.dalcomlab.sattang.protocol;
 
+import com.dalcomlab.sattang.common.IOUtils;
+import com.dalcomlab.sattang.protocol.http.HttpConditional;
+import com.dalcomlab.sattang.protocol.http.HttpDateFormat;
 import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import com.dalcomlab.sattang.protocol.http.HttpMethod;
+import com.dalcomlab.sattang.protocol.http.HttpRange;
 import com.dalcomlab.sattang.protocol.http.HttpStatus;
+import com.dalcomlab.sattang.resource.MappedFileCache;
+import com.dalcomlab.sattang.resource.Resource;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -35,6 +49,7 @@ public class DefaultHttpResponse implements HttpResponse {
     protected HttpRequest request = null;
     protected HttpOutputStream stream;
     protected boolean committed = false;
+    protected MappedFileCache fileCache = null;
 
     /**
      *
@@ -239,17 +254,287 @@ public class DefaultHttpResponse implements HttpResponse {
 
 
     /**
+     * Sets the {@link MappedFileCache} which the {@link #sendFile} method
+     * looks up first. If it is <code>null</code>, the files are not cached.
+     *
+     * @param fileCache
+     */
+    public void setFileCache(MappedFileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    /**
+     * Sends the file as the body of this response.
+     * <p>
+     * The <code>Content-Length</code> header is set to the size of the file
+     * unless the response has its own length or encoding. The file is not
+     * loaded into memory. If the file is in the {@link MappedFileCache}, the
+     * duplicate of its mapped buffer is written; otherwise if no filter needs
+     * to see the bytes, the socket sends it without copying it to the user
+     * space.
+     * <p>
+     * The byte ranges of the <code>Range</code> header of a GET request are
+     * served with the <code>206 Partial Content</code> status.
+     *
      * @param file
      * @throws IOException
      */
     @Override
     public void sendFile(String file) throws IOException {
         Path path = FileSystems.getDefault().getPath(file);
-        byte[] images = Files.readAllBytes(path);
-        OutputStream output = getOutputStream();
-        if (output != null) {
-            output.write(images);
-            output.flush();
+        HttpOutputStream output = getOutputStream();
+        if (output == null) {
+            return;
+        }
+
+        // the validators of the mapped file describe the mapped content.
+        File target = path.toFile();
+        MappedFileCache.Entry entry = fileCache != null ? fileCache.getEntry(target) : null;
+        long length = entry != null ? entry.getSize() : target.length();
+        long lastModified = entry != null ? entry.getLastModified() : target.lastModified();
+        if (lastModified > 0 && checkNotModified(HttpConditional.entityTag(length, lastModified), lastModified)) {
+            return;
+        }
+
+        if (entry != null) {
+            ByteBuffer mapped = entry.getBuffer();
+            sendContent(mapped.remaining(), lastModified, (position, count) -> {
+                ByteBuffer slice = mapped.duplicate();
+                slice.position((int) position);
+                slice.limit((int) (position + count));
+                output.write(slice);
+            });
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            sendContent(channel.size(), lastModified,
+                    (position, count) -> output.transferFrom(channel, position, count));
+        }
+    }
+
+    /**
+     * Sends the content of the resource as the body of this response. The
+     * resource in the file system is sent by the {@link #sendFile} method, and
+     * the other resources are read from their input streams. The resource of
+     * which file is removed fails with the {@link NoSuchFileException} before
+     * the response is committed.
+     *
+     * @param resource
+     * @throws IOException
+     */
+    @Override
+    public void sendResource(Resource resource) throws IOException {
+        URL url = resource.getURL();
+        File file = url != null && "file".equals(url.getProtocol()) ? new File(resource.getCanonicalPath()) : null;
+        if (file != null && !file.exists()) {
+            // the file is removed after it is looked up, and no header is added yet.
+            throw new NoSuchFileException(file.getPath());
+        }
+
+        long lastModified = resource.getLastModified();
+        String etag = resource.getETag();
+        if (etag == null && lastModified > 0) {
+            etag = HttpConditional.entityTag(resource.getContentLength(), lastModified);
+        }
+        if (checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        if (file != null && file.isFile()) {
+            sendFile(file.getPath());
+            return;
+        }
+
+        HttpOutputStream output = getOutputStream();
+        if (output == null) {
+            return;
+        }
+
+        sendContent(resource.getContentLength(), lastModified, (position, count) -> {
+            try (InputStream input = resource.getInputStream()) {
+                if (input == null) {
+                    throw new IOException("the resource can not be read : " + resource.getName());
+                }
+                IOUtils.skipFully(input, position);
+                IOUtils.copy(input, output, count);
+            }
+        });
+    }
+
+    /**
+     * Sets the <code>ETag</code> and the <code>Last-Modified</code> headers
+     * unless the response has its own, and answers the conditional GET request
+     * with the <code>304 Not Modified</code> status if the content is not
+     * modified.
+     *
+     * @param etag
+     * @param lastModified
+     * @return <code>true</code> if the status is set to 304, and the content
+     * must not be sent.
+     */
+    @Override
+    public boolean checkNotModified(String etag, long lastModified) {
+        if (status != HttpStatus.OK || committed) {
+            return false;
+        }
+
+        if (etag != null && getHeader(HttpHeader.ETAG) == null) {
+            addHeader(HttpHeader.ETAG, etag);
+        }
+        if (lastModified > 0 && getHeader(HttpHeader.LAST_MODIFIED) == null) {
+            addHeader(HttpHeader.LAST_MODIFIED, HttpDateFormat.formatDate(lastModified));
+        }
+
+        if (request == null || !HttpConditional.isNotModified(request, getHeader(HttpHeader.ETAG), lastModified)) {
+            return false;
+        }
+        setStatus(HttpStatus.NOT_MODIFIED);
+        return true;
+    }
+
+    /**
+     * Sends the content of the given length, or the ranges of it requested by
+     * the <code>Range</code> header.
+     *
+     * @param length
+     * @param lastModified
+     * @param writer
+     * @throws IOException
+     */
+    private void sendContent(long length, long lastModified, ContentWriter writer) throws IOException {
+        final HttpOutputStream output = getOutputStream();
+        final List<HttpRange> ranges = getRanges(length, lastModified);
+        if (ranges == null) {
+            setContentLength(length);
+            if (length > 0) {
+                writer.write(0, length);
+            }
+        } else if (ranges.isEmpty()) {
+            setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            addHeader(HttpHeader.CONTENT_RANGE, "bytes */" + length);
+        } else if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            setStatus(HttpStatus.PARTIAL_CONTENT);
+            addHeader(HttpHeader.CONTENT_RANGE, range.toContentRange(length));
+            addHeader(HttpHeader.CONTENT_LENGTH, Long.toString(range.getLength()));
+            writer.write(range.getStart(), range.getLength());
+        } else {
+            sendMultipartRanges(ranges, length, writer);
+        }
+        output.flush();
+    }
+
+    /**
+     * Sends the ranges as the parts of the <code>multipart/byteranges</code>
+     * body. The length of the body is computed in advance, so that it is sent
+     * with the <code>Content-Length</code> header.
+     *
+     * @param ranges
+     * @param length
+     * @param writer
+     * @throws IOException
+     */
+    private void sendMultipartRanges(List<HttpRange> ranges, long length, ContentWriter writer) throws IOException {
+        final String boundary = "SATTANG" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        final String contentType = getHeader(HttpHeader.CONTENT_TYPE);
+        final byte[][] heads = new byte[ranges.size()][];
+        final byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long contentLength = tail.length;
+        for (int i = 0; i < ranges.size(); i++) {
+            StringBuilder head = new StringBuilder();
+            head.append("\r\n--").append(boundary).append("\r\n");
+            if (contentType != null) {
+                head.append(HttpHeader.CONTENT_TYPE).append(": ").append(contentType).append("\r\n");
+            }
+            head.append(HttpHeader.CONTENT_RANGE).append(": ").append(ranges.get(i).toContentRange(length)).append("\r\n\r\n");
+            heads[i] = head.toString().getBytes(StandardCharsets.US_ASCII);
+            contentLength += heads[i].length + ranges.get(i).getLength();
+        }
+
+        setStatus(HttpStatus.PARTIAL_CONTENT);
+        removeHeader(HttpHeader.CONTENT_TYPE);
+        addHeader(HttpHeader.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        addHeader(HttpHeader.CONTENT_LENGTH, Long.toString(contentLength));
+
+        final HttpOutputStream output = getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            output.write(ByteBuffer.wrap(heads[i]));
+            writer.write(ranges.get(i).getStart(), ranges.get(i).getLength());
+        }
+        output.write(ByteBuffer.wrap(tail));
+    }
+
+    /**
+     * Returns the ranges of the <code>Range</code> header of the request.
+     * The header is honored only for a GET request which is answered with the
+     * <code>200 OK</code> status by default, and if the <code>If-Range</code>
+     * header matches the content.
+     *
+     * @param length
+     * @param lastModified
+     * @return <code>null</code> if the whole content is sent, or an empty list
+     * if none of the ranges is satisfiable.
+     */
+    private List<HttpRange> getRanges(long length, long lastModified) {
+        if (status != HttpStatus.OK) {
+            return null;
+        }
+
+        if (getHeader(HttpHeader.ACCEPT_RANGES) == null) {
+            addHeader(HttpHeader.ACCEPT_RANGES, "bytes");
+        }
+
+        if (request == null || request.getMethod() != HttpMethod.GET) {
+            return null;
+        }
+
+        if (getHeader(HttpHeader.CONTENT_LENGTH) != null || getHeader(HttpHeader.TRANSFER_ENCODING) != null) {
+            return null;
+        }
+
+        String range = request.getHeader(HttpHeader.RANGE);
+        if (range == null || !isRangeValidator(request.getHeader(HttpHeader.IF_RANGE), lastModified)) {
+            return null;
+        }
+        return HttpRange.parse(range, length);
+    }
+
+    /**
+     * Determines whether the <code>If-Range</code> header matches the content,
+     * which means that the ranges can be served. The entity tag is compared
+     * with the strong comparison, and the date must be exactly the last
+     * modified time in seconds.
+     *
+     * @param validator
+     * @param lastModified
+     * @return
+     */
+    private boolean isRangeValidator(String validator, long lastModified) {
+        if (validator == null) {
+            return true;
+        }
+
+        validator = validator.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            String etag = getHeader(HttpHeader.ETAG);
+            return etag != null && !etag.startsWith("W/") && etag.equals(validator);
+        }
+
+        long date = HttpDateFormat.parseDate(validator);
+        return date >= 0 && date == lastModified / 1000 * 1000;
+    }
+
+    /**
+     * Sets the <code>Content-Length</code> header to the length of the sent
+     * content unless the response has its own length or encoding.
+     *
+     * @param length
+     */
+    private void setContentLength(long length) {
+        if (length > 0 && getHeader(HttpHeader.CONTENT_LENGTH) == null
+                && getHeader(HttpHeader.TRANSFER_ENCODING) == null) {
+            addHeader(HttpHeader.CONTENT_LENGTH, Long.toString(length));
         }
     }
 
@@ -269,4 +554,10 @@ public class DefaultHttpResponse implements HttpResponse {
         return committed;
     }
 
+    /**
+     * Writes the given region of the content to the output stream.
+     */
+    private interface ContentWriter {
+        void write(long position, long count) throws IOException;
+    }
 }
@@ -15,9 +15,13 @@
  */
 package com.dalcomlab.sattang.protocol;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -99,6 +103,38 @@ public abstract class HttpOutputStream extends OutputStream {
      */
     public abstract void write(ByteBuffer source) throws IOException;
 
+    /**
+     * Writes the given region of the file to this stream. By default, the file
+     * is read into a pooled buffer and written by the {@link #write(ByteBuffer)}
+     * method.
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    public long transferFrom(FileChannel file, long position, long count) throws IOException {
+        final ByteBuffer buffer = ByteBufferPool.direct().acquire(ByteBufferPool.MAX_BUFFER_SIZE);
+        try {
+            long consume = 0;
+            while (consume < count) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), count - consume));
+                int n = file.read(buffer, position + consume);
+                if (n < 0) {
+                    throw new EOFException("the file is shorter than " + (position + count) + " bytes.");
+                }
+                buffer.flip();
+                write(buffer);
+                consume += n;
+            }
+            return consume;
+        } finally {
+            ByteBufferPool.direct().release(buffer);
+        }
+    }
+
 
     /**
      * This method can be used to determine if data can be written without blocking.
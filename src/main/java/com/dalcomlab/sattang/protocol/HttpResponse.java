@@ -18,6 +18,7 @@ package com.dalcomlab.sattang.protocol;
 import com.dalcomlab.sattang.Reusable;
 import com.dalcomlab.sattang.protocol.http.HttpHeader;
 import com.dalcomlab.sattang.protocol.http.HttpStatus;
+import com.dalcomlab.sattang.resource.Resource;
 
 import java.io.IOException;
 import java.util.List;
@@ -147,6 +148,25 @@ public interface HttpResponse extends Reusable {
         sendFile(file);
     }
 
+    /**
+     * Sends the content of the resource as the body of this response.
+     *
+     * @param resource
+     * @throws IOException
+     */
+    void sendResource(Resource resource) throws IOException;
+
+    /**
+     * Checks the preconditions of the conditional GET request with the given
+     * version of the content. The handler which generates the content can call
+     * this method first, and send nothing if it returns <code>true</code>.
+     *
+     * @param etag         the entity tag of the content, or <code>null</code>.
+     * @param lastModified the last modified time of the content, or 0.
+     * @return <code>true</code> if the response is <code>304 Not Modified</code>.
+     */
+    boolean checkNotModified(String etag, long lastModified);
+
 
     /**
      *
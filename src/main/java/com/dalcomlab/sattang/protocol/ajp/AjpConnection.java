@@ -53,7 +53,17 @@ public class AjpConnection extends SocketConnection {
      * @param channel
      */
     public AjpConnection(AjpServer server, SocketChannel channel) {
-        super(server, new NioSocket(channel));
+        this(server, channel, new NioSocket(channel));
+    }
+
+    /**
+     * @param server
+     * @param channel
+     * @param socket
+     */
+    private AjpConnection(AjpServer server, SocketChannel channel, NioSocket socket) {
+        super(server, socket, channel);
+        socket.setSelectorPool(server.getSelectorPool());
         this.channel = channel;
         this.server = server;
         this.request = new DefaultHttpRequest(new DefaultHttpInputStream(readChannel));
@@ -143,7 +153,7 @@ public class AjpConnection extends SocketConnection {
             }
         });
 
-        transport.async(new NioEventExecutor(channel, SocketEvent.READ) {
+        async(new NioEventExecutor(channel, SocketEvent.READ) {
             @Override
             public void execute(SocketChannel channel, EventDispatcher dispatcher) {
                 try {
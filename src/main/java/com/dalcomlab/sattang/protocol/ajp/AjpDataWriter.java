@@ -98,6 +98,20 @@ public class AjpDataWriter {
         pos += length;
     }
 
+    /**
+     * Writes the bytes from the current position of the given buffer. The
+     * position of the given buffer is not changed.
+     *
+     * @param bytes
+     * @param length
+     */
+    public void writeBytes(ByteBuffer bytes, int length) {
+        ByteBuffer slice = bytes.duplicate();
+        slice.limit(slice.position() + length);
+        buffer.put(slice);
+        pos += length;
+    }
+
     /**
      *
      * @param i
@@ -15,6 +15,7 @@
  */
 package com.dalcomlab.sattang.protocol.ajp.filters;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
 import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.io.write.WriteChannel;
 import com.dalcomlab.sattang.net.io.write.filters.WriteAbstractFilter;
@@ -85,7 +86,7 @@ public class ResponseBodyFilter extends WriteAbstractFilter {
     private void fillBodyBuffer(ByteBuffer source) throws IOException {
         int packetSize = 1024 * 8;
         if (bodyBuffer == null) {
-            bodyBuffer = ByteBuffer.allocate(packetSize);
+            bodyBuffer = ByteBufferPool.direct().acquire(packetSize);
         }
 
         bodyBuffer.clear();
@@ -102,7 +103,7 @@ public class ResponseBodyFilter extends WriteAbstractFilter {
         }
 
         writer.writeInt(length);
-        writer.writeBytes(source.array(), source.position(), length);
+        writer.writeBytes(source, length);
         source.position(source.position() + length);
 
         writer.writeByte((byte) 0);
@@ -159,6 +160,17 @@ public class ResponseBodyFilter extends WriteAbstractFilter {
     }
 
 
+    /**
+     * Releases the body buffer to the pool.
+     */
+    @Override
+    public void release() {
+        if (bodyBuffer != null) {
+            ByteBufferPool.direct().release(bodyBuffer);
+            bodyBuffer = null;
+        }
+    }
+
     /**
      * @param state
      */
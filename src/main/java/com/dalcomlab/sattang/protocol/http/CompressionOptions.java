@@ -0,0 +1,190 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.protocol.http;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * The options of the response compression. A response is compressed with the
+ * gzip or the deflate coding if the client accepts it, the content type is
+ * compressible, and the content is not known to be smaller than the minimum
+ * size.
+ * <p>
+ * The options can be changed while the server is running, and are applied to
+ * the next responses.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class CompressionOptions {
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    public static final String[] DEFAULT_MIME_TYPES = {
+            "text/*",
+            "application/javascript",
+            "application/json",
+            "application/xml",
+            "image/svg+xml"
+    };
+
+    private volatile int level = Deflater.DEFAULT_COMPRESSION;
+    private volatile long minSize = DEFAULT_MIN_SIZE;
+    private volatile int bufferSize = DEFAULT_BUFFER_SIZE;
+    private volatile Set<String> mimeTypes = toSet(DEFAULT_MIME_TYPES);
+
+    /**
+     * Returns the compression level from 0 (no compression) to 9 (best
+     * compression), or -1 for the default level of the {@link Deflater}.
+     *
+     * @return
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Sets the compression level from 0 (no compression) to 9 (best
+     * compression), or -1 for the default level. The other values are ignored.
+     *
+     * @param level
+     */
+    public void setLevel(int level) {
+        if (level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION) {
+            this.level = level;
+        }
+    }
+
+    /**
+     * Returns the minimum length of the content which is compressed.
+     *
+     * @return
+     */
+    public long getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Sets the minimum length of the content which is compressed. The content
+     * of which length is unknown is always compressed.
+     *
+     * @param minSize
+     */
+    public void setMinSize(long minSize) {
+        if (minSize >= 0) {
+            this.minSize = minSize;
+        }
+    }
+
+    /**
+     * Returns the size of the buffer in which the compressed output is
+     * collected until it is full or the response is flushed.
+     *
+     * @return
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize > 0) {
+            this.bufferSize = bufferSize;
+        }
+    }
+
+    /**
+     * Returns the compressible content types.
+     *
+     * @return
+     */
+    public Set<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    /**
+     * Sets the compressible content types. The type like <code>text/*</code>
+     * matches all subtypes.
+     *
+     * @param mimeTypes
+     */
+    public void setMimeTypes(String... mimeTypes) {
+        if (mimeTypes != null) {
+            this.mimeTypes = toSet(mimeTypes);
+        }
+    }
+
+    /**
+     * Determines whether the content of the given type is compressible. The
+     * parameters of the type, like <code>charset</code>, are ignored.
+     *
+     * @param contentType
+     * @return
+     */
+    public boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+
+        int semicolon = contentType.indexOf(';');
+        String type = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase();
+        Set<String> types = mimeTypes;
+        if (types.contains(type)) {
+            return true;
+        }
+
+        int slash = type.indexOf('/');
+        return slash > 0 && types.contains(type.substring(0, slash) + "/*");
+    }
+
+    /**
+     * Returns the content coding which compresses the response for the given
+     * <code>Accept-Encoding</code> header. The gzip coding is preferred.
+     *
+     * @param acceptEncoding
+     * @return <code>gzip</code>, <code>deflate</code>, or <code>null</code> if
+     * the client accepts none of them.
+     */
+    public String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        if (HttpAcceptEncoding.isAccepted(acceptEncoding, "gzip")) {
+            return "gzip";
+        }
+        if (HttpAcceptEncoding.isAccepted(acceptEncoding, "deflate")) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    /**
+     * @param values
+     * @return
+     */
+    private static Set<String> toSet(String[] values) {
+        Set<String> set = new LinkedHashSet<>();
+        for (String value : values) {
+            if (value != null) {
+                set.add(value.trim().toLowerCase());
+            }
+        }
+        return Collections.unmodifiableSet(set);
+    }
+}
@@ -15,8 +15,95 @@
  */
 package com.dalcomlab.sattang.protocol.http;
 
+import com.dalcomlab.sattang.protocol.http.decoder.HttpAcceptHeaderDecoder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
+ * The content coding of the <code>Accept-Encoding</code> header with its
+ * quality value.
+ *
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class HttpAcceptEncoding {
+    private final String encoding;
+    private final double quality;
+
+    /**
+     * @param encoding
+     * @param quality
+     */
+    public HttpAcceptEncoding(String encoding, double quality) {
+        this.encoding = encoding;
+        this.quality = quality;
+    }
+
+    /**
+     * @return
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * @return
+     */
+    public double getQuality() {
+        return quality;
+    }
+
+    /**
+     * Parses the value of the <code>Accept-Encoding</code> header, like
+     * <code>gzip, deflate;q=0.5, *;q=0</code>.
+     *
+     * @param value
+     * @return
+     */
+    public static List<HttpAcceptEncoding> parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<HttpAcceptEncoding> encodings = new ArrayList<>();
+        HttpAcceptHeaderDecoder decoder = new HttpAcceptHeaderDecoder();
+        decoder.listen((encoding, quality) -> encodings.add(new HttpAcceptEncoding(encoding, quality)));
+        try {
+            decoder.decode(ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1)));
+            decoder.close();
+        } catch (Exception e) {
+            return Collections.emptyList();
+        }
+        return encodings;
+    }
+
+    /**
+     * Determines whether the <code>Accept-Encoding</code> header accepts the
+     * given content coding. The coding which is not listed is accepted by the
+     * <code>*</code> coding, and the coding with <code>q=0</code> is refused.
+     *
+     * @param value
+     * @param encoding
+     * @return
+     */
+    public static boolean isAccepted(String value, String encoding) {
+        double wildcard = 0;
+        for (HttpAcceptEncoding accept : parse(value)) {
+            if (accept.getEncoding().equalsIgnoreCase(encoding)) {
+                return accept.getQuality() > 0;
+            }
+            if (accept.getEncoding().equals("*")) {
+                wildcard = accept.getQuality();
+            }
+        }
+        return wildcard > 0;
+    }
+
+    @Override
+    public String toString() {
+        return encoding + ";q=" + quality;
+    }
 }
@@ -81,6 +81,29 @@ public interface HttpCompatible {
     };
 
 
+    /**
+     * Returns the {@link HttpCompatible} of the given protocol, or <code>null</code>
+     * if the protocol is unknown.
+     *
+     * @param protocol
+     * @return
+     */
+    static HttpCompatible valueOf(HttpProtocol protocol) {
+        if (protocol == HttpProtocol.HTTP11) {
+            return HTTP11;
+        }
+
+        if (protocol == HttpProtocol.HTTP10) {
+            return HTTP10;
+        }
+
+        if (protocol == HttpProtocol.HTTP09) {
+            return HTTP09;
+        }
+
+        return null;
+    }
+
     /**
      * Determines that the HTTP protocol supports the upgrade protocol.
      *
@@ -0,0 +1,99 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.protocol.http;
+
+import com.dalcomlab.sattang.protocol.HttpRequest;
+
+/**
+ * Evaluates the preconditions of the conditional GET request (RFC 7232), so
+ * that the unchanged content can be answered with the
+ * <code>304 Not Modified</code> status instead of being sent again.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class HttpConditional {
+
+    private HttpConditional() {
+    }
+
+    /**
+     * Returns the strong entity tag of the content version identified by the
+     * last modified time and the length, like <code>"16d2a1f8e40-2a"</code>.
+     *
+     * @param length
+     * @param lastModified
+     * @return
+     */
+    public static String entityTag(long length, long lastModified) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+    }
+
+    /**
+     * Determines whether the content which the client has cached is still
+     * valid. The <code>If-None-Match</code> header is compared with the weak
+     * comparison, and the <code>If-Modified-Since</code> header is evaluated
+     * only if the request has no <code>If-None-Match</code> header.
+     *
+     * @param request
+     * @param etag         the entity tag of the content, or <code>null</code>.
+     * @param lastModified the last modified time of the content, or 0.
+     * @return
+     */
+    public static boolean isNotModified(HttpRequest request, String etag, long lastModified) {
+        HttpMethod method = request.getMethod();
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            return false;
+        }
+
+        String noneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
+        if (noneMatch != null) {
+            return etag != null && matches(noneMatch, etag);
+        }
+
+        if (lastModified <= 0) {
+            return false;
+        }
+        long since = HttpDateFormat.parseDate(request.getHeader(HttpHeader.IF_MODIFIED_SINCE));
+        return since >= 0 && lastModified / 1000 * 1000 <= since;
+    }
+
+    /**
+     * Determines whether the list of the entity tags matches the given entity
+     * tag with the weak comparison, which ignores the <code>W/</code> prefix.
+     *
+     * @param list
+     * @param etag
+     * @return
+     */
+    public static boolean matches(String list, String etag) {
+        String opaque = opaqueTag(etag);
+        for (String tag : list.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param etag
+     * @return the entity tag without the weakness indicator.
+     */
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -15,7 +15,10 @@
  */
 package com.dalcomlab.sattang.protocol.http;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+import com.dalcomlab.sattang.common.HashedWheelTimer;
 import com.dalcomlab.sattang.net.ChannelCloseException;
+import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.SocketConnection;
 import com.dalcomlab.sattang.net.event.EventDispatcher;
 import com.dalcomlab.sattang.net.event.SocketEvent;
@@ -27,34 +30,105 @@ import com.dalcomlab.sattang.net.io.write.WriteChannel;
 import com.dalcomlab.sattang.net.io.write.WriteChannelListener;
 import com.dalcomlab.sattang.protocol.*;
 import com.dalcomlab.sattang.protocol.http.decoder.HttpRequestDecoder;
+import com.dalcomlab.sattang.server.ExecutionMode;
 import com.dalcomlab.sattang.server.HttpServer;
 
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class HttpConnection extends SocketConnection {
+    private static final long MAX_SKIP_BODY_BYTES = 2 * 1024 * 1024;
     private final HttpServer server;
     private final HttpRequestDecoder decoder = new HttpRequestDecoder();
     private final HttpRequest request;
     private final HttpResponse response;
     private final SocketChannel channel;
+    private final NioSocket nioSocket;
+    private final NioEventExecutor reader;
+    private final Runnable offloader;
+    private final Runnable closer;
+    private final boolean inline;
+    private final Runnable expiry;
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+    private EventDispatcher dispatcher;
+    private HashedWheelTimer.Deadline deadline;
+    private boolean idle = false;
+    private volatile boolean waiting = true;
+    private volatile boolean draining = false;
+    private boolean decoded = false;
+    private int requestCount = 0;
 
     /**
      * @param server
      * @param channel
      */
     public HttpConnection(HttpServer server, SocketChannel channel) {
-        super(server, new NioSocket(channel));
+        this(server, channel, new NioSocket(channel));
+    }
+
+    /**
+     * @param server
+     * @param channel
+     * @param socket
+     */
+    private HttpConnection(HttpServer server, SocketChannel channel, NioSocket socket) {
+        super(server, socket, channel);
+        this.nioSocket = socket;
+        this.nioSocket.setReadTimeout(server.getReadTimeout(TimeUnit.MILLISECONDS));
+        this.nioSocket.setWriteTimeout(server.getWriteTimeout(TimeUnit.MILLISECONDS));
+        this.nioSocket.setSelectorPool(server.getSelectorPool());
+        this.nioSocket.setEventDispatcher(getEventDispatcher());
+        this.dispatcher = getEventDispatcher();
         this.channel = channel;
         this.server = server;
         this.request = new DefaultHttpRequest(new DefaultHttpInputStream(readChannel));
-        this.response = new DefaultHttpResponse(new DefaultHttpOutputStream(writeChannel));
+        DefaultHttpResponse response = new DefaultHttpResponse(new DefaultHttpOutputStream(writeChannel));
+        response.setFileCache(server.getOptions().getFileCache());
+        this.response = response;
         this.request.setResponse(this.response);
         this.response.setRequest(this.request);
+        this.inline = server.isInlineDecoding();
+        this.reader = new NioEventExecutor(channel, SocketEvent.READ) {
+            @Override
+            public void execute(SocketChannel channel, EventDispatcher dispatcher) {
+                if (!busy.compareAndSet(false, true)) {
+                    // the connection is being closed by the expired deadline.
+                    return;
+                }
+                HttpConnection.this.dispatcher = dispatcher;
+                nioSocket.setEventDispatcher(dispatcher);
+                try {
+                    fill(channel);
+                    if (idle) {
+                        // the first bytes of the next request are arrived.
+                        idle = false;
+                        schedule(server.getOptions().getHeaderReadTimeout(TimeUnit.MILLISECONDS));
+                    }
+                } catch (ChannelCloseException e) {
+                    close();
+                    return;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    close();
+                    return;
+                }
+                resume(inline);
+            }
+
+            @Override
+            public boolean isInline() {
+                return inline;
+            }
+        };
+        this.offloader = () -> resume(false);
+        this.closer = this::flushAndClose;
+        this.expiry = this::expire;
     }
 
     /**
@@ -89,83 +163,317 @@ public class HttpConnection extends SocketConnection {
         writeChannel.listen(new WriteChannelListener() {
             @Override
             public void onStart(WriteChannel channel) {
-                channel.addFilter(ResponseFilterBuilder.build(response));
+                if (draining && !hasToken(response.getHeader(HttpHeader.CONNECTION), "close")) {
+                    response.removeHeader(HttpHeader.CONNECTION);
+                    response.addHeader(HttpHeader.CONNECTION, "close");
+                }
+                channel.addFilter(ResponseFilterBuilder.build(response, server.getOptions().getCompression()));
             }
         });
 
-        decodeRequestAsync();
+        decoder.listen(request);
+        schedule(server.getOptions().getHeaderReadTimeout(TimeUnit.MILLISECONDS));
+        async(reader);
 
         state.set(State.STARTED);
     }
 
     /**
-     *
+     * Closes the this connection.
      */
-    private void decodeRequestAsync() {
-        decoder.listen(request);
-        transport.async(new NioEventExecutor(channel, SocketEvent.READ) {
-            @Override
-            public void execute(SocketChannel channel, EventDispatcher dispatcher) {
-                try {
-                    if (!decode(channel)) {
-                        dispatcher.register(this);
-                    } else {
-                        // TODO: 비동기 파싱 때문에 반드시 호출해야 하지만 꼭 이렇게 해야 하나 고민이 필요.
-                        decoder.close();
-                        handle();
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+    @Override
+    public void close() {
+        cancelDeadline();
+        super.close();
     }
 
     /**
-     * Closes the this connection.
+     * Asks the connection to close after the request which is being processed.
+     * If no bytes of the next request are received, the connection is closed
+     * immediately.
      */
     @Override
-    public void close() {
-        super.close();
+    public void drain() {
+        draining = true;
+        if (!waiting || !busy.compareAndSet(false, true)) {
+            // the response of the current request closes the connection.
+            return;
+        }
+
+        if (waiting) {
+            close();
+            return;
+        }
+
+        // the bytes of the next request are arrived before the connection is
+        // taken, and the read event may have been skipped in the meantime.
+        busy.set(false);
+        if (dispatcher != null && channel.isOpen()) {
+            dispatcher.register(reader);
+        }
     }
 
     /**
-     *
+     * Stops the connection. If the connection is being processed, only the
+     * socket is closed, and the thread which is processing the connection
+     * closes the connection.
+     */
+    @Override
+    public void stop() {
+        state.set(State.STOPPING);
+        expire();
+        state.set(State.STOPPED);
+    }
+
+    /**
+     * Initializes the connection for the next request on the same socket.
      */
     @Override
     public void reuse() {
         decoder.reset();
         request.reuse();
         response.reuse();
+        readChannel.reuse();
+        writeChannel.reuse();
     }
 
     /**
+     * Reads some data from the socket into the read buffer. The bytes which are
+     * not consumed yet are kept at the front of the read buffer.
      *
+     * @param channel
+     * @throws Exception
      */
-    private boolean decode(SocketChannel channel) throws Exception {
+    private void fill(SocketChannel channel) throws Exception {
         ByteBuffer buffer = readChannel.getReadBuffer();
-        buffer.clear();
+        buffer.compact();
 
         int consume = channel.read(buffer);
+        buffer.flip();
         if (consume == -1) {
             throw new ChannelCloseException("The channel is closed.");
         }
-        buffer.flip();
-        return decoder.decode(buffer);
+        readChannel.count(consume);
     }
 
     /**
+     * Processes the requests in the read buffer, and then waits for the next
+     * read event, hands off the connection to a worker thread or closes the
+     * connection.
      *
+     * @param inline whether the current thread is the event loop thread.
      */
-    private void handle() {
-        HttpHandler handler = server.getHandler(getContextPath());
-        if (handler == null) {
-            handler = server.getHandler("/");
+    private void resume(boolean inline) {
+        try {
+            if (!inline) {
+                // the rest of the response written on the event loop thread.
+                nioSocket.flush();
+            }
+
+            Result result = process(inline);
+            if (inline && nioSocket.hasPendingWrites()) {
+                // the socket buffer is full, and the event loop thread must not
+                // wait until the peer reads the response.
+                if (result == Result.CLOSE) {
+                    transport.getExecutor().execute(closer);
+                    return;
+                }
+                result = Result.OFFLOAD;
+            }
+
+            switch (result) {
+                case WAIT:
+                    if (deadline == null) {
+                        // waits for the next request on the keep-alive connection.
+                        idle = true;
+                        schedule(server.getOptions().getKeepAliveTimeout(TimeUnit.MILLISECONDS));
+                    }
+                    waiting = !readChannel.getReadBuffer().hasRemaining();
+                    busy.set(false);
+                    if (draining && waiting) {
+                        // the transport is stopping, so the idle connection is closed.
+                        if (busy.compareAndSet(false, true)) {
+                            close();
+                        }
+                    } else if (channel.isOpen()) {
+                        dispatcher.register(reader);
+                    } else if (busy.compareAndSet(false, true)) {
+                        // the deadline is expired while the connection is processed.
+                        close();
+                    }
+                    break;
+                case OFFLOAD:
+                    transport.getExecutor().execute(offloader);
+                    break;
+                default:
+                    close();
+                    break;
+            }
+        } catch (ChannelCloseException e) {
+            close();
+        } catch (Exception e) {
+            e.printStackTrace();
+            close();
         }
+    }
 
-        if (handler == null) {
+    /**
+     * Writes the rest of the response on a worker thread, and then closes the
+     * connection.
+     */
+    private void flushAndClose() {
+        try {
+            nioSocket.flush();
+        } catch (Exception e) {
+            // the connection is closed anyway.
+        }
+        close();
+    }
+
+    /**
+     * Decodes and handles all requests in the read buffer in order. The client
+     * can send several requests without waiting for the responses(pipelining),
+     * and in this case, the responses are corked and written together after
+     * the last request in the read buffer is handled.
+     * <p>
+     * On the event loop thread, the decoded request of which route is not
+     * {@link ExecutionMode#INLINE}, or of which body is not in the read buffer
+     * yet, stops the processing, and the processing is continued from that
+     * request on a worker thread.
+     *
+     * @param inline whether the current thread is the event loop thread.
+     * @return
+     * @throws Exception
+     */
+    private Result process(boolean inline) throws Exception {
+        ByteBuffer buffer = readChannel.getReadBuffer();
+        try {
+            while (decoded || decode(buffer)) {
+                if (!decoded) {
+                    // TODO: 비동기 파싱 때문에 반드시 호출해야 하지만 꼭 이렇게 해야 하나 고민이 필요.
+                    decoder.close();
+                    decoded = true;
+                    cancelDeadline();
+                }
+
+                if (inline && (!server.getExecutionMode(getContextPath()).isInline() || !isBodyBuffered(buffer))) {
+                    return Result.OFFLOAD;
+                }
+                decoded = false;
+
+                if (buffer.hasRemaining()) {
+                    writeChannel.cork();
+                }
+
+                if (!handle()) {
+                    return Result.CLOSE;
+                }
+
+                reuse();
+            }
+        } finally {
+            writeChannel.uncork();
+        }
+        return Result.WAIT;
+    }
+
+    /**
+     * Determines whether the whole body of the decoded request is in the read
+     * buffer, so that the handler on the event loop thread reads it without
+     * waiting for the socket.
+     *
+     * @param buffer
+     * @return
+     */
+    private boolean isBodyBuffered(ByteBuffer buffer) {
+        if (request.getHeader(HttpHeader.TRANSFER_ENCODING) != null) {
+            return false;
+        }
+        return request.getContentLength() <= buffer.remaining();
+    }
+
+    /**
+     * Decodes the request in the read buffer, and records the error which
+     * fails the decoding.
+     *
+     * @param buffer
+     * @return <code>true</code> if the whole header block of the request is decoded.
+     * @throws Exception
+     */
+    private boolean decode(ByteBuffer buffer) throws Exception {
+        try {
+            return decoder.decode(buffer);
+        } catch (Exception e) {
+            server.getHttpMetrics().decodeError(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Schedules the deadline of the connection, which replaces the current
+     * deadline. The connection is closed when the deadline is expired.
+     *
+     * @param timeout the timeout in milliseconds.
+     */
+    private void schedule(long timeout) {
+        cancelDeadline();
+        if (timeout <= 0) {
+            return;
+        }
+
+        // the deadline is expired on the event loop which owns the connection.
+        EventDispatcher dispatcher = this.dispatcher;
+        if (dispatcher == null) {
             return;
         }
+        deadline = dispatcher.schedule(expiry, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the current deadline of the connection.
+     */
+    private void cancelDeadline() {
+        if (deadline != null) {
+            deadline.cancel();
+            deadline = null;
+        }
+    }
+
+    /**
+     * Called on the event loop thread when the deadline is expired, or when the
+     * connection is stopped. If the connection is being processed, only the
+     * socket is closed here, because the event loop thread must not block, and
+     * the thread which is processing the connection fails with the closed
+     * socket and closes the connection.
+     * Otherwise, the connection is closed and its buffers are released.
+     */
+    private void expire() {
+        try {
+            socket.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        if (busy.compareAndSet(false, true)) {
+            close();
+        }
+    }
+
+    /**
+     * Handles the decoded request and ends the response.
+     *
+     * @return <code>true</code> if the connection can be kept alive for the next
+     * request, otherwise returns <code>false</code>.
+     */
+    private boolean handle() {
+        final long start = System.nanoTime();
+        requestCount++;
+        boolean keepAlive = isKeepAlive();
+
+        HttpHandler handler = server.getHandler(getContextPath());
+        if (handler == null) {
+            handler = server.getHandler("/");
+        }
 
         this.readChannel.start();
 
@@ -174,11 +482,131 @@ public class HttpConnection extends SocketConnection {
             // filter.filter(SocketChannelConnection, request);
         }
 
-        response.addHeader(HttpHeader.CONNECTION, "close");
-        response.addHeader(HttpHeader.CACHE_CONTROL, "no-cache");
-        handler.handle(request, response);
+        if (!keepAlive) {
+            response.addHeader(HttpHeader.CONNECTION, "close");
+        } else if (request.getProtocol() == HttpProtocol.HTTP10) {
+            response.addHeader(HttpHeader.CONNECTION, "keep-alive");
+        }
+
+        if (handler != null) {
+            handler.handle(request, response);
+        } else {
+            response.setStatus(HttpStatus.NOT_FOUND);
+        }
 
-        close();
+        // the response must be completed even if the handler writes nothing.
+        writeChannel.start();
+        writeChannel.end();
+        server.getHttpMetrics().record(request.getMethod(), response.getStatus(), System.nanoTime() - start);
+
+        if (!keepAlive || draining || !isConnected() || !isPersistent()) {
+            return false;
+        }
+
+        return skipRequestBody();
+    }
+
+    /**
+     * Determines whether the written response lets the connection be kept
+     * alive. The handler may have asked to close the connection, and the body
+     * of the response to the HTTP/1.0 request must have its length.
+     *
+     * @return
+     */
+    private boolean isPersistent() {
+        if (hasToken(response.getHeader(HttpHeader.CONNECTION), "close")) {
+            return false;
+        }
+
+        if (request.getProtocol() == HttpProtocol.HTTP10) {
+            return response.getHeader(HttpHeader.CONTENT_LENGTH) != null
+                    || !ResponseFilterBuilder.hasBody(response.getStatus());
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether the connection can be kept alive after the current
+     * request.
+     *
+     * @return
+     */
+    private boolean isKeepAlive() {
+        HttpProtocol protocol = request.getProtocol();
+        HttpCompatible compatible = HttpCompatible.valueOf(protocol);
+        if (compatible == null || !compatible.isSupportKeepAlive()) {
+            return false;
+        }
+
+        if (draining) {
+            return false;
+        }
+
+        int maxKeepAliveRequests = server.getOptions().getMaxKeepAliveRequests();
+        if (maxKeepAliveRequests > 0 && requestCount >= maxKeepAliveRequests) {
+            return false;
+        }
+
+        String connection = request.getHeader(HttpHeader.CONNECTION);
+        if (protocol == HttpProtocol.HTTP10) {
+            return hasToken(connection, "keep-alive");
+        }
+        return !hasToken(connection, "close");
+    }
+
+    /**
+     * Skips the remaining request body which the handler did not read, so that
+     * the next request can be decoded from the start line.
+     *
+     * @return <code>true</code> if the request body is skipped completely,
+     * otherwise returns <code>false</code>.
+     */
+    private boolean skipRequestBody() {
+        // the end of the chunked body can not be found without decoding all
+        // chunks, so the connection is closed instead.
+        if (request.getHeader(HttpHeader.TRANSFER_ENCODING) != null) {
+            return false;
+        }
+
+        long contentLength = request.getContentLength();
+        if (contentLength <= 0) {
+            return true;
+        }
+
+        if (contentLength > MAX_SKIP_BODY_BYTES) {
+            return false;
+        }
+
+        ByteBuffer skip = ByteBufferPool.heap().acquire((int) Math.min(contentLength, 8192));
+        try {
+            while (true) {
+                skip.clear();
+                if (readChannel.readBlocking(skip, true) == ChannelConstants.END_OF_CHANNEL) {
+                    break;
+                }
+            }
+        } finally {
+            ByteBufferPool.heap().release(skip);
+        }
+        return isConnected();
+    }
+
+    /**
+     * @param value
+     * @param token
+     * @return
+     */
+    private boolean hasToken(String value, String token) {
+        if (value == null) {
+            return false;
+        }
+
+        for (String part : value.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -198,4 +626,13 @@ public class HttpConnection extends SocketConnection {
 
         return contextPath;
     }
+
+    /**
+     * The result of the processing of the read buffer.
+     */
+    private enum Result {
+        WAIT,
+        OFFLOAD,
+        CLOSE
+    }
 }
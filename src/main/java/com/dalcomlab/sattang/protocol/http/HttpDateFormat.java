@@ -1,5 +1,6 @@
 package com.dalcomlab.sattang.protocol.http;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -19,6 +20,35 @@ public class HttpDateFormat {
         return date.format(new Date(now));
     }
 
+    /**
+     * Formats the given time in milliseconds as an HTTP date.
+     *
+     * @param time
+     * @return
+     */
+    public static String formatDate(long time) {
+        SimpleDateFormat date = createDateFormat(DATE_RFC5322, Locale.US, TimeZone.getTimeZone("GMT"));
+        return date.format(new Date(time));
+    }
+
+    /**
+     * Parses the given HTTP date.
+     *
+     * @param value
+     * @return the time in milliseconds, or -1 if the value is not a date.
+     */
+    public static long parseDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+        SimpleDateFormat date = createDateFormat(DATE_RFC5322, Locale.US, TimeZone.getTimeZone("GMT"));
+        try {
+            return date.parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
     /**
      *
      * @param format
@@ -0,0 +1,137 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.protocol.http;
+
+import com.dalcomlab.sattang.metrics.Counter;
+import com.dalcomlab.sattang.metrics.Histogram;
+import com.dalcomlab.sattang.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics of the HTTP requests, which are registered in the
+ * {@link MetricsRegistry} of the server.
+ * <p>
+ * The requests are counted by the method and the {@link HttpStatus.Category}
+ * of the response. The counters are created once for each method, so counting
+ * a request does not allocate.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class HttpMetrics {
+    private static final String REQUESTS = "sattang_http_requests_total";
+    private static final String REQUESTS_HELP = "The number of the HTTP requests by the method and the status class.";
+    private static final String OTHER_METHOD = "OTHER";
+    private static final HttpStatus.Category[] CATEGORIES = HttpStatus.Category.values();
+
+    private final MetricsRegistry registry;
+    private final Map<HttpMethod, Counter[]> requests = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Counter> decodeErrors = new ConcurrentHashMap<>();
+    private final Counter[] otherRequests;
+    private final Histogram duration;
+
+    /**
+     * @param registry
+     */
+    public HttpMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.otherRequests = createCounters(OTHER_METHOD);
+        this.duration = registry.histogram("sattang_http_request_duration_seconds",
+                "The time from the decoded request to the end of the response.");
+    }
+
+    /**
+     * Records the completed request.
+     *
+     * @param method   the method of the request, or <code>null</code> if it is unknown.
+     * @param status   the status of the response.
+     * @param duration the duration in nanoseconds.
+     */
+    public void record(HttpMethod method, HttpStatus status, long duration) {
+        Counter[] counters = otherRequests;
+        if (method != null) {
+            counters = requests.get(method);
+            if (counters == null) {
+                counters = requests.computeIfAbsent(method, m -> createCounters(m.name()));
+            }
+        }
+
+        HttpStatus.Category category = status != null ? status.getCategory() : HttpStatus.Category.UNKNOWN;
+        counters[category.ordinal()].increment();
+        this.duration.record(duration, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the error which fails the decoding of a request.
+     *
+     * @param error
+     */
+    public void decodeError(Throwable error) {
+        Counter counter = decodeErrors.get(error.getClass());
+        if (counter == null) {
+            counter = decodeErrors.computeIfAbsent(error.getClass(), type ->
+                    registry.counter("sattang_http_decode_errors_total",
+                            "The number of the requests which are failed to decode by the exception type.",
+                            "exception", type.getSimpleName()));
+        }
+        counter.increment();
+    }
+
+    /**
+     * Returns the histogram of the request durations.
+     *
+     * @return
+     */
+    public Histogram getDuration() {
+        return duration;
+    }
+
+    /**
+     * @param method
+     * @return
+     */
+    private Counter[] createCounters(String method) {
+        Counter[] counters = new Counter[CATEGORIES.length];
+        for (HttpStatus.Category category : CATEGORIES) {
+            counters[category.ordinal()] = registry.counter(REQUESTS, REQUESTS_HELP,
+                    "method", method, "status", getStatusLabel(category));
+        }
+        return counters;
+    }
+
+    /**
+     * @param category
+     * @return
+     */
+    private static String getStatusLabel(HttpStatus.Category category) {
+        switch (category) {
+            case INFORMATION:
+                return "1xx";
+            case SUCCESS:
+                return "2xx";
+            case REDIRECT:
+                return "3xx";
+            case CLIENT_ERROR:
+                return "4xx";
+            case SERVER_ERROR:
+                return "5xx";
+            default:
+                return "unknown";
+        }
+    }
+}
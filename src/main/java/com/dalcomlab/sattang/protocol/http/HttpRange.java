@@ -0,0 +1,189 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.protocol.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The byte range of the <code>Range</code> header (RFC 7233).
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public final class HttpRange {
+    /**
+     * The maximum number of the ranges which are served. A request which asks
+     * for more ranges is served with the whole content.
+     */
+    public static final int MAX_RANGES = 16;
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long start;
+    private final long end;
+
+    /**
+     * @param start the first byte position.
+     * @param end   the last byte position, inclusive.
+     */
+    public HttpRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parses the value of the <code>Range</code> header for the content of the
+     * given length. The overlapping ranges are coalesced.
+     *
+     * @param value
+     * @param length
+     * @return <code>null</code> if the header must be ignored, or an empty list
+     * if none of the ranges is satisfiable.
+     */
+    public static List<HttpRange> parse(String value, long length) {
+        if (value == null) {
+            return null;
+        }
+
+        value = value.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+
+        List<HttpRange> ranges = new ArrayList<>();
+        for (String spec : value.substring(BYTES_UNIT.length()).split(",")) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+
+            long first = parseLong(spec.substring(0, dash).trim());
+            long last = parseLong(spec.substring(dash + 1).trim());
+            if (dash == 0) {
+                // the suffix range : -500 is the last 500 bytes.
+                if (last < 0) {
+                    return null;
+                }
+                if (last > 0 && length > 0) {
+                    ranges.add(new HttpRange(Math.max(length - last, 0), length - 1));
+                }
+                continue;
+            }
+
+            if (first < 0 || (dash < spec.length() - 1 && last < 0)) {
+                return null;
+            }
+            if (last >= 0 && last < first) {
+                return null;
+            }
+            if (first >= length) {
+                // not satisfiable.
+                continue;
+            }
+            ranges.add(new HttpRange(first, last < 0 ? length - 1 : Math.min(last, length - 1)));
+        }
+
+        ranges = coalesce(ranges);
+        return ranges.size() > MAX_RANGES ? null : ranges;
+    }
+
+    /**
+     * @return the first byte position.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the last byte position, inclusive.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the number of the bytes in this range.
+     */
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * Returns the value of the <code>Content-Range</code> header of this range.
+     *
+     * @param length the length of the whole content.
+     * @return
+     */
+    public String toContentRange(long length) {
+        return "bytes " + start + "-" + end + "/" + length;
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+
+    /**
+     * Merges the overlapping or adjacent ranges. If no range overlaps, the
+     * ranges are kept in the requested order.
+     *
+     * @param ranges
+     * @return
+     */
+    private static List<HttpRange> coalesce(List<HttpRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        List<HttpRange> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, Comparator.comparingLong(HttpRange::getStart));
+        List<HttpRange> merged = new ArrayList<>();
+        HttpRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            HttpRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new HttpRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged.size() < ranges.size() ? merged : ranges;
+    }
+
+    /**
+     * @param value
+     * @return -1 if the value is not a non-negative number.
+     */
+    private static long parseLong(String value) {
+        if (value.isEmpty() || value.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Long.parseLong(value);
+    }
+}
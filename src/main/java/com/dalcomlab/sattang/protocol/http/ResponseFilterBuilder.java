@@ -15,9 +15,11 @@
  */
 package com.dalcomlab.sattang.protocol.http;
 
+import com.dalcomlab.sattang.protocol.HttpRequest;
 import com.dalcomlab.sattang.protocol.HttpResponse;
 import com.dalcomlab.sattang.protocol.http.filters.ResponseChunkFilter;
 import com.dalcomlab.sattang.protocol.http.filters.ResponseContentLengthFilter;
+import com.dalcomlab.sattang.protocol.http.filters.ResponseGZipFilter;
 import com.dalcomlab.sattang.protocol.http.filters.ResponseHeaderCommitFilter;
 
 import java.util.ArrayList;
@@ -32,7 +34,38 @@ public class ResponseFilterBuilder {
      * @return
      */
     public static ResponseFilter[] build(HttpResponse response) {
+        return build(response, null);
+    }
+
+    /**
+     * Builds the filters of the response. If the response is compressed, the
+     * <code>Content-Length</code> header is removed and the body is chunked.
+     * The body of unknown length is not chunked for the HTTP/1.0 request, and
+     * the connection is closed after it instead.
+     *
+     * @param response
+     * @param compression the compression options, or <code>null</code> if the
+     *                    responses are not compressed.
+     * @return
+     */
+    public static ResponseFilter[] build(HttpResponse response, CompressionOptions compression) {
         List<ResponseFilter> filters = new ArrayList<>();
+        if (!hasBody(response.getStatus())) {
+            // the response ends with the header, and the body is discarded.
+            filters.add(new ResponseContentLengthFilter(0));
+            filters.add(new ResponseHeaderCommitFilter(response));
+            return filters.stream().toArray(ResponseFilter[]::new);
+        }
+
+        String coding = negotiate(response, compression);
+        if (coding != null) {
+            response.removeHeader(HttpHeader.CONTENT_LENGTH);
+            response.addHeader(HttpHeader.CONTENT_ENCODING, coding);
+            addVary(response);
+            weakenETag(response);
+            filters.add(new ResponseGZipFilter(coding.equals("gzip"), compression.getLevel(), compression.getBufferSize()));
+        }
+
         String encoding = response.getHeader(HttpHeader.TRANSFER_ENCODING);
         if (encoding != null && encoding.equalsIgnoreCase("chunked")) {
             filters.add(new ResponseChunkFilter());
@@ -40,6 +73,11 @@ public class ResponseFilterBuilder {
             long contentLength = response.getContentLength();
             if (contentLength > 0) {
                 filters.add(new ResponseContentLengthFilter(contentLength));
+            } else if (isHttp10(response)) {
+                // the HTTP/1.0 client can not decode the chunked body, so the
+                // end of the body is marked by closing the connection.
+                response.removeHeader(HttpHeader.CONNECTION);
+                response.addHeader(HttpHeader.CONNECTION, "close");
             } else {
                 response.addHeader(HttpHeader.TRANSFER_ENCODING, "chunked");
                 filters.add(new ResponseChunkFilter());
@@ -48,4 +86,90 @@ public class ResponseFilterBuilder {
         filters.add(new ResponseHeaderCommitFilter(response));
         return filters.stream().toArray(ResponseFilter[]::new);
     }
+
+    /**
+     * Determines whether the response of the status can have a body. The
+     * <code>204 No Content</code> and <code>304 Not Modified</code> responses
+     * have no body.
+     *
+     * @param status
+     * @return
+     */
+    static boolean hasBody(HttpStatus status) {
+        return status != HttpStatus.NO_CONTENT && status != HttpStatus.NOT_MODIFIED;
+    }
+
+    /**
+     * Determines whether the response answers the HTTP/1.0 request.
+     *
+     * @param response
+     * @return
+     */
+    private static boolean isHttp10(HttpResponse response) {
+        HttpRequest request = response.getRequest();
+        return request != null && request.getProtocol() == HttpProtocol.HTTP10;
+    }
+
+    /**
+     * Returns the content coding which compresses the response. The response
+     * which is already encoded, the partial content, and the response to the
+     * HEAD request are not compressed.
+     *
+     * @param response
+     * @param compression
+     * @return <code>null</code> if the response is not compressed.
+     */
+    private static String negotiate(HttpResponse response, CompressionOptions compression) {
+        if (compression == null) {
+            return null;
+        }
+
+        HttpRequest request = response.getRequest();
+        if (request == null || request.getMethod() == HttpMethod.HEAD) {
+            return null;
+        }
+
+        if (response.getHeader(HttpHeader.CONTENT_ENCODING) != null || response.getHeader(HttpHeader.CONTENT_RANGE) != null) {
+            return null;
+        }
+
+        if (!compression.isCompressible(response.getHeader(HttpHeader.CONTENT_TYPE))) {
+            return null;
+        }
+
+        long contentLength = response.getContentLength();
+        if (contentLength >= 0 && contentLength < compression.getMinSize()) {
+            return null;
+        }
+        return compression.negotiate(request.getHeader(HttpHeader.ACCEPT_ENCODING));
+    }
+
+    /**
+     * Adds the <code>Accept-Encoding</code> to the <code>Vary</code> header.
+     *
+     * @param response
+     */
+    private static void addVary(HttpResponse response) {
+        String vary = response.getHeader(HttpHeader.VARY);
+        if (vary == null) {
+            response.addHeader(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING);
+        } else if (!vary.toLowerCase().contains("accept-encoding") && !vary.trim().equals("*")) {
+            response.removeHeader(HttpHeader.VARY);
+            response.addHeader(HttpHeader.VARY, vary + ", " + HttpHeader.ACCEPT_ENCODING);
+        }
+    }
+
+    /**
+     * Makes the strong entity tag weak, because the compressed content is not
+     * byte-for-byte identical to the content which the tag identifies.
+     *
+     * @param response
+     */
+    private static void weakenETag(HttpResponse response) {
+        String etag = response.getHeader(HttpHeader.ETAG);
+        if (etag != null && !etag.startsWith("W/")) {
+            response.removeHeader(HttpHeader.ETAG);
+            response.addHeader(HttpHeader.ETAG, "W/" + etag);
+        }
+    }
 }
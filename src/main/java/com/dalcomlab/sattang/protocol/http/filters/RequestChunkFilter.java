@@ -15,6 +15,8 @@
  */
 package com.dalcomlab.sattang.protocol.http.filters;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+import com.dalcomlab.sattang.common.ByteBufferUtils;
 import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.io.read.ReadChannel;
 import com.dalcomlab.sattang.protocol.http.RequestFilter;
@@ -26,7 +28,7 @@ import java.nio.ByteBuffer;
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class RequestChunkFilter extends RequestFilter {
-    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private ByteBuffer buffer = ByteBufferPool.heap().acquire(1024);
     private State state = State.CHUNK_LENGTH;
     private long remaining = 0;
 
@@ -156,10 +158,10 @@ public class RequestChunkFilter extends RequestFilter {
         int consume = 0;
         // read the buffer from a buffered
         if (remaining > 0 && buffer.hasRemaining()) {
-            consume = min((int) remaining, buffer.remaining(), out.remaining());
-            out.put(buffer.array(), buffer.arrayOffset(), consume);
-
-            buffer.position(buffer.position() + consume);
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + min((int) remaining, buffer.remaining(), out.remaining()));
+            consume = ByteBufferUtils.copy(buffer, out);
+            buffer.limit(limit);
             remaining -= consume;
         }
 
@@ -238,6 +240,16 @@ public class RequestChunkFilter extends RequestFilter {
         return bytes;
     }
 
+    /**
+     * Releases the buffer to the pool.
+     */
+    @Override
+    public void release() {
+        if (buffer != null) {
+            ByteBufferPool.heap().release(buffer);
+            buffer = null;
+        }
+    }
 
     /**
      * @param state
@@ -15,6 +15,7 @@
  */
 package com.dalcomlab.sattang.protocol.http.filters;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
 import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.io.write.WriteChannel;
 import com.dalcomlab.sattang.protocol.http.ResponseFilter;
@@ -29,16 +30,19 @@ public class ResponseChunkFilter extends ResponseFilter {
 
     private static final byte[] HEX = "0123456789abcdef".getBytes();
     private final ByteBuffer lastChunk = ByteBuffer.wrap("0\r\n\r\n".getBytes());
-    private ByteBuffer length = ByteBuffer.allocate(8); // the maximum length is 8(eg. FFFF FFFF)
-    private ByteBuffer crlf = ByteBuffer.allocate(2);
-    private State state = State.CHUNK_LENGTH;
+    private ByteBuffer buffer = ByteBufferPool.direct().acquire(12);
+    private final ByteBuffer length; // the maximum length is 8(eg. FFFF FFFF)
+    private final ByteBuffer crlf;
+    private final ByteBuffer trailer;
 
     /**
      *
      */
     public ResponseChunkFilter() {
-        length.compact();
-        crlf.compact();
+        // the length and the CR/LFs share a pooled buffer.
+        length = slice(0, 8);
+        crlf = slice(8, 10);
+        trailer = slice(10, 12);
     }
 
     /**
@@ -55,51 +59,60 @@ public class ResponseChunkFilter extends ResponseFilter {
             return ChannelConstants.END_OF_CHANNEL;
         }
 
-        if (source.remaining() == 0 || !source.hasArray()) {
+        if (source.remaining() == 0) {
             return 0;
         }
 
+        return (int) write(channel, new ByteBuffer[]{source});
+    }
 
-        // write the length of the chunk.
-        if (state.isLength()) {
-            writeLength(channel, source);
+    /**
+     * Writes the given buffers to this filters as a chunk. The length of the
+     * chunk, the buffers and the CR/LFs are passed to the next filter at once.
+     *
+     * @param channel
+     * @param sources
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public long write(WriteChannel channel, ByteBuffer[] sources) throws IOException {
+        if (next() == null) {
+            return ChannelConstants.END_OF_CHANNEL;
         }
 
-        // write the CR/LF at the end of the length.
-        if (state.isLengthCrlf()) {
-            writeLengthCrlf(channel);
+        long remaining = 0;
+        for (ByteBuffer source : sources) {
+            remaining += source.remaining();
         }
 
-        int consume = 0;
-
-        // write the chunk body.
-        if (state.isBody()) {
-            consume = writeBody(channel, source);
+        if (remaining == 0) {
+            return 0;
         }
 
-        // write the CR/LF at the end of the chunk body.
-        if (state.isBodyCrlf()) {
-            writeBodyCrlf(channel);
+        if (remaining > Integer.MAX_VALUE) {
+            // too large to be a chunk, write the buffers one by one.
+            return super.write(channel, sources);
         }
 
-        return consume;
-    }
+        fillLengthBuffer(length, (int) remaining);
+        fillCrlfBuffer(crlf);
+        fillCrlfBuffer(trailer);
 
-    /**
-     * @param source
-     * @return
-     * @throws IOException
-     */
-    private int writeLength(WriteChannel channel, ByteBuffer source) throws IOException {
-        if (length.remaining() == 0) {
-            fillLengthBuffer(length, source.remaining());
+        ByteBuffer[] buffers = new ByteBuffer[sources.length + 3];
+        buffers[0] = length;
+        buffers[1] = crlf;
+        System.arraycopy(sources, 0, buffers, 2, sources.length);
+        buffers[buffers.length - 1] = trailer;
+
+        if (next().write(channel, buffers) == ChannelConstants.END_OF_CHANNEL) {
+            return ChannelConstants.END_OF_CHANNEL;
         }
 
-        int consume = next().write(channel, length);
-        if (length.remaining() == 0) {
-            changeState(State.CHUNK_LENGTH_CRLF);
+        for (ByteBuffer source : sources) {
+            remaining -= source.remaining();
         }
-        return consume;
+        return remaining;
     }
 
     /**
@@ -121,55 +134,26 @@ public class ResponseChunkFilter extends ResponseFilter {
     }
 
     /**
-     * @return
-     * @throws IOException
-     */
-    private int writeLengthCrlf(WriteChannel channel) throws IOException {
-        int consume = writeCrlf(channel);
-        if (crlf.remaining() == 0) {
-            changeState(State.CHUNK_BODY);
-        }
-        return consume;
-    }
-
-    /**
-     * @param source
-     * @return
-     * @throws IOException
-     */
-    private int writeBody(WriteChannel channel, ByteBuffer source) throws IOException {
-        int consume = next().write(channel, source);
-        if (source.remaining() == 0) {
-            changeState(State.CHUNK_BODY_CRLF);
-        }
-        return consume;
-    }
-
-    /**
-     * @return
-     * @throws IOException
+     * @param buffer
      */
-    private int writeBodyCrlf(WriteChannel channel) throws IOException {
-        int consume = writeCrlf(channel);
-        if (crlf.remaining() == 0) {
-            changeState(State.CHUNK_LENGTH);
-        }
-
-        return consume;
+    private void fillCrlfBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        buffer.put((byte) '\r');
+        buffer.put((byte) '\n');
+        buffer.flip();
     }
 
     /**
+     * @param from
+     * @param to
      * @return
-     * @throws IOException
      */
-    private int writeCrlf(WriteChannel channel) throws IOException {
-        if (crlf.remaining() == 0) {
-            crlf.clear();
-            crlf.put((byte) '\r');
-            crlf.put((byte) '\n');
-            crlf.flip();
-        }
-        return next().write(channel, crlf);
+    private ByteBuffer slice(int from, int to) {
+        buffer.limit(to);
+        buffer.position(from);
+        ByteBuffer slice = buffer.slice();
+        buffer.clear();
+        return slice;
     }
 
     /**
@@ -188,36 +172,13 @@ public class ResponseChunkFilter extends ResponseFilter {
     }
 
     /**
-     * @param state
-     */
-    private void changeState(State state) {
-        this.state = state;
-    }
-
-    /**
-     *
+     * Releases the buffer to the pool.
      */
-    private enum State {
-        CHUNK_LENGTH,
-        CHUNK_LENGTH_CRLF,
-        CHUNK_BODY,
-        CHUNK_BODY_CRLF;
-
-        public boolean isLength() {
-            return this == CHUNK_LENGTH;
-        }
-
-        public boolean isLengthCrlf() {
-            return this == CHUNK_LENGTH_CRLF;
-        }
-
-        public boolean isBody() {
-            return this == CHUNK_BODY;
-        }
-
-        public boolean isBodyCrlf() {
-            return this == CHUNK_BODY_CRLF;
+    @Override
+    public void release() {
+        if (buffer != null) {
+            ByteBufferPool.direct().release(buffer);
+            buffer = null;
         }
     }
-
 }
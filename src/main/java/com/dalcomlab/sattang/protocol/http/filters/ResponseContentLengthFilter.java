@@ -21,6 +21,7 @@ import com.dalcomlab.sattang.protocol.http.ResponseFilter;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -60,11 +61,74 @@ public class ResponseContentLengthFilter extends ResponseFilter {
         int consume = source.remaining();
         if ((written + consume) > length) {
             consume = (int) (length - written);
-            written = length;
         }
 
         source.limit(source.position() + consume);
         consume = next().write(channel, source);
+        if (consume > 0) {
+            written += consume;
+        }
+        return consume;
+    }
+
+    /**
+     * Writes the given buffers to this filters. The buffers are passed to the
+     * next filter at once, and the bytes over the content length are cut off.
+     *
+     * @param channel
+     * @param sources
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public long write(WriteChannel channel, ByteBuffer[] sources) throws IOException {
+        if (next() == null) {
+            return ChannelConstants.END_OF_CHANNEL;
+        }
+
+        if (written > length) {
+            return ChannelConstants.END_OF_CHANNEL;
+        }
+
+        long available = length - written;
+        for (ByteBuffer source : sources) {
+            int consume = (int) Math.min(source.remaining(), available);
+            source.limit(source.position() + consume);
+            available -= consume;
+        }
+
+        long consume = next().write(channel, sources);
+        if (consume > 0) {
+            written += consume;
+        }
+        return consume;
+    }
+
+    /**
+     * Transfers the given region of the file to the next filter, and the bytes
+     * over the content length are cut off.
+     *
+     * @param channel
+     * @param file
+     * @param position
+     * @param count
+     * @return
+     * @throws IOException
+     */
+    @Override
+    public long transferFrom(WriteChannel channel, FileChannel file, long position, long count) throws IOException {
+        if (next() == null) {
+            return ChannelConstants.END_OF_CHANNEL;
+        }
+
+        if (written > length) {
+            return ChannelConstants.END_OF_CHANNEL;
+        }
+
+        long consume = next().transferFrom(channel, file, position, Math.min(count, length - written));
+        if (consume > 0) {
+            written += consume;
+        }
         return consume;
     }
 }
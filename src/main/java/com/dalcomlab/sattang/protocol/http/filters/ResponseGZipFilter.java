@@ -15,29 +15,60 @@
  */
 package com.dalcomlab.sattang.protocol.http.filters;
 
+import com.dalcomlab.sattang.common.ByteBufferPool;
+import com.dalcomlab.sattang.common.CompressionPool;
 import com.dalcomlab.sattang.net.ChannelConstants;
 import com.dalcomlab.sattang.net.io.write.WriteChannel;
+import com.dalcomlab.sattang.protocol.http.CompressionOptions;
 import com.dalcomlab.sattang.protocol.http.ResponseFilter;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 /**
+ * Compresses the response body with the gzip or the deflate coding.
+ * <p>
+ * The compressed output is collected in a pooled buffer, and is passed to the
+ * next filter only when the buffer is full, when the response is flushed, or
+ * when the response ends. The deflater is flushed with
+ * {@link Deflater#SYNC_FLUSH} only if there is input since the last flush,
+ * and is acquired from the {@link CompressionPool}.
+ *
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class ResponseGZipFilter extends ResponseFilter {
-    private GZIPOutputStream gzipOutputStream = null;
-    private WriteChannel channel = null;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private final boolean gzip;
+    private final int level;
+    private final int bufferSize;
+    private Deflater deflater = null;
+    private CRC32 crc = null;
+    private ByteBuffer output = null;
+    private ByteBuffer input = null;
+    private boolean pending = false;
+    private boolean finished = false;
 
     /**
      *
      */
     public ResponseGZipFilter() {
-
+        this(true, Deflater.DEFAULT_COMPRESSION, CompressionOptions.DEFAULT_BUFFER_SIZE);
     }
 
+    /**
+     * @param gzip       <code>true</code> for the gzip coding, and
+     *                   <code>false</code> for the deflate (zlib) coding.
+     * @param level      the compression level.
+     * @param bufferSize the size of the buffer of the compressed output.
+     */
+    public ResponseGZipFilter(boolean gzip, int level, int bufferSize) {
+        this.gzip = gzip;
+        this.level = level;
+        this.bufferSize = Math.max(bufferSize, GZIP_HEADER.length + GZIP_TRAILER_SIZE);
+    }
 
     /**
      * Writes the given buffer to this filters.
@@ -49,74 +80,237 @@ public class ResponseGZipFilter extends ResponseFilter {
      */
     @Override
     public int write(WriteChannel channel, ByteBuffer source) throws IOException {
-        if (next() == null) {
+        if (next() == null || finished) {
             return ChannelConstants.END_OF_CHANNEL;
         }
 
-        if (source.remaining() == 0 || !source.hasArray()) {
+        int length = source.remaining();
+        if (length == 0) {
             return 0;
         }
 
-        if (gzipOutputStream == null) {
-            gzipOutputStream = new GZIPOutputStream(new DelegateOutputStream(), true);
+        start();
+        if (source.hasArray()) {
+            if (!deflate(channel, source.array(), source.arrayOffset() + source.position(), length)) {
+                return ChannelConstants.END_OF_CHANNEL;
+            }
+            source.position(source.limit());
+            return length;
         }
 
-        this.channel = channel;
-        int length = source.remaining();
-        gzipOutputStream.write(source.array(), source.arrayOffset() + source.position(), length);
-        source.position(source.position() + length);
+        // the direct buffer is copied to the heap buffer for the deflater.
+        if (input == null) {
+            input = ByteBufferPool.heap().acquire(bufferSize);
+        }
+        while (source.hasRemaining()) {
+            int n = Math.min(source.remaining(), input.capacity());
+            source.get(input.array(), input.arrayOffset(), n);
+            if (!deflate(channel, input.array(), input.arrayOffset(), n)) {
+                return ChannelConstants.END_OF_CHANNEL;
+            }
+        }
         return length;
     }
 
-
     /**
-     * Flushes the buffer.
+     * Flushes the compressed output of the written data to the next filter.
      *
+     * @param channel
      * @throws IOException
      */
     @Override
     public void flush(WriteChannel channel) throws IOException {
-        if (gzipOutputStream != null) {
-            try {
-                gzipOutputStream.flush();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        if (next() == null) {
+            return;
         }
-        if (next() != null) {
-            next().flush(channel);
+
+        if (pending && !finished) {
+            pending = false;
+            if (!syncFlush(channel) || !writeOutput(channel)) {
+                return;
+            }
         }
+        next().flush(channel);
     }
 
     /**
+     * Finishes the compressed stream, and ends the next filter.
      *
+     * @param channel
+     * @throws IOException
      */
-    protected class DelegateOutputStream extends OutputStream {
-        protected final ByteBuffer outputChunk = ByteBuffer.allocate(1);
-
-        @Override
-        public void write(int b) throws IOException {
-            outputChunk.put(0, (byte) (b & 0xff));
-            if (next() != null) {
-                next().write(channel, outputChunk);
+    @Override
+    public void end(WriteChannel channel) throws IOException {
+        if (next() == null) {
+            return;
+        }
+
+        try {
+            if (!finished) {
+                start();
+                finished = true;
+                if (!finish(channel)) {
+                    return;
+                }
             }
+            next().end(channel);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Returns the deflater to the pool, and releases the buffers.
+     */
+    @Override
+    public void release() {
+        if (deflater != null) {
+            CompressionPool.shared().releaseDeflater(deflater);
+            deflater = null;
+        }
+        if (output != null) {
+            ByteBufferPool.heap().release(output);
+            output = null;
+        }
+        if (input != null) {
+            ByteBufferPool.heap().release(input);
+            input = null;
+        }
+    }
+
+    /**
+     * Creates the deflater and the output buffer with the gzip header.
+     */
+    private void start() {
+        if (deflater != null) {
+            return;
         }
 
-        @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            if (next() != null) {
-                next().write(channel, ByteBuffer.wrap(b, off, len));
+        // the gzip coding wraps the raw deflate stream with its own header.
+        deflater = CompressionPool.shared().acquireDeflater(level, gzip);
+        output = ByteBufferPool.heap().acquire(bufferSize);
+        if (gzip) {
+            crc = new CRC32();
+            output.put(GZIP_HEADER);
+        }
+    }
+
+    /**
+     * Compresses the given bytes. The deflater consumes all bytes before this
+     * method returns, because it refers to the given array.
+     *
+     * @param channel
+     * @param b
+     * @param off
+     * @param len
+     * @return <code>false</code> if the next filter is closed.
+     * @throws IOException
+     */
+    private boolean deflate(WriteChannel channel, byte[] b, int off, int len) throws IOException {
+        if (gzip) {
+            crc.update(b, off, len);
+        }
+        pending = true;
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            if (drain(channel, Deflater.NO_FLUSH) < 0) {
+                return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * Flushes the pending output of the deflater to the output buffer.
+     *
+     * @param channel
+     * @return <code>false</code> if the next filter is closed.
+     * @throws IOException
+     */
+    private boolean syncFlush(WriteChannel channel) throws IOException {
+        int space;
+        int n;
+        do {
+            space = output.remaining();
+            n = drain(channel, Deflater.SYNC_FLUSH);
+            if (n < 0) {
+                return false;
+            }
+        } while (n == space);
+        return true;
+    }
 
-        @Override
-        public void flush() throws IOException {
+    /**
+     * Finishes the deflater, and writes the gzip trailer and the output buffer.
+     *
+     * @param channel
+     * @return <code>false</code> if the next filter is closed.
+     * @throws IOException
+     */
+    private boolean finish(WriteChannel channel) throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (drain(channel, Deflater.NO_FLUSH) < 0) {
+                return false;
+            }
+        }
 
+        if (gzip) {
+            if (output.remaining() < GZIP_TRAILER_SIZE && !writeOutput(channel)) {
+                return false;
+            }
+            putIntLE((int) crc.getValue());
+            putIntLE((int) deflater.getBytesRead());
         }
+        return writeOutput(channel);
+    }
 
-        @Override
-        public void close() throws IOException {
+    /**
+     * Deflates into the output buffer, and writes the buffer if it is full.
+     *
+     * @param channel
+     * @param flush
+     * @return the number of the deflated bytes, or -1 if the next filter is
+     * closed.
+     * @throws IOException
+     */
+    private int drain(WriteChannel channel, int flush) throws IOException {
+        int n = deflater.deflate(output.array(), output.arrayOffset() + output.position(), output.remaining(), flush);
+        output.position(output.position() + n);
+        if (!output.hasRemaining() && !writeOutput(channel)) {
+            return -1;
+        }
+        return n;
+    }
 
+    /**
+     * Writes the output buffer to the next filter.
+     *
+     * @param channel
+     * @return <code>false</code> if the next filter is closed.
+     * @throws IOException
+     */
+    private boolean writeOutput(WriteChannel channel) throws IOException {
+        output.flip();
+        try {
+            while (output.hasRemaining()) {
+                if (next().write(channel, output) == ChannelConstants.END_OF_CHANNEL) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            output.clear();
         }
     }
+
+    /**
+     * @param value
+     */
+    private void putIntLE(int value) {
+        output.put((byte) value);
+        output.put((byte) (value >> 8));
+        output.put((byte) (value >> 16));
+        output.put((byte) (value >> 24));
+    }
 }
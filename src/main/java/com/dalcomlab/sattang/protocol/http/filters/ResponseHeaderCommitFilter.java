@@ -24,6 +24,7 @@ import com.dalcomlab.sattang.protocol.http.ResponseFilter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -58,74 +59,115 @@ public class ResponseHeaderCommitFilter extends ResponseFilter {
             return ChannelConstants.END_OF_CHANNEL;
         }
 
-        if (source.remaining() == 0 || !source.hasArray()) {
+        if (source.remaining() == 0) {
             return 0;
         }
 
         if (!state.isCommitted()) {
-            flushHeader(channel);
+            return (int) write(channel, new ByteBuffer[]{source});
         }
 
-        int consume = 0;
-        if (state.isCommitted()) {
-            consume = next().write(channel, source);
-        }
-
-        return consume;
+        return next().write(channel, source);
     }
 
     /**
-     * Flushes the buffer.
+     * Writes the given buffers to this filters. If the response is not
+     * committed yet, the status line and the headers are passed to the next
+     * filter together with the buffers.
      *
      * @param channel
+     * @param sources
+     * @return
      * @throws IOException
      */
     @Override
-    public void flush(WriteChannel channel) throws IOException {
+    public long write(WriteChannel channel, ByteBuffer[] sources) throws IOException {
         if (next() == null) {
-            return;
+            return ChannelConstants.END_OF_CHANNEL;
         }
-        if (!state.isCommitted()) {
-            flushHeader(channel);
+
+        if (state.isCommitted()) {
+            return next().write(channel, sources);
         }
 
-        next().flush(channel);
+        if (statusBuffer == null) {
+            fillStatusBuffer();
+        }
+
+        if (headerBuffer == null) {
+            fillHeaderBuffer();
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[sources.length + 2];
+        buffers[0] = statusBuffer;
+        buffers[1] = headerBuffer;
+        System.arraycopy(sources, 0, buffers, 2, sources.length);
+
+        long remaining = 0;
+        for (ByteBuffer source : sources) {
+            remaining += source.remaining();
+        }
+
+        if (next().write(channel, buffers) == ChannelConstants.END_OF_CHANNEL) {
+            return ChannelConstants.END_OF_CHANNEL;
+        }
+
+        if (!statusBuffer.hasRemaining()) {
+            changeState(State.RESPONSE_HEADER);
+        }
+
+        if (!statusBuffer.hasRemaining() && !headerBuffer.hasRemaining()) {
+            changeState(State.RESPONSE_COMMITTED);
+        }
+
+        for (ByteBuffer source : sources) {
+            remaining -= source.remaining();
+        }
+        return remaining;
     }
 
     /**
+     * Commits the status line and the headers, and transfers the given region
+     * of the file to the next filter.
+     *
      * @param channel
+     * @param file
+     * @param position
+     * @param count
+     * @return
      * @throws IOException
      */
-    private void flushHeader(WriteChannel channel) throws IOException {
-        if (state.isStatus()) {
-            writeStatus(channel);
+    @Override
+    public long transferFrom(WriteChannel channel, FileChannel file, long position, long count) throws IOException {
+        if (next() == null) {
+            return ChannelConstants.END_OF_CHANNEL;
         }
 
-        if (state.isHeader()) {
-            writeHeaders(channel);
+        if (!state.isCommitted()) {
+            if (write(channel, new ByteBuffer[0]) == ChannelConstants.END_OF_CHANNEL) {
+                return ChannelConstants.END_OF_CHANNEL;
+            }
         }
-    }
 
+        return next().transferFrom(channel, file, position, count);
+    }
 
     /**
-     * @return
+     * Flushes the buffer.
+     *
+     * @param channel
      * @throws IOException
      */
-    private int writeStatus(WriteChannel channel) throws IOException {
-        if (statusBuffer == null) {
-            fillStatusBuffer();
-        }
-
-        int consume = 0;
-        if (statusBuffer.hasRemaining()) {
-            consume = next().write(channel, statusBuffer);
+    @Override
+    public void flush(WriteChannel channel) throws IOException {
+        if (next() == null) {
+            return;
         }
-
-        if (statusBuffer.remaining() == 0) {
-            changeState(State.RESPONSE_HEADER);
+        if (!state.isCommitted()) {
+            write(channel, new ByteBuffer[0]);
         }
 
-        return consume;
+        next().flush(channel);
     }
 
     /**
@@ -151,27 +193,6 @@ public class ResponseHeaderCommitFilter extends ResponseFilter {
         statusBuffer.flip();
     }
 
-    /**
-     * @return
-     * @throws IOException
-     */
-    private int writeHeaders(WriteChannel channel) throws IOException {
-        if (headerBuffer == null) {
-            fillHeaderBuffer();
-        }
-
-        int consume = 0;
-        if (headerBuffer.hasRemaining()) {
-            consume = next().write(channel, headerBuffer);
-        }
-
-        if (headerBuffer.remaining() == 0) {
-            changeState(State.RESPONSE_COMMITTED);
-        }
-
-        return consume;
-    }
-
     /**
      * @throws IOException
      */
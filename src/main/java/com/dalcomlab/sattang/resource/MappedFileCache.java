@@ -0,0 +1,456 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The cache of the memory-mapped files, which is keyed by the canonical path
+ * of a file. A hot file is mapped once, and each request gets a duplicate of
+ * the mapped buffer, so the file is neither copied to the heap nor read by a
+ * system call per request.
+ * <ul>
+ *     <li>The files larger than the maximum file size are not cached.</li>
+ *     <li>The least recently used files are evicted to keep the mapped bytes
+ *     under the maximum cache size.</li>
+ *     <li>A file is mapped again when its last modified time or its length is
+ *     changed. The change is checked at most once per revalidate interval.</li>
+ * </ul>
+ * An evicted file is not unmapped explicitly, because a duplicate of its
+ * buffer may still be written by another connection. The mapping is released
+ * when the buffer is garbage collected, so the maximum cache size does not
+ * bound the mapped memory; {@link #getEvictedMappedSize} tells how many evicted
+ * bytes are still mapped.
+ * <p>
+ * The file system is accessed and the file is mapped outside the lock of the
+ * cache, so a slow disk does not hold up the lookups of the other files.
+ * <p>
+ * A file must not be truncated in place while it is mapped; replace it with
+ * a new file instead.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public class MappedFileCache {
+    public static final long DEFAULT_MAX_FILE_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_MAX_CACHE_SIZE = 256 * 1024 * 1024;
+    public static final long DEFAULT_REVALIDATE_INTERVAL = 1000;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Retired> retired = new HashSet<>();
+    private final ReferenceQueue<MappedByteBuffer> released = new ReferenceQueue<>();
+    private volatile long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private volatile long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+    private volatile long revalidateInterval = DEFAULT_REVALIDATE_INTERVAL;
+    private long usedCacheSize = 0;
+    private long evictedMappedSize = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     *
+     */
+    public MappedFileCache() {
+    }
+
+    /**
+     * @param maxFileSize
+     * @param maxCacheSize
+     */
+    public MappedFileCache(long maxFileSize, long maxCacheSize) {
+        this.maxFileSize = maxFileSize;
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Returns the read-only duplicate of the mapped buffer of the given file,
+     * which is positioned at the start of the file. The file is mapped if it
+     * is not cached or is changed.
+     *
+     * @param file
+     * @return <code>null</code> if the file is not a regular file, or is too
+     * large to be cached.
+     */
+    public ByteBuffer get(File file) {
+        final Entry entry = getEntry(file);
+        return entry != null ? entry.getBuffer() : null;
+    }
+
+    /**
+     * Returns the cached entry of the given file. The file is mapped if it is
+     * not cached or is changed. The length and the last modified time of the
+     * entry describe its mapped content, which may differ from the file for
+     * up to the revalidate interval.
+     *
+     * @param file
+     * @return <code>null</code> if the file is not a regular file, or is too
+     * large to be cached.
+     */
+    public Entry getEntry(File file) {
+        final String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            return null;
+        }
+
+        final Entry cached;
+        synchronized (this) {
+            cached = entries.get(path);
+            if (cached != null && !isExpired(cached)) {
+                hitCount++;
+                return cached;
+            }
+        }
+
+        if (cached != null && isValid(cached, file)) {
+            synchronized (this) {
+                hitCount++;
+            }
+            return cached;
+        }
+
+        final Entry entry = map(file);
+        synchronized (this) {
+            missCount++;
+            final Entry current = entries.get(path);
+            if (current != null && current != cached) {
+                // another thread has mapped the file in the meantime.
+                if (entry != null) {
+                    retire(entry);
+                }
+                return current;
+            }
+
+            if (current != null) {
+                remove(path);
+            }
+
+            if (entry == null) {
+                return null;
+            }
+
+            evict(entry.size);
+            entries.put(path, entry);
+            usedCacheSize += entry.size;
+            return entry;
+        }
+    }
+
+    /**
+     * Removes the given file from this cache.
+     *
+     * @param file
+     */
+    public void invalidate(File file) {
+        try {
+            final String path = file.getCanonicalPath();
+            synchronized (this) {
+                remove(path);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Removes all files from this cache.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            retire(entry);
+        }
+        entries.clear();
+        usedCacheSize = 0;
+    }
+
+    /**
+     * Returns the number of the cached files.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of the mapped bytes.
+     *
+     * @return
+     */
+    public synchronized long getUsedCacheSize() {
+        return usedCacheSize;
+    }
+
+    /**
+     * Returns the number of the bytes which are evicted from this cache but are
+     * still mapped, because their buffers are not garbage collected yet. The
+     * mapped memory is the sum of this and the used cache size.
+     *
+     * @return
+     */
+    public synchronized long getEvictedMappedSize() {
+        expunge();
+        return evictedMappedSize;
+    }
+
+    /**
+     * @return
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Sets the maximum size of a cached file. The default is 4MB.
+     *
+     * @param maxFileSize
+     */
+    public synchronized void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * @return
+     */
+    public long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of the mapped bytes. The default is 256MB.
+     *
+     * @param maxCacheSize
+     */
+    public synchronized void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+        evict(0);
+    }
+
+    /**
+     * @return
+     */
+    public long getRevalidateInterval() {
+        return revalidateInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds to check whether a cached file is
+     * changed. The default is one second, and zero checks it on every lookup.
+     *
+     * @param revalidateInterval
+     */
+    public synchronized void setRevalidateInterval(long revalidateInterval) {
+        this.revalidateInterval = revalidateInterval;
+    }
+
+    /**
+     * Determines whether the cached entry should be checked against the file.
+     *
+     * @param entry
+     * @return
+     */
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.checked >= revalidateInterval;
+    }
+
+    /**
+     * Determines whether the cached entry still matches the file. It is called
+     * outside the lock of the cache.
+     *
+     * @param entry
+     * @param file
+     * @return
+     */
+    private boolean isValid(Entry entry, File file) {
+        if (file.lastModified() == entry.lastModified && file.length() == entry.size) {
+            entry.checked = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Maps the given file. It is called outside the lock of the cache.
+     *
+     * @param file
+     * @return
+     */
+    private Entry map(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        final long lastModified = file.lastModified();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > maxFileSize || size > maxCacheSize) {
+                return null;
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new Entry(buffer, size, lastModified);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Evicts the least recently used files until the given number of the bytes
+     * can be mapped.
+     *
+     * @param size
+     */
+    private void evict(long size) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (usedCacheSize + size > maxCacheSize && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            usedCacheSize -= entry.size;
+            retire(entry);
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @param path
+     */
+    private void remove(String path) {
+        final Entry entry = entries.remove(path);
+        if (entry != null) {
+            usedCacheSize -= entry.size;
+            retire(entry);
+        }
+    }
+
+    /**
+     * Counts the bytes of the entry which is no longer cached, until its
+     * mapped buffer is garbage collected.
+     *
+     * @param entry
+     */
+    private void retire(Entry entry) {
+        expunge();
+        retired.add(new Retired(entry.mapped, released, entry.size));
+        evictedMappedSize += entry.size;
+    }
+
+    /**
+     * Forgets the evicted entries of which buffers are garbage collected.
+     */
+    private void expunge() {
+        Retired reference;
+        while ((reference = (Retired) released.poll()) != null) {
+            if (retired.remove(reference)) {
+                evictedMappedSize -= reference.size;
+            }
+        }
+    }
+
+    /**
+     * The mapped file.
+     */
+    public static final class Entry {
+        private final MappedByteBuffer mapped;
+        private final ByteBuffer buffer;
+        private final long size;
+        private final long lastModified;
+        private volatile long checked;
+
+        /**
+         * @param buffer
+         * @param size
+         * @param lastModified
+         */
+        Entry(MappedByteBuffer buffer, long size, long lastModified) {
+            this.mapped = buffer;
+            this.buffer = buffer.asReadOnlyBuffer();
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checked = System.currentTimeMillis();
+        }
+
+        /**
+         * Returns the read-only duplicate of the mapped buffer, which is
+         * positioned at the start of the file.
+         *
+         * @return
+         */
+        public ByteBuffer getBuffer() {
+            return buffer.duplicate();
+        }
+
+        /**
+         * Returns the length of the mapped content.
+         *
+         * @return
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the last modified time of the file when it was mapped.
+         *
+         * @return
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * The weak reference to the mapped buffer of an evicted entry, which is
+     * enqueued when the buffer and all its duplicates are garbage collected.
+     */
+    private static final class Retired extends WeakReference<MappedByteBuffer> {
+        private final long size;
+
+        /**
+         * @param buffer
+         * @param queue
+         * @param size
+         */
+        Retired(MappedByteBuffer buffer, ReferenceQueue<MappedByteBuffer> queue, long size) {
+            super(buffer, queue);
+            this.size = size;
+        }
+    }
+}
@@ -182,6 +182,17 @@ public interface Resource {
      */
     long getLastModified();
 
+    /**
+     * Gets the entity tag of this resource, which identifies the version of
+     * the content.
+     *
+     * @return the entity tag, or <code>null</code> if the entity tag is derived
+     * from the length and the last modified date.
+     */
+    default String getETag() {
+        return null;
+    }
+
     /**
      * Gets the input stream of this resource.
      *
@@ -19,6 +19,7 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.zip.CRC32;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -30,6 +31,10 @@ public class ResourceCache implements Resource {
     private long cachedContentLength;
     private byte[] cachedContent;
     private long cachedLastModified;
+    private String cachedETag;
+    private volatile Resource gzipSidecar;
+    private volatile boolean gzipSidecarResolved;
+    private volatile long gzipSidecarChecked;
     private long lastAccessTime;
     private long createTime;
 
@@ -117,6 +122,23 @@ public class ResourceCache implements Resource {
         return this.cachedLastModified;
     }
 
+    /**
+     * Gets the entity tag of this resource, which is computed from the cached
+     * content when it is requested first.
+     *
+     * @return the strong entity tag.
+     */
+    @Override
+    public String getETag() {
+        // the racy threads compute the same tag, like String.hashCode.
+        String etag = this.cachedETag;
+        if (etag == null) {
+            etag = createETag(cachedContent);
+            this.cachedETag = etag;
+        }
+        return etag;
+    }
+
     /**
      * Gets the input stream of this resource.
      *
@@ -127,6 +149,52 @@ public class ResourceCache implements Resource {
         return new ByteArrayInputStream(this.cachedContent);
     }
 
+    /**
+     * Returns the precompressed <code>.gz</code> sibling of this resource which
+     * is found by {@link ResourceRoot#getGzipFile}.
+     *
+     * @return <code>null</code> if the resource has no sibling.
+     */
+    public Resource getGzipSidecar() {
+        return gzipSidecar;
+    }
+
+    /**
+     * Sets the precompressed <code>.gz</code> sibling of this resource, so that
+     * the file system is not looked up for every request of the cached
+     * resource.
+     *
+     * @param gzipSidecar
+     */
+    public void setGzipSidecar(Resource gzipSidecar) {
+        this.gzipSidecar = gzipSidecar;
+        this.gzipSidecarChecked = System.currentTimeMillis();
+        this.gzipSidecarResolved = true;
+    }
+
+    /**
+     * Forgets the sibling, so that it is looked up again.
+     */
+    public void invalidateGzipSidecar() {
+        this.gzipSidecarResolved = false;
+    }
+
+    /**
+     * @return <code>true</code> if the sibling has been looked up.
+     */
+    public boolean isGzipSidecarResolved() {
+        return gzipSidecarResolved;
+    }
+
+    /**
+     * @param revalidateInterval the interval in milliseconds.
+     * @return <code>true</code> if the sibling has been looked up within the
+     * given interval.
+     */
+    public boolean isGzipSidecarResolved(long revalidateInterval) {
+        return gzipSidecarResolved && System.currentTimeMillis() - gzipSidecarChecked < revalidateInterval;
+    }
+
     /**
      *
      * @return
@@ -168,4 +236,19 @@ public class ResourceCache implements Resource {
         return lastAccessTime;
     }
 
+    /**
+     * Creates the strong entity tag from the checksum and the length of the
+     * content.
+     *
+     * @param content
+     * @return
+     */
+    private static String createETag(byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(content.length) + "\"";
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.resource;
+
+import com.dalcomlab.sattang.protocol.HttpRequest;
+import com.dalcomlab.sattang.protocol.HttpResponse;
+import com.dalcomlab.sattang.protocol.http.HttpAcceptEncoding;
+import com.dalcomlab.sattang.protocol.http.HttpHandler;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import com.dalcomlab.sattang.protocol.http.HttpStatus;
+
+import java.net.URLConnection;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * The {@link HttpHandler} which serves the static files of the
+ * {@link ResourceRoot}.
+ * <pre>
+ *     HttpServer server = new HttpServer("0.0.0.0", 8080);
+ *     server.handle("/static", new ResourceHandler("/static", ResourceRoot.create("./www")));
+ * </pre>
+ * If the file has a precompressed <code>.gz</code> sibling which is not older
+ * than the file, the sibling is sent with the <code>Content-Encoding: gzip</code>
+ * header to the client which accepts the gzip coding. If the sibling is
+ * removed before it is sent, the file is sent instead.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public class ResourceHandler implements HttpHandler {
+    public static final String GZIP = "gzip";
+    private final String context;
+    private final ResourceRoot root;
+
+    /**
+     * @param root
+     */
+    public ResourceHandler(ResourceRoot root) {
+        this("", root);
+    }
+
+    /**
+     * @param context the context path which is removed from the request URI.
+     * @param root
+     */
+    public ResourceHandler(String context, ResourceRoot root) {
+        this.context = context == null || context.equals("/") ? "" : context;
+        this.root = root;
+    }
+
+    /**
+     * Sends the file located at the request URI.
+     *
+     * @param request
+     * @param response
+     */
+    @Override
+    public void handle(HttpRequest request, HttpResponse response) {
+        try {
+            String path = request.getUri();
+            if (path == null || !path.startsWith(context)) {
+                response.setStatus(HttpStatus.NOT_FOUND);
+                return;
+            }
+            path = path.substring(context.length());
+
+            Resource resource = root.getFile(path);
+            if (resource == null || resource.isDirectory()) {
+                response.setStatus(HttpStatus.NOT_FOUND);
+                return;
+            }
+
+            String contentType = URLConnection.guessContentTypeFromName(resource.getName());
+            if (contentType != null) {
+                response.addHeader(HttpHeader.CONTENT_TYPE, contentType);
+            }
+
+            Resource gzip = root.getGzipFile(path);
+            if (gzip != null) {
+                // the representation depends on the Accept-Encoding header.
+                response.addHeader(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING);
+                if (HttpAcceptEncoding.isAccepted(request.getHeader(HttpHeader.ACCEPT_ENCODING), GZIP)) {
+                    response.addHeader(HttpHeader.CONTENT_ENCODING, GZIP);
+                    try {
+                        response.sendResource(gzip);
+                        return;
+                    } catch (NoSuchFileException e) {
+                        if (response.isCommitted()) {
+                            throw e;
+                        }
+                        // the validators of the sibling may have been added.
+                        root.invalidateGzipFile(path);
+                        response.removeHeader(HttpHeader.CONTENT_ENCODING);
+                        response.removeHeader(HttpHeader.ETAG);
+                        response.removeHeader(HttpHeader.LAST_MODIFIED);
+                    }
+                }
+            }
+
+            response.sendResource(resource);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
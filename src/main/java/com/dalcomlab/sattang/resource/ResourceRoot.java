@@ -21,9 +21,11 @@ import java.util.*;
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class ResourceRoot {
+    public static final long DEFAULT_REVALIDATE_INTERVAL = 1000;
     protected Resource root;
     protected List<Resource> bindings = new LinkedList<>();
     protected CacheManager cache = new CacheManager();
+    protected volatile long revalidateInterval = DEFAULT_REVALIDATE_INTERVAL;
 
     /**
      *
@@ -246,6 +248,82 @@ public class ResourceRoot {
         return resource;
     }
 
+    /**
+     * Returns the precompressed <code>.gz</code> sibling of the file located at
+     * the given path, like <code>app.js.gz</code> for <code>app.js</code>. The
+     * sibling which is older than the file is ignored. The result is kept in
+     * the cached resource, and is looked up again at most once per revalidate
+     * interval, so a removed or a newer sibling is noticed.
+     *
+     * @param path
+     * @return <code>null</code> if the file has no fresh sibling.
+     */
+    public Resource getGzipFile(final String path) {
+        Resource resource = getFile(path);
+        if (resource == null || resource.isDirectory()) {
+            return null;
+        }
+
+        if (!(resource instanceof ResourceCache)) {
+            return findGzipFile(new Path(path).getPath(), resource);
+        }
+
+        ResourceCache cached = (ResourceCache) resource;
+        if (!cached.isGzipSidecarResolved(revalidateInterval)) {
+            cached.setGzipSidecar(findGzipFile(new Path(path).getPath(), resource));
+        }
+        return cached.getGzipSidecar();
+    }
+
+    /**
+     * Forgets the precompressed sibling of the cached file located at the given
+     * path, for example when the sibling is found to be removed.
+     *
+     * @param path
+     */
+    public void invalidateGzipFile(final String path) {
+        Resource resource = getResourceFromCache(new Path(path).getPath());
+        if (resource instanceof ResourceCache) {
+            ((ResourceCache) resource).invalidateGzipSidecar();
+        }
+    }
+
+    /**
+     * @return
+     */
+    public long getRevalidateInterval() {
+        return revalidateInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds to look up the precompressed sibling
+     * of a cached file again. The default is one second, and zero looks it up
+     * on every request.
+     *
+     * @param revalidateInterval
+     */
+    public void setRevalidateInterval(long revalidateInterval) {
+        this.revalidateInterval = revalidateInterval;
+    }
+
+    /**
+     * @param path     the normalized path of the file.
+     * @param resource
+     * @return
+     */
+    protected Resource findGzipFile(final String path, final Resource resource) {
+        String gzipPath = path + ".gz";
+        Resource gzip = getResourceFromRoot(gzipPath);
+        if (gzip == null) {
+            gzip = getFileFromJars(gzipPath);
+        }
+
+        if (gzip == null || gzip.isDirectory() || gzip.getLastModified() < resource.getLastModified()) {
+            return null;
+        }
+        return gzip;
+    }
+
     /**
      * Returns the file located at the given path.
      *
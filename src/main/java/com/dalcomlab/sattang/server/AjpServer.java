@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.nio.channels.SocketChannel;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -69,6 +70,9 @@ public class AjpServer extends SocketTransport implements Server {
      */
     @Override
     public void start(ServerOptions options) throws IOException {
+        if (options != null) {
+            options.configure(this);
+        }
         start();
         if (listener != null) {
             listener.onStart();
@@ -76,11 +80,15 @@ public class AjpServer extends SocketTransport implements Server {
     }
 
     /**
-     * Stops the AJP server.
+     * Stops the AJP server gracefully. The in-flight requests are completed
+     * within the given timeout, and then the remaining connections are closed.
+     *
+     * @param timeout
+     * @param timeUnit
      */
     @Override
-    public void stop() {
-        super.stop();
+    public void stop(long timeout, TimeUnit timeUnit) {
+        super.stop(timeout, timeUnit);
         if (listener != null) {
             listener.onStop();
         }
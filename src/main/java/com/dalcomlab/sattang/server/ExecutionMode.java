@@ -0,0 +1,41 @@
+/*
+ * Copyright SATTANG 2019
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.dalcomlab.sattang.server;
+
+/**
+ * Defines the thread on which a request is handled.
+ *
+ * @author ByungChang Yoo (dalcomlab@gmail.com)
+ */
+public enum ExecutionMode {
+    /**
+     * The request is decoded and handled on the event loop thread without any
+     * hand-off. The handler must not block.
+     */
+    INLINE,
+
+    /**
+     * The request is handed off to a worker thread, so the handler can block.
+     */
+    OFFLOAD;
+
+    /**
+     * @return
+     */
+    public boolean isInline() {
+        return this == ExecutionMode.INLINE;
+    }
+}
@@ -20,21 +20,35 @@ import com.dalcomlab.sattang.net.SocketTransport;
 import com.dalcomlab.sattang.protocol.http.HttpConnection;
 import com.dalcomlab.sattang.protocol.http.HttpFilter;
 import com.dalcomlab.sattang.protocol.http.HttpHandler;
+import com.dalcomlab.sattang.protocol.http.HttpMetrics;
+import com.dalcomlab.sattang.protocol.http.HttpStatus;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public class HttpServer extends SocketTransport implements Server {
+    private static final ByteBuffer SHED_RESPONSE = ByteBuffer.wrap((
+            "HTTP/1.1 " + HttpStatus.SERVICE_UNAVAILABLE.getCode() + " " + HttpStatus.SERVICE_UNAVAILABLE.getMessage() + "\r\n"
+                    + "Content-Length: 0\r\n"
+                    + "Connection: close\r\n"
+                    + "Retry-After: 1\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
     private Map<String, HttpHandler> mapping = new HashMap();
+    private Map<String, ExecutionMode> modes = new HashMap();
     private List<HttpFilter> filters = new LinkedList();
     private ServerListener listener = null;
+    private ServerOptions options = new ServerOptions();
+    private final HttpMetrics httpMetrics = new HttpMetrics(getMetrics().getRegistry());
 
     /**
      * @param hostname
@@ -67,6 +81,17 @@ public class HttpServer extends SocketTransport implements Server {
         return new HttpConnection(this, channel);
     }
 
+    /**
+     * Returns the pre-encoded <code>503 Service Unavailable</code> response
+     * which is sent to a shed connection.
+     *
+     * @return
+     */
+    @Override
+    protected ByteBuffer getShedResponse() {
+        return SHED_RESPONSE.duplicate();
+    }
+
     /**
      * Stars the HTTP server.
      *
@@ -74,18 +99,34 @@ public class HttpServer extends SocketTransport implements Server {
      */
     @Override
     public void start(ServerOptions options) throws IOException {
+        if (options != null) {
+            this.options = options;
+        }
+        this.options.configure(this);
         start();
+    }
+
+    /**
+     * Fires the {@link ServerListener#onStart()} event when the server accepts
+     * the connections.
+     */
+    @Override
+    protected void onStarted() {
         if (listener != null) {
             listener.onStart();
         }
     }
 
     /**
-     * Stops the HTTP server.
+     * Stops the HTTP server gracefully. The in-flight requests are completed
+     * within the given timeout, and then the remaining connections are closed.
+     *
+     * @param timeout
+     * @param timeUnit
      */
     @Override
-    public void stop() {
-        super.stop();
+    public void stop(long timeout, TimeUnit timeUnit) {
+        super.stop(timeout, timeUnit);
         if (listener != null) {
             listener.onStop();
         }
@@ -94,7 +135,8 @@ public class HttpServer extends SocketTransport implements Server {
     /**
      * Sets the new {@link ServerListener} instance on the server.
      * <ul>
-     *     <li>Calling {@link #start} method fires the {@link ServerListener#onStart()} event.</li>
+     *     <li>Calling {@link #start} method fires the {@link ServerListener#onStart()} event
+     *     when the server accepts the connections.</li>
      *     <li>Calling {@link #stop} method fires the {@link ServerListener#onStop()} event.</li>
      * </ul>
      * @param listener
@@ -119,6 +161,29 @@ public class HttpServer extends SocketTransport implements Server {
         return this;
     }
 
+    /**
+     * Registers the handler with the {@link ExecutionMode} which overrides the
+     * default mode of the {@link ServerOptions} for the given context.
+     *
+     * @param context
+     * @param handler
+     * @param mode
+     * @return
+     */
+    public HttpServer handle(String context, HttpHandler handler, ExecutionMode mode) {
+        if (context == null || handler == null) {
+            return this;
+        }
+
+        mapping.put(context, handler);
+        if (mode != null) {
+            modes.put(context, mode);
+        } else {
+            modes.remove(context);
+        }
+        return this;
+    }
+
     /**
      * @param filter
      * @return
@@ -136,10 +201,52 @@ public class HttpServer extends SocketTransport implements Server {
         return mapping.get(context);
     }
 
+    /**
+     * Returns the {@link ExecutionMode} of the handler for the given context.
+     * The context without a handler falls back to the root context as the
+     * handler does.
+     *
+     * @param context
+     * @return
+     */
+    public ExecutionMode getExecutionMode(String context) {
+        ExecutionMode mode = modes.get(mapping.containsKey(context) ? context : "/");
+        return mode != null ? mode : options.getExecutionMode();
+    }
+
+    /**
+     * Determines whether the requests are decoded on the event loop thread,
+     * which is the case when any route can be handled inline.
+     *
+     * @return
+     */
+    public boolean isInlineDecoding() {
+        return options.getExecutionMode().isInline() || modes.containsValue(ExecutionMode.INLINE);
+    }
+
     /**
      * @return
      */
     public List<HttpFilter> getFilters() {
         return filters;
     }
+
+    /**
+     * Returns the {@link HttpMetrics} of the requests of this server. They are
+     * registered in the registry of {@link #getMetrics()}.
+     *
+     * @return
+     */
+    public HttpMetrics getHttpMetrics() {
+        return httpMetrics;
+    }
+
+    /**
+     * Returns the {@link ServerOptions} that this server was started with.
+     *
+     * @return
+     */
+    public ServerOptions getOptions() {
+        return options;
+    }
 }
@@ -18,6 +18,7 @@ package com.dalcomlab.sattang.server;
 import com.dalcomlab.sattang.net.io.write.WriteChannelListener;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
@@ -37,6 +38,15 @@ public interface Server {
      */
     void stop();
 
+    /**
+     * Stops the server gracefully. No connection is accepted, and the requests
+     * which are being processed are completed within the given timeout.
+     *
+     * @param timeout
+     * @param timeUnit
+     */
+    void stop(long timeout, TimeUnit timeUnit);
+
     /**
      * Sets the new {@link ServerListener} instance on the server.
      * <ul>
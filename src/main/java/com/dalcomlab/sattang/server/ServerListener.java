@@ -20,7 +20,9 @@ package com.dalcomlab.sattang.server;
  */
 public interface ServerListener {
     /**
-     * This event is fired when the {@link Server#start} method is called.
+     * This event is fired when the server started by the {@link Server#start}
+     * method accepts the connections. The start method itself blocks until
+     * the server is stopped.
      */
     default void onStart() {
     }
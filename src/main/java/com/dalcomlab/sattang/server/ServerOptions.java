@@ -15,10 +15,41 @@
  */
 package com.dalcomlab.sattang.server;
 
+import com.dalcomlab.sattang.net.SocketTransport;
+import com.dalcomlab.sattang.net.Transport;
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcher;
+import com.dalcomlab.sattang.net.io.channel.SocketOptions;
+import com.dalcomlab.sattang.protocol.http.CompressionOptions;
+import com.dalcomlab.sattang.resource.MappedFileCache;
+
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author ByungChang Yoo (dalcomlab@gmail.com)
  */
 public final class ServerOptions {
+    public static final int DEFAULT_MAX_KEEP_ALIVE_REQUESTS = 100;
+    public static final int DEFAULT_HEADER_READ_TIMEOUT = 20;
+    public static final int DEFAULT_KEEP_ALIVE_TIMEOUT = 15;
+
+    private int maxKeepAliveRequests = DEFAULT_MAX_KEEP_ALIVE_REQUESTS;
+    private int backlog = SocketTransport.DEFAULT_BACKLOG;
+    private int acceptorCount = 1;
+    private int maxConnections = 0;
+    private int connectionLowWatermark = 0;
+    private boolean shedConnections = false;
+    private int eventLoopCount = Runtime.getRuntime().availableProcessors();
+    private ExecutionMode executionMode = ExecutionMode.OFFLOAD;
+    private boolean virtualThreads = false;
+    private SocketOptions socketOptions = SocketOptions.defaults();
+    private long eventLoopStallThreshold = TimeUnit.SECONDS.toMillis(1);
+    private int eventQueueCapacity = NioEventDispatcher.DEFAULT_EVENT_QUEUE_CAPACITY;
+    private MappedFileCache fileCache = null;
+    private CompressionOptions compression = null;
+    private long headerReadTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_HEADER_READ_TIMEOUT);
+    private long keepAliveTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_KEEP_ALIVE_TIMEOUT);
+    private long readTimeout = TimeUnit.SECONDS.toMillis(Transport.DEFAULT_READ_TIMEOUT);
+    private long writeTimeout = TimeUnit.SECONDS.toMillis(Transport.DEFAULT_WRITE_TIMEOUT);
 
     /**
      *
@@ -28,4 +59,406 @@ public final class ServerOptions {
         return 10;
     }
 
+    /**
+     * Returns the maximum number of requests that can be served over a single
+     * keep-alive connection. A value less than or equal to zero means unlimited.
+     *
+     * @return
+     */
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests that can be served over a single
+     * keep-alive connection. When the limit is reached, the last response is
+     * sent with the <code>Connection: close</code> header.
+     *
+     * @param maxKeepAliveRequests
+     */
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+    }
+
+    /**
+     * Returns the maximum length of the queue of pending connections.
+     *
+     * @return
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Sets the maximum length of the queue of pending connections. A value
+     * less than or equal to zero means the system default.
+     *
+     * @param backlog
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * Returns the number of listening channels which accept connections.
+     *
+     * @return
+     */
+    public int getAcceptorCount() {
+        return acceptorCount;
+    }
+
+    /**
+     * Sets the number of listening channels which accept connections. Each
+     * channel is bound to the same address with the <code>SO_REUSEPORT</code>
+     * option when the platform supports it.
+     *
+     * @param acceptorCount
+     */
+    public void setAcceptorCount(int acceptorCount) {
+        this.acceptorCount = acceptorCount;
+    }
+
+    /**
+     * Returns the maximum number of the open connections. A value less than or
+     * equal to zero means unlimited.
+     *
+     * @return
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of the open connections. When the limit is
+     * reached, no connection is accepted until the number of the connections
+     * falls to the low watermark, and the new connections wait in the backlog.
+     *
+     * @param maxConnections
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns the number of the open connections at or below which the
+     * connections are accepted again.
+     *
+     * @return
+     */
+    public int getConnectionLowWatermark() {
+        return connectionLowWatermark;
+    }
+
+    /**
+     * Sets the number of the open connections at or below which the
+     * connections are accepted again. The default is 90% of the maximum
+     * number of the connections.
+     *
+     * @param connectionLowWatermark
+     */
+    public void setConnectionLowWatermark(int connectionLowWatermark) {
+        this.connectionLowWatermark = connectionLowWatermark;
+    }
+
+    /**
+     * Determines whether the connections over the limit are shed.
+     *
+     * @return
+     */
+    public boolean isShedConnections() {
+        return shedConnections;
+    }
+
+    /**
+     * Sets whether the connections over the limit are accepted and closed with
+     * the <code>503 Service Unavailable</code> response, instead of waiting in
+     * the backlog.
+     *
+     * @param shedConnections
+     */
+    public void setShedConnections(boolean shedConnections) {
+        this.shedConnections = shedConnections;
+    }
+
+    /**
+     * Returns the number of event loop threads.
+     *
+     * @return
+     */
+    public int getEventLoopCount() {
+        return eventLoopCount;
+    }
+
+    /**
+     * Sets the number of event loop threads. The default is the number of
+     * available processors.
+     *
+     * @param eventLoopCount
+     */
+    public void setEventLoopCount(int eventLoopCount) {
+        this.eventLoopCount = eventLoopCount;
+    }
+
+    /**
+     * Returns the default {@link ExecutionMode} of the routes.
+     *
+     * @return
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Sets the default {@link ExecutionMode} of the routes. A route can
+     * override it when it is registered in the server.
+     *
+     * @param executionMode
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        if (executionMode != null) {
+            this.executionMode = executionMode;
+        }
+    }
+
+    /**
+     * Determines whether each request is handled on its own virtual thread.
+     *
+     * @return
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sets whether each request is handled on its own virtual thread instead
+     * of a thread of the fixed worker pool. It requires Java 21 or later.
+     *
+     * @param virtualThreads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Returns the time in milliseconds after which an event loop which has
+     * not returned to the select is reported.
+     *
+     * @return
+     */
+    public long getEventLoopStallThreshold() {
+        return eventLoopStallThreshold;
+    }
+
+    /**
+     * Sets the time after which an event loop which has not returned to the
+     * select is reported with the stack of the blocking task. The default is
+     * one second, and a value less than or equal to zero disables the report.
+     *
+     * @param threshold
+     * @param unit
+     */
+    public void setEventLoopStallThreshold(long threshold, TimeUnit unit) {
+        this.eventLoopStallThreshold = unit.toMillis(threshold);
+    }
+
+    /**
+     * Returns the capacity of the queue of the events which each event loop
+     * takes from the other threads.
+     *
+     * @return
+     */
+    public int getEventQueueCapacity() {
+        return eventQueueCapacity;
+    }
+
+    /**
+     * Sets the capacity of the queue of the events which each event loop takes
+     * from the other threads, which is rounded up to a power of two. A thread
+     * which finds the queue full waits until the event loop drains it. The
+     * default is 1024.
+     *
+     * @param eventQueueCapacity
+     */
+    public void setEventQueueCapacity(int eventQueueCapacity) {
+        this.eventQueueCapacity = eventQueueCapacity;
+    }
+
+    /**
+     * Returns the {@link SocketOptions} profile of the listening channels and
+     * the accepted channels.
+     *
+     * @return
+     */
+    public SocketOptions getSocketOptions() {
+        return socketOptions;
+    }
+
+    /**
+     * Sets the {@link SocketOptions} profile of the listening channels and the
+     * accepted channels. The default profile enables <code>TCP_NODELAY</code>
+     * and keeps the system defaults for the other options.
+     *
+     * @param socketOptions
+     */
+    public void setSocketOptions(SocketOptions socketOptions) {
+        if (socketOptions != null) {
+            this.socketOptions = socketOptions;
+        }
+    }
+
+    /**
+     * Returns the {@link MappedFileCache} of the sent files, or <code>null</code>
+     * if the files are not cached.
+     *
+     * @return
+     */
+    public MappedFileCache getFileCache() {
+        return fileCache;
+    }
+
+    /**
+     * Sets the {@link MappedFileCache} which keeps the hot files sent by the
+     * {@link com.dalcomlab.sattang.protocol.HttpResponse#sendFile} method
+     * mapped in memory. It is not set by default.
+     *
+     * @param fileCache
+     */
+    public void setFileCache(MappedFileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    /**
+     * Returns the {@link CompressionOptions} of the responses, or
+     * <code>null</code> if the responses are not compressed.
+     *
+     * @return
+     */
+    public CompressionOptions getCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets the {@link CompressionOptions} which compresses the responses for
+     * the clients which accept the gzip or the deflate coding. It is not set
+     * by default. The options can be changed while the server is running.
+     *
+     * @param compression
+     */
+    public void setCompression(CompressionOptions compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the maximum time to receive the whole header block of a request
+     * from the first byte of the request (or from the connection for the
+     * first request).
+     *
+     * @param unit
+     * @return
+     */
+    public long getHeaderReadTimeout(TimeUnit unit) {
+        return unit.convert(headerReadTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the maximum time to receive the whole header block of a request.
+     * When the time is elapsed, the connection is closed. A value less than
+     * or equal to zero means no timeout.
+     *
+     * @param timeout
+     * @param unit
+     */
+    public void setHeaderReadTimeout(long timeout, TimeUnit unit) {
+        this.headerReadTimeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * Returns the maximum time that a keep-alive connection waits for the next
+     * request.
+     *
+     * @param unit
+     * @return
+     */
+    public long getKeepAliveTimeout(TimeUnit unit) {
+        return unit.convert(keepAliveTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the maximum time that a keep-alive connection waits for the next
+     * request. When the time is elapsed, the connection is closed. A value
+     * less than or equal to zero means no timeout.
+     *
+     * @param timeout
+     * @param unit
+     */
+    public void setKeepAliveTimeout(long timeout, TimeUnit unit) {
+        this.keepAliveTimeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * Returns the maximum time that a blocking read of the request body waits
+     * for the next data.
+     *
+     * @param unit
+     * @return
+     */
+    public long getReadTimeout(TimeUnit unit) {
+        return unit.convert(readTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the maximum time that a blocking read of the request body waits
+     * for the next data. A value less than or equal to zero means no timeout.
+     *
+     * @param timeout
+     * @param unit
+     */
+    public void setReadTimeout(long timeout, TimeUnit unit) {
+        this.readTimeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * Returns the maximum time that a blocking write of the response waits
+     * until the client receives more data.
+     *
+     * @param unit
+     * @return
+     */
+    public long getWriteTimeout(TimeUnit unit) {
+        return unit.convert(writeTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the maximum time that a blocking write of the response waits until
+     * the client receives more data. A value less than or equal to zero means
+     * no timeout.
+     *
+     * @param timeout
+     * @param unit
+     */
+    public void setWriteTimeout(long timeout, TimeUnit unit) {
+        this.writeTimeout = unit.toMillis(timeout);
+    }
+
+    /**
+     * Applies these options to the given transport.
+     *
+     * @param transport
+     */
+    void configure(SocketTransport transport) {
+        transport.setBacklog(backlog);
+        transport.setAcceptorCount(acceptorCount);
+        transport.setMaxConnections(maxConnections);
+        transport.setConnectionLowWatermark(connectionLowWatermark);
+        transport.setShedConnections(shedConnections);
+        transport.setEventLoopCount(eventLoopCount);
+        transport.setVirtualThreads(virtualThreads);
+        transport.setEventLoopStallThreshold(eventLoopStallThreshold, TimeUnit.MILLISECONDS);
+        transport.setEventQueueCapacity(eventQueueCapacity);
+        transport.setSocketOptions(socketOptions);
+        transport.setReadTimeout(readTimeout, TimeUnit.MILLISECONDS);
+        transport.setWriteTimeout(writeTimeout, TimeUnit.MILLISECONDS);
+    }
+
 }
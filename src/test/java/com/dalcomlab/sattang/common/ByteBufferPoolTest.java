@@ -0,0 +1,75 @@
+package com.dalcomlab.sattang.common;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufferPoolTest {
+
+    @Test
+    public void testAcquire_SizeClass() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(true);
+
+        ByteBuffer buffer = pool.acquire(100);
+        assertTrue(buffer.isDirect());
+        assertEquals(buffer.capacity(), 128);
+        assertEquals(buffer.position(), 0);
+        assertEquals(buffer.limit(), 128);
+
+        assertEquals(pool.acquire(1).capacity(), ByteBufferPool.MIN_BUFFER_SIZE);
+        assertEquals(pool.acquire(8192).capacity(), 8192);
+        assertEquals(pool.getOutstandingCount(), 3);
+    }
+
+    @Test
+    public void testRelease_Reuse() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(false);
+
+        ByteBuffer buffer = pool.acquire(1024);
+        assertTrue(buffer.hasArray());
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        ByteBuffer reused = pool.acquire(1000);
+        assertSame(reused, buffer);
+        assertEquals(reused.position(), 0);
+        assertEquals(pool.getCacheHitCount(), 1);
+        assertEquals(pool.getOutstandingCount(), 1);
+    }
+
+    @Test
+    public void testAcquire_Unpooled() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(true);
+
+        ByteBuffer buffer = pool.acquire(ByteBufferPool.MAX_BUFFER_SIZE + 1);
+        assertEquals(buffer.capacity(), ByteBufferPool.MAX_BUFFER_SIZE + 1);
+        assertEquals(pool.getUnpooledCount(), 1);
+
+        pool.release(buffer);
+        assertEquals(pool.getOutstandingCount(), 0);
+    }
+
+    @Test
+    public void testLeakDetection() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(true);
+        pool.setLeakDetection(true);
+
+        ByteBuffer leaked = pool.acquire(64);
+        ByteBuffer released = pool.acquire(64);
+        pool.release(released);
+        assertEquals(pool.getLeaks().size(), 1);
+
+        // the second release is ignored.
+        pool.release(released);
+        assertEquals(pool.getReleaseCount(), 1);
+
+        pool.release(leaked);
+        assertTrue(pool.getLeaks().isEmpty());
+        assertFalse(pool.getAllocatedBytes() == 0);
+    }
+}
@@ -0,0 +1,70 @@
+package com.dalcomlab.sattang.common;
+
+import org.junit.Test;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionPoolTest {
+
+    @Test
+    public void testDeflater_Reuse() throws Exception {
+        CompressionPool pool = new CompressionPool(4);
+
+        Deflater deflater = pool.acquireDeflater(6, true);
+        deflater.setInput("hello".getBytes());
+        deflater.finish();
+        deflater.deflate(new byte[64]);
+        assertTrue(deflater.finished());
+        pool.releaseDeflater(deflater);
+
+        // the released deflater is reset and reused for the same key only.
+        Deflater reused = pool.acquireDeflater(6, true);
+        assertSame(reused, deflater);
+        assertFalse(reused.finished());
+        assertEquals(reused.getBytesRead(), 0);
+        assertNotSame(pool.acquireDeflater(6, false), deflater);
+        assertNotSame(pool.acquireDeflater(1, true), deflater);
+
+        assertEquals(pool.getCacheHitCount(), 1);
+        assertEquals(pool.getCreateCount(), 3);
+        assertEquals(pool.getOutstandingCount(), 3);
+    }
+
+    @Test
+    public void testInflater_Reuse() throws Exception {
+        CompressionPool pool = new CompressionPool(4);
+
+        Inflater inflater = pool.acquireInflater(true);
+        pool.releaseInflater(inflater);
+        assertSame(pool.acquireInflater(true), inflater);
+        assertNotSame(pool.acquireInflater(false), inflater);
+    }
+
+    @Test
+    public void testRelease_Bounded() throws Exception {
+        CompressionPool pool = new CompressionPool(1);
+
+        Deflater[] deflaters = new Deflater[4];
+        for (int i = 0; i < deflaters.length; i++) {
+            deflaters[i] = pool.acquireDeflater(Deflater.DEFAULT_COMPRESSION, false);
+        }
+        for (Deflater deflater : deflaters) {
+            pool.releaseDeflater(deflater);
+        }
+
+        // two are cached by the thread, one is pooled, and the last is ended.
+        assertEquals(pool.getPooledCount(), 1);
+        assertEquals(pool.getDiscardCount(), 1);
+        assertEquals(pool.getOutstandingCount(), 0);
+
+        pool.clear();
+        assertEquals(pool.getPooledCount(), 0);
+    }
+}
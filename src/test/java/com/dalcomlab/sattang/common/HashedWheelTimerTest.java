@@ -0,0 +1,97 @@
+package com.dalcomlab.sattang.common;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedWheelTimerTest {
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testAdvance_Expire() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 8);
+        AtomicInteger count = new AtomicInteger();
+        long now = System.nanoTime();
+
+        HashedWheelTimer.Deadline deadline = timer.schedule(count::incrementAndGet, 500, TimeUnit.MILLISECONDS);
+        assertEquals(timer.size(), 1);
+
+        assertEquals(timer.advance(now + 2 * TICK), 0);
+        assertEquals(count.get(), 0);
+
+        assertEquals(timer.advance(now + 7 * TICK), 1);
+        assertEquals(count.get(), 1);
+        assertTrue(deadline.isExpired());
+        assertTrue(timer.isEmpty());
+    }
+
+    @Test
+    public void testAdvance_NotEarly() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 8);
+        AtomicInteger count = new AtomicInteger();
+        long now = System.nanoTime();
+
+        timer.schedule(count::incrementAndGet, 500, TimeUnit.MILLISECONDS);
+
+        // the task is not expired before its delay is elapsed.
+        assertEquals(0, timer.advance(now + 5 * TICK - 1));
+        assertEquals(0, count.get());
+
+        assertEquals(1, timer.advance(now + 7 * TICK));
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void testAdvance_Rounds() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 4);
+        AtomicInteger count = new AtomicInteger();
+        long now = System.nanoTime();
+
+        // the delay is longer than a round of the wheel.
+        timer.schedule(count::incrementAndGet, 1000, TimeUnit.MILLISECONDS);
+
+        assertEquals(timer.advance(now + 5 * TICK), 0);
+        assertEquals(timer.advance(now + 8 * TICK), 0);
+        assertEquals(timer.advance(now + 12 * TICK), 1);
+        assertEquals(count.get(), 1);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 8);
+        AtomicInteger count = new AtomicInteger();
+        long now = System.nanoTime();
+
+        HashedWheelTimer.Deadline first = timer.schedule(count::incrementAndGet, 300, TimeUnit.MILLISECONDS);
+        HashedWheelTimer.Deadline second = timer.schedule(count::incrementAndGet, 300, TimeUnit.MILLISECONDS);
+        timer.advance(now);
+
+        assertTrue(first.cancel());
+        assertFalse(first.cancel());
+        assertTrue(first.isCancelled());
+
+        assertEquals(timer.advance(now + 5 * TICK), 1);
+        assertEquals(count.get(), 1);
+        assertTrue(second.isExpired());
+        assertFalse(second.cancel());
+        assertTrue(timer.isEmpty());
+    }
+
+    @Test
+    public void testCancel_BeforeAdvance() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 8);
+        AtomicInteger count = new AtomicInteger();
+        long now = System.nanoTime();
+
+        timer.schedule(count::incrementAndGet, 100, TimeUnit.MILLISECONDS).cancel();
+
+        assertEquals(timer.advance(now + 5 * TICK), 0);
+        assertEquals(count.get(), 0);
+        assertTrue(timer.isEmpty());
+    }
+}
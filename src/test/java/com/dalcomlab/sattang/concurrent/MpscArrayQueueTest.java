@@ -0,0 +1,73 @@
+package com.dalcomlab.sattang.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MpscArrayQueueTest {
+
+    @Test
+    public void testOfferPoll() throws Exception {
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(3);
+        assertEquals(queue.capacity(), 4);
+        assertTrue(queue.isEmpty());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(queue.size(), 4);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(queue.poll(), Integer.valueOf(i));
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.offer(5));
+        assertEquals(queue.poll(), Integer.valueOf(5));
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        final int producers = 4;
+        final int count = 10000;
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int base = p * count;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    while (!queue.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        // the elements of each producer are polled in order.
+        int[] next = new int[producers];
+        for (int received = 0; received < producers * count; ) {
+            Integer element = queue.poll();
+            if (element == null) {
+                // the queue is empty, or the head slot is not published yet.
+                Thread.yield();
+                continue;
+            }
+            int p = element / count;
+            assertEquals(next[p]++, element % count);
+            received++;
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
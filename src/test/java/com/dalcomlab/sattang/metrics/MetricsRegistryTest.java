@@ -0,0 +1,74 @@
+package com.dalcomlab.sattang.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testCounter() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter get = registry.counter("requests_total", "The requests.", "method", "GET");
+        Counter post = registry.counter("requests_total", "The requests.", "method", "POST");
+        assertSame(registry.counter("requests_total", "The requests.", "method", "GET"), get);
+
+        get.increment();
+        get.add(2);
+        post.increment();
+
+        assertEquals(registry.toString(), "# HELP requests_total The requests.\n"
+                + "# TYPE requests_total counter\n"
+                + "requests_total{method=\"GET\"} 3\n"
+                + "requests_total{method=\"POST\"} 1\n");
+    }
+
+    @Test
+    public void testGauge_Escape() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.gauge("active", null, () -> 7, "name", "a\"b\\c");
+
+        assertEquals(registry.toString(), "# TYPE active gauge\n"
+                + "active{name=\"a\\\"b\\\\c\"} 7\n");
+    }
+
+    @Test
+    public void testHistogram() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("duration_seconds", "The durations.");
+        histogram.record(200, TimeUnit.MICROSECONDS);
+        histogram.record(3, TimeUnit.MILLISECONDS);
+        histogram.record(20, TimeUnit.SECONDS);
+
+        String text = registry.toString();
+        assertTrue(text.contains("# TYPE duration_seconds histogram\n"));
+        assertTrue(text.contains("duration_seconds_bucket{le=\"0.0001\"} 0\n"));
+        assertTrue(text.contains("duration_seconds_bucket{le=\"0.00025\"} 1\n"));
+        assertTrue(text.contains("duration_seconds_bucket{le=\"0.005\"} 2\n"));
+        assertTrue(text.contains("duration_seconds_bucket{le=\"10\"} 2\n"));
+        assertTrue(text.contains("duration_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("duration_seconds_sum 20.0032\n"));
+        assertTrue(text.contains("duration_seconds_count 3\n"));
+    }
+
+    @Test
+    public void testHistogram_Percentile() throws Exception {
+        Histogram histogram = new Histogram(new double[]{0.001, 0.002, 0.004});
+        for (int i = 0; i < 90; i++) {
+            histogram.record(500, TimeUnit.MICROSECONDS);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(3, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(histogram.getCount(), 100);
+        assertEquals(histogram.getPercentile(0), 0, 1e-9);
+        assertEquals(histogram.getPercentile(45), 0.0005, 1e-9);
+        assertEquals(histogram.getPercentile(95), 0.003, 1e-9);
+        assertEquals(histogram.getPercentile(100), 0.004, 1e-9);
+    }
+}
@@ -0,0 +1,151 @@
+package com.dalcomlab.sattang.net;
+
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcher;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SocketTransportTest {
+    private TestTransport transport;
+
+    @After
+    public void tearDown() {
+        if (transport != null) {
+            transport.stop();
+        }
+    }
+
+    @Test
+    public void testBind_Backlog() throws Exception {
+        transport = start(1, 1, 17);
+
+        assertEquals(1, transport.backlogs.size());
+        assertEquals(17, (int) transport.backlogs.get(0));
+    }
+
+    @Test
+    public void testAccept_SelectedEvent() throws Exception {
+        transport = start(1, 1, 64);
+
+        try (Socket socket = new Socket("127.0.0.1", transport.getLocalAddress().getPort())) {
+            assertTrue(transport.accepted.tryAcquire(5, TimeUnit.SECONDS));
+        }
+
+        // the listening channel is selected for the accept event instead of
+        // being accepted by the thread which starts the transport.
+        ServerSocketChannel server = transport.servers.get(0);
+        assertTrue(server.isRegistered());
+        assertFalse(server.isBlocking());
+        assertNotEquals(transport.starter, transport.acceptor);
+    }
+
+    @Test
+    public void testAccept_PinnedAcceptors() throws Exception {
+        transport = start(2, 2, 64);
+        if (transport.servers.size() < 2) {
+            // the port can not be shared on this platform.
+            return;
+        }
+
+        List<NioEventDispatcher> loops = transport.getEventDispatcher().getEventDispatchers();
+        awaitListeners(loops);
+        for (NioEventDispatcher loop : loops) {
+            assertEquals(1, loop.getListenerCount());
+        }
+        assertEquals(transport.servers.get(0).getLocalAddress(), transport.servers.get(1).getLocalAddress());
+
+        // the acceptors are registered again on their own event loops.
+        for (int i = 0; i < 8; i++) {
+            try (Socket socket = new Socket("127.0.0.1", transport.getLocalAddress().getPort())) {
+                assertTrue(transport.accepted.tryAcquire(5, TimeUnit.SECONDS));
+            }
+        }
+        for (NioEventDispatcher loop : loops) {
+            assertEquals(1, loop.getListenerCount());
+        }
+    }
+
+    private static TestTransport start(int acceptors, int loops, int backlog) throws Exception {
+        TestTransport transport = new TestTransport();
+        transport.listen("127.0.0.1", 0);
+        transport.setAcceptorCount(acceptors);
+        transport.setEventLoopCount(loops);
+        transport.setBacklog(backlog);
+
+        Thread thread = new Thread(() -> {
+            try {
+                transport.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.setDaemon(true);
+        transport.starter = thread;
+        thread.start();
+        assertTrue(transport.started.await(5, TimeUnit.SECONDS));
+        return transport;
+    }
+
+    private static void awaitListeners(List<NioEventDispatcher> loops) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            int listeners = 0;
+            for (NioEventDispatcher loop : loops) {
+                listeners += loop.getListenerCount();
+            }
+            if (listeners >= loops.size()) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static class TestTransport extends SocketTransport {
+        private final List<ServerSocketChannel> servers = new CopyOnWriteArrayList<>();
+        private final List<Integer> backlogs = new CopyOnWriteArrayList<>();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final Semaphore accepted = new Semaphore(0);
+        private volatile Thread starter;
+        private volatile Thread acceptor;
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        protected void bind(ServerSocketChannel server, SocketAddress address, int backlog) throws IOException {
+            servers.add(server);
+            backlogs.add(backlog);
+            super.bind(server, address, backlog);
+        }
+
+        @Override
+        protected void onStarted() {
+            started.countDown();
+        }
+
+        @Override
+        protected Connection createConnection(SocketChannel channel) {
+            acceptor = Thread.currentThread();
+            accepted.release();
+            // the channel is closed without a connection.
+            return null;
+        }
+    }
+}
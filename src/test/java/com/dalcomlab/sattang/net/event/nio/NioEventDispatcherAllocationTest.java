@@ -0,0 +1,105 @@
+package com.dalcomlab.sattang.net.event.nio;
+
+import com.dalcomlab.sattang.net.event.EventDispatcher;
+import com.dalcomlab.sattang.net.event.EventExecutor;
+import com.dalcomlab.sattang.net.event.SocketEvent;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+public class NioEventDispatcherAllocationTest {
+
+    @Test
+    public void testDispatch_AllocationFree() throws Exception {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        NioEventDispatcher dispatcher = new NioEventDispatcher(null);
+        new Thread(dispatcher::start).start();
+        for (int i = 0; i < 100 && dispatcher.getThread() == null; i++) {
+            Thread.sleep(10);
+        }
+        // the array of the selected keys needs the sun.nio.ch package to be open.
+        Assume.assumeTrue(dispatcher.isSelectedKeysOptimized());
+
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        ReadEvent event = new ReadEvent(pipe.source());
+        try {
+            dispatcher.register(event);
+            write(pipe, event, 20000);
+
+            long thread = dispatcher.getThread().getId();
+            long before = threads.getThreadAllocatedBytes(thread);
+            write(pipe, event, 10000);
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+            // the allocation of the event loop does not grow with the events.
+            assertTrue("allocated " + allocated + " bytes", allocated < 10000);
+        } finally {
+            dispatcher.stop();
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    private static void write(Pipe pipe, ReadEvent event, int count) throws Exception {
+        ByteBuffer one = ByteBuffer.allocateDirect(1);
+        long target = event.reads.get() + count;
+        while (event.reads.get() < target) {
+            long reads = event.reads.get();
+            one.clear();
+            pipe.sink().write(one);
+            while (event.reads.get() == reads) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * The inline read event which reads the pipe and registers itself again.
+     */
+    private static class ReadEvent implements EventExecutor<Pipe.SourceChannel> {
+        private final Pipe.SourceChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        private final AtomicLong reads = new AtomicLong();
+
+        ReadEvent(Pipe.SourceChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public Pipe.SourceChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public SocketEvent event() {
+            return SocketEvent.READ;
+        }
+
+        @Override
+        public boolean isInline() {
+            return true;
+        }
+
+        @Override
+        public void execute(Pipe.SourceChannel channel, EventDispatcher dispatcher) {
+            try {
+                buffer.clear();
+                channel.read(buffer);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            reads.incrementAndGet();
+            dispatcher.register(this);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.dalcomlab.sattang.net.event.nio;
+
+import com.dalcomlab.sattang.net.event.SocketEvent;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NioEventDispatcherGroupTest {
+
+    @Test
+    public void testRegister_LeastLoaded() throws Exception {
+        NioEventDispatcherGroup group = new NioEventDispatcherGroup(null, Executors.defaultThreadFactory(), 4);
+
+        // the group is not started, so every registered event stays pending.
+        for (int i = 0; i < 1000; i++) {
+            group.register(() -> SocketEvent.READ);
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        int total = 0;
+        for (NioEventDispatcher dispatcher : group.getEventDispatchers()) {
+            min = Math.min(min, dispatcher.getLoad());
+            max = Math.max(max, dispatcher.getLoad());
+            total += dispatcher.getPendingTaskCount();
+        }
+
+        assertEquals(total, 1000);
+        assertTrue(max - min <= 8);
+    }
+
+    @Test
+    public void testRegister_SingleDispatcher() throws Exception {
+        NioEventDispatcherGroup group = new NioEventDispatcherGroup(null, Executors.defaultThreadFactory(), 1);
+        group.register(() -> SocketEvent.READ);
+
+        assertEquals(group.getEventDispatchers().get(0).getPendingTaskCount(), 1);
+        assertEquals(group.getEventDispatchers().get(0).getConnectionCount(), 0);
+    }
+}
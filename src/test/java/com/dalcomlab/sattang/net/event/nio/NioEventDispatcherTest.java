@@ -0,0 +1,152 @@
+package com.dalcomlab.sattang.net.event.nio;
+
+import com.dalcomlab.sattang.net.event.EventDispatcher;
+import com.dalcomlab.sattang.net.event.EventExecutor;
+import com.dalcomlab.sattang.net.event.SocketEvent;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class NioEventDispatcherTest {
+
+    @Test
+    public void testDispatch_InlineFailure() throws Exception {
+        NioEventDispatcher dispatcher = new NioEventDispatcher(null);
+        new Thread(dispatcher::start).start();
+        for (int i = 0; i < 100 && dispatcher.getThread() == null; i++) {
+            Thread.sleep(10);
+        }
+
+        Pipe failing = Pipe.open();
+        Pipe working = Pipe.open();
+        failing.source().configureBlocking(false);
+        working.source().configureBlocking(false);
+        ReadEvent failure = new ReadEvent(failing.source(), true);
+        ReadEvent success = new ReadEvent(working.source(), false);
+        try {
+            dispatcher.register(failure);
+            dispatcher.register(success);
+
+            // the failed event is cancelled, and the loop keeps running.
+            failing.sink().write(ByteBuffer.wrap(new byte[1]));
+            assertTrue(failure.cancelled.await(5, TimeUnit.SECONDS));
+
+            working.sink().write(ByteBuffer.wrap(new byte[1]));
+            assertTrue(success.executed.await(5, TimeUnit.SECONDS));
+            assertNotNull(dispatcher.getThread());
+        } finally {
+            dispatcher.stop();
+            failing.sink().close();
+            failing.source().close();
+            working.sink().close();
+            working.source().close();
+        }
+    }
+
+    @Test
+    public void testRegister_FullQueueOrder() throws Exception {
+        NioEventDispatcher dispatcher = new NioEventDispatcher(null, 2);
+        new Thread(dispatcher::start).start();
+        for (int i = 0; i < 100 && dispatcher.getThread() == null; i++) {
+            Thread.sleep(10);
+        }
+
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        ReadEvent[] events = new ReadEvent[256];
+        try {
+            // the producer waits for the full queue, and the last event
+            // replaces all of the earlier ones.
+            for (int i = 0; i < events.length; i++) {
+                events[i] = new ReadEvent(pipe.source(), false);
+                dispatcher.register(events[i]);
+                assertTrue(dispatcher.getRegistrationQueueDepth() <= 2);
+            }
+
+            pipe.sink().write(ByteBuffer.wrap(new byte[1]));
+            assertTrue(events[events.length - 1].executed.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < events.length - 1; i++) {
+                assertEquals(1, events[i].executed.getCount());
+            }
+        } finally {
+            dispatcher.stop();
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    @Test
+    public void testRegister_FullQueueStopped() throws Exception {
+        NioEventDispatcher dispatcher = new NioEventDispatcher(null, 2);
+        Pipe pipe = Pipe.open();
+        pipe.source().configureBlocking(false);
+        try {
+            ReadEvent first = new ReadEvent(pipe.source(), false);
+            ReadEvent second = new ReadEvent(pipe.source(), false);
+            ReadEvent third = new ReadEvent(pipe.source(), false);
+            dispatcher.register(first);
+            dispatcher.register(second);
+
+            // the stopped dispatcher never drains the queue, so the event is
+            // cancelled instead of waiting.
+            dispatcher.register(third);
+            assertTrue(third.cancelled.await(5, TimeUnit.SECONDS));
+            assertEquals(1, first.cancelled.getCount());
+            assertEquals(1, second.cancelled.getCount());
+            assertEquals(2, dispatcher.getRegistrationQueueDepth());
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    /**
+     * The inline read event which fails or reads the pipe.
+     */
+    private static class ReadEvent implements EventExecutor<Pipe.SourceChannel> {
+        private final Pipe.SourceChannel channel;
+        private final boolean fail;
+        private final CountDownLatch executed = new CountDownLatch(1);
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        ReadEvent(Pipe.SourceChannel channel, boolean fail) {
+            this.channel = channel;
+            this.fail = fail;
+        }
+
+        @Override
+        public Pipe.SourceChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public SocketEvent event() {
+            return SocketEvent.READ;
+        }
+
+        @Override
+        public boolean isInline() {
+            return true;
+        }
+
+        @Override
+        public void execute(Pipe.SourceChannel channel, EventDispatcher dispatcher) {
+            if (fail) {
+                throw new IllegalStateException("the executor fails.");
+            }
+            executed.countDown();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.countDown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.dalcomlab.sattang.net.event.nio;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NioEventLoopWatchdogTest {
+
+    @Test
+    public void testCheck_Stalled() throws Exception {
+        NioEventDispatcherGroup group = new NioEventDispatcherGroup(null, Executors.defaultThreadFactory(), 1);
+        NioEventDispatcher dispatcher = group.getEventDispatchers().get(0);
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        group.start();
+        try {
+            // the timer task runs on the event loop thread and blocks it.
+            group.schedule(() -> {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 1, TimeUnit.MILLISECONDS);
+            assertTrue(blocking.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+
+            NioEventLoopWatchdog watchdog = new NioEventLoopWatchdog(group.getEventDispatchers(), TimeUnit.MILLISECONDS.toNanos(20));
+            String first = check(watchdog);
+            assertTrue(first.contains("has not returned to select()"));
+            assertTrue(first.contains("CountDownLatch.await"));
+
+            // the same iteration is reported only once.
+            assertEquals(check(watchdog), "");
+            assertTrue(dispatcher.getBusyNanos() > 0);
+        } finally {
+            release.countDown();
+            group.stop();
+        }
+    }
+
+    private static String check(NioEventLoopWatchdog watchdog) {
+        PrintStream err = System.err;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(output, true));
+        try {
+            watchdog.check();
+        } finally {
+            System.setErr(err);
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.dalcomlab.sattang.net.io.channel;
+
+import com.dalcomlab.sattang.net.io.channel.nio.NioSocket;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SocketOptionsTest {
+
+    @Test
+    public void testApply() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                 SocketChannel accepted = server.accept()) {
+                SocketOptions options = SocketOptions.defaults();
+                options.setKeepAlive(true);
+                options.setTcpQuickAck(true);
+                options.setTcpKeepIdle(60);
+                options.apply(accepted);
+
+                assertTrue(accepted.getOption(StandardSocketOptions.TCP_NODELAY));
+                assertTrue(accepted.getOption(StandardSocketOptions.SO_KEEPALIVE));
+            }
+        }
+    }
+
+    @Test
+    public void testApply_Listener() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            SocketOptions options = SocketOptions.defaults();
+            options.setReuseAddr(true);
+            options.setSendBufferSize(64 * 1024);
+
+            // the options which are not supported by a listener are ignored.
+            options.apply(server);
+            assertTrue(server.getOption(StandardSocketOptions.SO_REUSEADDR));
+        }
+    }
+
+    @Test
+    public void testConfig_Empty() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                 SocketChannel accepted = server.accept()) {
+                boolean noDelay = accepted.getOption(StandardSocketOptions.TCP_NODELAY);
+                new NioSocket(accepted).config(new SocketOptions());
+                assertEquals(accepted.getOption(StandardSocketOptions.TCP_NODELAY), noDelay);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.dalcomlab.sattang.net.io.channel.nio;
+
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcher;
+import com.dalcomlab.sattang.net.socket.SocketSelectorPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class NioSocketTest {
+    private static final long MAX_CPU_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private SocketChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(threads.isCurrentThreadCpuTimeSupported());
+
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        channel = server.accept();
+        channel.configureBlocking(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (channel != null) {
+            channel.close();
+            client.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testReadBlocking_SlowClient_SelectorPool() throws Exception {
+        NioSocket socket = new NioSocket(channel);
+        socket.setSelectorPool(new SocketSelectorPool(1));
+
+        assertIdleWhileReading(socket);
+    }
+
+    @Test
+    public void testReadBlocking_SlowClient_EventDispatcher() throws Exception {
+        NioEventDispatcher dispatcher = new NioEventDispatcher(null);
+        new Thread(dispatcher::start).start();
+        try {
+            NioSocket socket = new NioSocket(channel);
+            socket.setEventDispatcher(dispatcher);
+
+            assertIdleWhileReading(socket);
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testReadBlocking_Timeout() throws Exception {
+        NioSocket socket = new NioSocket(channel);
+        socket.setSelectorPool(new SocketSelectorPool(1));
+        socket.setReadTimeout(200);
+
+        long start = System.nanoTime();
+        try {
+            socket.readBlocking(ByteBuffer.allocate(1));
+            fail();
+        } catch (SocketTimeoutException e) {
+            // expected.
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(!channel.isOpen());
+    }
+
+    @Test
+    public void testReadBlocking_Timeout_EventDispatcher() throws Exception {
+        NioEventDispatcher dispatcher = new NioEventDispatcher(null);
+        new Thread(dispatcher::start).start();
+        try {
+            NioSocket socket = new NioSocket(channel);
+            socket.setEventDispatcher(dispatcher);
+            socket.setReadTimeout(200);
+
+            // the deadline on the timer wheel unparks the reading thread.
+            long start = System.nanoTime();
+            try {
+                socket.readBlocking(ByteBuffer.allocate(1));
+                fail();
+            } catch (SocketTimeoutException e) {
+                // expected.
+            }
+            long elapsed = System.nanoTime() - start;
+            assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(200));
+            assertTrue(elapsed < TimeUnit.SECONDS.toNanos(1));
+            assertTrue(!channel.isOpen());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testWriteBlocking_Timeout_EventDispatcher() throws Exception {
+        NioEventDispatcher dispatcher = new NioEventDispatcher(null);
+        new Thread(dispatcher::start).start();
+        try {
+            NioSocket socket = new NioSocket(channel);
+            socket.setEventDispatcher(dispatcher);
+            socket.setWriteTimeout(200);
+
+            // the client never reads, so the write is stalled when the socket
+            // buffers are full.
+            long start = System.nanoTime();
+            try {
+                socket.writeBlocking(ByteBuffer.allocate(64 * 1024 * 1024));
+                fail();
+            } catch (SocketTimeoutException e) {
+                // expected.
+            }
+            long elapsed = System.nanoTime() - start;
+            assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(200));
+            assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2));
+            assertTrue(!channel.isOpen());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    /**
+     * The client writes a byte every 50ms, and the blocking read must wait
+     * without spinning.
+     */
+    private void assertIdleWhileReading(NioSocket socket) throws Exception {
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 20; i++) {
+                    Thread.sleep(50);
+                    client.write(ByteBuffer.wrap(new byte[]{(byte) i}));
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        writer.start();
+
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        long cpu = threads.getCurrentThreadCpuTime();
+        socket.readBlocking(buffer);
+        cpu = threads.getCurrentThreadCpuTime() - cpu;
+        writer.join();
+
+        assertEquals(buffer.position(), 20);
+        assertTrue("the read used " + TimeUnit.NANOSECONDS.toMillis(cpu) + "ms of CPU.", cpu < MAX_CPU_NANOS);
+    }
+}
@@ -0,0 +1,146 @@
+package com.dalcomlab.sattang.net.io.write.channels;
+
+import com.dalcomlab.sattang.concurrent.CompletionHandler;
+import com.dalcomlab.sattang.net.io.channel.AbstractSocket;
+import com.dalcomlab.sattang.net.io.channel.SocketOptions;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class SocketWriteChannelTest {
+
+    @Test
+    public void testWrite_NotCorked() throws Exception {
+        MockSocket socket = new MockSocket();
+        SocketWriteChannel channel = new SocketWriteChannel(socket);
+
+        channel.writeBlocking(ByteBuffer.wrap("abc".getBytes()), false);
+        channel.writeBlocking(ByteBuffer.wrap("def".getBytes()), false);
+
+        assertEquals(socket.writes, 2);
+        assertEquals(socket.toString(), "abcdef");
+    }
+
+    @Test
+    public void testWrite_Corked() throws Exception {
+        MockSocket socket = new MockSocket();
+        SocketWriteChannel channel = new SocketWriteChannel(socket);
+
+        channel.cork();
+        for (int i = 0; i < 10; i++) {
+            channel.writeBlocking(ByteBuffer.wrap("abc".getBytes()), false);
+        }
+        assertEquals(socket.writes, 0);
+
+        channel.uncork();
+        assertEquals(socket.writes, 1);
+        assertEquals(socket.toString().length(), 30);
+    }
+
+    @Test
+    public void testWrite_Corked_Overflow() throws Exception {
+        MockSocket socket = new MockSocket();
+        SocketWriteChannel channel = new SocketWriteChannel(socket);
+        int capacity = channel.getWriteBuffer().capacity();
+
+        channel.cork();
+        channel.writeBlocking(ByteBuffer.wrap(new byte[capacity - 1]), false);
+        channel.writeBlocking(ByteBuffer.wrap(new byte[2]), false);
+        assertEquals(socket.writes, 1);
+
+        channel.uncork();
+        assertEquals(socket.writes, 2);
+        assertEquals(socket.written.size(), capacity + 1);
+    }
+
+    @Test
+    public void testWrite_Gathering() throws Exception {
+        MockSocket socket = new MockSocket();
+        SocketWriteChannel channel = new SocketWriteChannel(socket);
+
+        ByteBuffer[] buffers = {ByteBuffer.wrap("abc".getBytes()), ByteBuffer.wrap("def".getBytes())};
+        assertEquals(channel.writeBlocking(buffers, false), 6);
+
+        assertEquals(socket.writes, 1);
+        assertEquals(socket.toString(), "abcdef");
+    }
+
+    @Test
+    public void testClose_FlushCorked() throws Exception {
+        MockSocket socket = new MockSocket();
+        SocketWriteChannel channel = new SocketWriteChannel(socket);
+
+        channel.cork();
+        channel.writeBlocking(ByteBuffer.wrap("abc".getBytes()), false);
+        channel.close();
+
+        assertEquals(socket.toString(), "abc");
+    }
+
+    /**
+     *
+     */
+    private class MockSocket implements AbstractSocket {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        int writes = 0;
+
+        @Override
+        public void config(SocketOptions options) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public int write(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler) throws IOException {
+            return writeBlocking(buffer);
+        }
+
+        @Override
+        public int writeBlocking(ByteBuffer buffer) throws IOException {
+            int consume = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                written.write(buffer.get());
+            }
+            writes++;
+            return consume;
+        }
+
+        @Override
+        public long writeBlocking(ByteBuffer[] buffers) throws IOException {
+            long consume = 0;
+            for (ByteBuffer buffer : buffers) {
+                consume += buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    written.write(buffer.get());
+                }
+            }
+            writes++;
+            return consume;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer, CompletionHandler<ByteBuffer> handler) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public int readBlocking(ByteBuffer buffer) throws IOException {
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        public String toString() {
+            return new String(written.toByteArray());
+        }
+    }
+}
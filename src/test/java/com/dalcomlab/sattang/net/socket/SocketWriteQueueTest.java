@@ -0,0 +1,115 @@
+package com.dalcomlab.sattang.net.socket;
+
+import com.dalcomlab.sattang.concurrent.CompletionHandler;
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketWriteQueueTest {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int BUFFER_COUNT = 256;
+    private final NioEventDispatcher dispatcher = new NioEventDispatcher(null);
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private SocketChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        new Thread(dispatcher::start).start();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        // the small buffers keep the queued bytes over the high watermark.
+        client = SocketChannel.open();
+        client.setOption(StandardSocketOptions.SO_RCVBUF, BUFFER_SIZE);
+        client.connect(server.getLocalAddress());
+        channel = server.accept();
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, BUFFER_SIZE);
+        channel.configureBlocking(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dispatcher.stop();
+        channel.close();
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testWrite_Watermarks() throws Exception {
+        SocketWriteQueue queue = new SocketWriteQueue(channel, dispatcher);
+        CountDownLatch completed = new CountDownLatch(BUFFER_COUNT);
+        CountDownLatch resumed = new CountDownLatch(1);
+
+        // the client does not read yet, so the buffers are queued.
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) i);
+            }
+            buffer.flip();
+            queue.write(buffer, new CompletionHandler<ByteBuffer>() {
+                @Override
+                public void completed(ByteBuffer result) {
+                    completed.countDown();
+                }
+            });
+        }
+        assertFalse(queue.canWrite());
+        assertTrue(queue.getPendingBytes() >= queue.getHighWatermark());
+        queue.onWritable(resumed::countDown);
+        assertEquals(resumed.getCount(), 1);
+
+        ByteBuffer received = ByteBuffer.allocate(BUFFER_SIZE * BUFFER_COUNT);
+        while (received.hasRemaining()) {
+            client.read(received);
+        }
+
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertTrue(resumed.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.canWrite());
+        assertEquals(queue.getPendingBytes(), 0);
+
+        // the buffers are written in order.
+        for (int i = 0; i < received.capacity(); i += BUFFER_SIZE) {
+            assertEquals(received.get(i), (byte) (i / BUFFER_SIZE));
+        }
+    }
+
+    @Test
+    public void testClose_FailPending() throws Exception {
+        SocketWriteQueue queue = new SocketWriteQueue(channel, dispatcher);
+        AtomicInteger failed = new AtomicInteger();
+        CompletionHandler<ByteBuffer> handler = new CompletionHandler<ByteBuffer>() {
+            @Override
+            public void failed(Throwable throwable) {
+                failed.incrementAndGet();
+            }
+        };
+
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            queue.write(ByteBuffer.allocate(BUFFER_SIZE), handler);
+        }
+        queue.close();
+
+        assertTrue(failed.get() > 0);
+        assertEquals(queue.getPendingBytes(), 0);
+
+        queue.write(ByteBuffer.allocate(1), handler);
+        assertFalse(queue.canWrite());
+    }
+}
@@ -0,0 +1,33 @@
+package com.dalcomlab.sattang.protocol.http;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpAcceptEncodingTest {
+
+    @Test
+    public void testParse() {
+        List<HttpAcceptEncoding> encodings = HttpAcceptEncoding.parse("gzip, deflate;q=0.5, br;q=0");
+        assertEquals(encodings.size(), 3);
+        assertEquals(encodings.get(0).getEncoding(), "gzip");
+        assertEquals(encodings.get(0).getQuality(), 1.0, 0.0001);
+        assertEquals(encodings.get(1).getEncoding(), "deflate");
+        assertEquals(encodings.get(1).getQuality(), 0.5, 0.0001);
+        assertEquals(encodings.get(2).getQuality(), 0.0, 0.0001);
+    }
+
+    @Test
+    public void testIsAccepted() {
+        assertTrue(HttpAcceptEncoding.isAccepted("gzip, deflate", "gzip"));
+        assertTrue(HttpAcceptEncoding.isAccepted("GZIP;q=0.1", "gzip"));
+        assertTrue(HttpAcceptEncoding.isAccepted("br, *", "gzip"));
+        assertFalse(HttpAcceptEncoding.isAccepted("gzip;q=0, *", "gzip"));
+        assertFalse(HttpAcceptEncoding.isAccepted("br", "gzip"));
+        assertFalse(HttpAcceptEncoding.isAccepted(null, "gzip"));
+    }
+}
@@ -0,0 +1,27 @@
+package com.dalcomlab.sattang.protocol.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpConditionalTest {
+
+    @Test
+    public void testEntityTag() {
+        assertEquals("\"16d2a1f8e40-2a\"", HttpConditional.entityTag(42, 0x16d2a1f8e40L));
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue(HttpConditional.matches("\"a\"", "\"a\""));
+        assertTrue(HttpConditional.matches("\"b\", \"a\"", "\"a\""));
+        assertTrue(HttpConditional.matches("*", "\"a\""));
+
+        // the weak comparison ignores the weakness indicator.
+        assertTrue(HttpConditional.matches("W/\"a\"", "\"a\""));
+        assertTrue(HttpConditional.matches("\"a\"", "W/\"a\""));
+        assertFalse(HttpConditional.matches("\"b\"", "\"a\""));
+    }
+}
@@ -0,0 +1,47 @@
+package com.dalcomlab.sattang.protocol.http;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpRangeTest {
+
+    @Test
+    public void testParse() {
+        List<HttpRange> ranges = HttpRange.parse("bytes=0-99", 1000);
+        assertEquals(ranges.size(), 1);
+        assertEquals(ranges.get(0).getStart(), 0);
+        assertEquals(ranges.get(0).getLength(), 100);
+        assertEquals(ranges.get(0).toContentRange(1000), "bytes 0-99/1000");
+
+        // the open and the suffix ranges, and the end beyond the content.
+        assertEquals(HttpRange.parse("bytes=900-", 1000).toString(), "[900-999]");
+        assertEquals(HttpRange.parse("bytes=-100", 1000).toString(), "[900-999]");
+        assertEquals(HttpRange.parse("bytes=-2000", 1000).toString(), "[0-999]");
+        assertEquals(HttpRange.parse("bytes=500-5000", 1000).toString(), "[500-999]");
+    }
+
+    @Test
+    public void testParse_Multiple() {
+        assertEquals(HttpRange.parse("bytes=500-599, 0-99", 1000).toString(), "[500-599, 0-99]");
+
+        // the overlapping or adjacent ranges are coalesced.
+        assertEquals(HttpRange.parse("bytes=0-99,50-149,150-199,500-", 1000).toString(), "[0-199, 500-999]");
+    }
+
+    @Test
+    public void testParse_Invalid() {
+        assertNull(HttpRange.parse("items=0-99", 1000));
+        assertNull(HttpRange.parse("bytes=99-0", 1000));
+        assertNull(HttpRange.parse("bytes=a-b", 1000));
+        assertNull(HttpRange.parse("bytes=100", 1000));
+
+        // the ranges which start after the content are not satisfiable.
+        assertTrue(HttpRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(HttpRange.parse("bytes=-0", 1000).isEmpty());
+    }
+}
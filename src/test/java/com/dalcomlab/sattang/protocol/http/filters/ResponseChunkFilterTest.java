@@ -63,11 +63,24 @@ public class ResponseChunkFilterTest {
         assertEquals(result.toString(), "a\r\n1234567890\r\n");
     }
 
+    @Test
+    public void testGathering() throws Exception {
+        MockResultFilter result = new MockResultFilter();
+        ResponseChunkFilter chunkFilter = createResponseChunkFilter(result);
+
+        ByteBuffer[] sources = {ByteBuffer.wrap("abc".getBytes()), ByteBuffer.wrap("defghijk".getBytes())};
+        assertEquals(chunkFilter.write(null, sources), 11);
+
+        assertEquals(result.writes, 1);
+        assertEquals(result.toString(), "b\r\nabcdefghijk\r\n");
+    }
+
     /**
      *
      */
     private class MockResultFilter implements WriteFilter {
         ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int writes = 0;
 
         @Override
         public int write(WriteChannel channel, ByteBuffer source) throws IOException {
@@ -77,6 +90,15 @@ public class ResponseChunkFilterTest {
             return 0;
         }
 
+        @Override
+        public long write(WriteChannel channel, ByteBuffer[] sources) throws IOException {
+            for (ByteBuffer source : sources) {
+                write(channel, source);
+            }
+            writes++;
+            return 0;
+        }
+
         public String toString() {
             return new String(result.toByteArray());
         }
@@ -0,0 +1,123 @@
+package com.dalcomlab.sattang.protocol.http.filters;
+
+import com.dalcomlab.sattang.net.io.write.WriteChannel;
+import com.dalcomlab.sattang.net.io.write.WriteFilter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseGZipFilterTest {
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog. ";
+
+    public ResponseGZipFilter createResponseGZipFilter(WriteFilter next, boolean gzip) {
+        ResponseGZipFilter gzipFilter = new ResponseGZipFilter(gzip, Deflater.DEFAULT_COMPRESSION, 1024);
+        gzipFilter.next(next);
+        return gzipFilter;
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        MockResultFilter result = new MockResultFilter();
+        ResponseGZipFilter gzipFilter = createResponseGZipFilter(result, true);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append(TEXT).append(i);
+            gzipFilter.write(null, ByteBuffer.wrap((TEXT + i).getBytes()));
+        }
+        gzipFilter.end(null);
+
+        // the output is buffered, so it is written in the chunks of the buffer.
+        assertTrue(result.writes < 20);
+        assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(result.toByteArray()))), text.toString());
+    }
+
+    @Test
+    public void testDeflate_Direct() throws Exception {
+        MockResultFilter result = new MockResultFilter();
+        ResponseGZipFilter gzipFilter = createResponseGZipFilter(result, false);
+
+        ByteBuffer source = ByteBuffer.allocateDirect(TEXT.length());
+        source.put(TEXT.getBytes()).flip();
+        assertEquals(gzipFilter.write(null, source), TEXT.length());
+        gzipFilter.end(null);
+
+        assertEquals(inflate(new InflaterInputStream(new ByteArrayInputStream(result.toByteArray()))), TEXT);
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        MockResultFilter result = new MockResultFilter();
+        ResponseGZipFilter gzipFilter = createResponseGZipFilter(result, true);
+
+        gzipFilter.write(null, ByteBuffer.wrap(TEXT.getBytes()));
+        assertEquals(result.writes, 0);
+
+        // the written data can be decompressed after the flush.
+        gzipFilter.flush(null);
+        assertEquals(result.writes, 1);
+        int size = result.size();
+
+        // the flush without the written data writes nothing.
+        gzipFilter.flush(null);
+        assertEquals(result.size(), size);
+
+        gzipFilter.end(null);
+        assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(result.toByteArray()))), TEXT);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        MockResultFilter result = new MockResultFilter();
+        ResponseGZipFilter gzipFilter = createResponseGZipFilter(result, true);
+        gzipFilter.end(null);
+
+        assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(result.toByteArray()))), "");
+    }
+
+    private static String inflate(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = input.read(buffer)) > 0) {
+            output.write(buffer, 0, n);
+        }
+        return new String(output.toByteArray());
+    }
+
+    /**
+     *
+     */
+    private class MockResultFilter implements WriteFilter {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int writes = 0;
+
+        @Override
+        public int write(WriteChannel channel, ByteBuffer source) throws IOException {
+            int length = source.remaining();
+            while (source.hasRemaining()) {
+                result.write(source.get());
+            }
+            writes++;
+            return length;
+        }
+
+        int size() {
+            return result.size();
+        }
+
+        byte[] toByteArray() {
+            return result.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.dalcomlab.sattang.resource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedFileCacheTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("mapped").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        File file = write("a.txt", "hello");
+        MappedFileCache cache = new MappedFileCache();
+
+        assertEquals(read(cache.get(file)), "hello");
+        ByteBuffer second = cache.get(file);
+        assertEquals(read(second), "hello");
+        assertTrue(second.isReadOnly());
+
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 1);
+        assertEquals(cache.getUsedCacheSize(), 5);
+    }
+
+    @Test
+    public void testGet_Changed() throws Exception {
+        File file = write("a.txt", "hello");
+        MappedFileCache cache = new MappedFileCache();
+        cache.setRevalidateInterval(0);
+        assertEquals(read(cache.get(file)), "hello");
+
+        write("a.txt", "hello, world");
+        file.setLastModified(file.lastModified() + 2000);
+        assertEquals(read(cache.get(file)), "hello, world");
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.getUsedCacheSize(), 12);
+    }
+
+    @Test
+    public void testGetEntry_Validators() throws Exception {
+        File file = write("a.txt", "hello");
+        file.setLastModified(1000000000000L);
+        MappedFileCache cache = new MappedFileCache();
+        cache.setRevalidateInterval(60000);
+        assertEquals(read(cache.get(file)), "hello");
+
+        // the file is replaced, but the entry is not revalidated yet.
+        File replaced = write("b.txt", "hello, world");
+        Files.move(replaced.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        MappedFileCache.Entry entry = cache.getEntry(file);
+        assertEquals(read(entry.getBuffer()), "hello");
+        assertEquals(entry.getSize(), 5);
+        assertEquals(entry.getLastModified(), 1000000000000L);
+    }
+
+    @Test
+    public void testGet_Limits() throws Exception {
+        MappedFileCache cache = new MappedFileCache(8, 16);
+        File a = write("a.txt", "aaaaaaaa");
+        File b = write("b.txt", "bbbbbbbb");
+        File c = write("c.txt", "cccccccc");
+
+        // the file larger than the maximum file size is not cached.
+        assertNull(cache.get(write("large.txt", "123456789")));
+
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        // the least recently used file is evicted.
+        cache.get(c);
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getUsedCacheSize(), 16);
+
+        long misses = cache.getMissCount();
+        cache.get(a);
+        assertEquals(cache.getMissCount(), misses);
+        cache.get(b);
+        assertEquals(cache.getMissCount(), misses + 1);
+    }
+
+    @Test
+    public void testGetEvictedMappedSize() throws Exception {
+        MappedFileCache cache = new MappedFileCache(8, 8);
+        File a = write("a.txt", "aaaaaaaa");
+        File b = write("b.txt", "bbbbbbbb");
+
+        ByteBuffer buffer = cache.get(a);
+        cache.get(b);
+        // the evicted file is still mapped while its buffer is used.
+        assertEquals(cache.getUsedCacheSize(), 8);
+        assertEquals(cache.getEvictedMappedSize(), 8);
+        assertEquals(read(buffer), "aaaaaaaa");
+
+        buffer = null;
+        for (int i = 0; i < 50 && cache.getEvictedMappedSize() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(cache.getEvictedMappedSize(), 0);
+    }
+
+    @Test
+    public void testGetEntry_Concurrent() throws Exception {
+        File file = write("a.txt", "hello");
+        MappedFileCache cache = new MappedFileCache();
+        cache.setRevalidateInterval(0);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    String content = null;
+                    for (int j = 0; j < 100; j++) {
+                        content = read(cache.getEntry(file).getBuffer());
+                    }
+                    return content;
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(result.get(), "hello");
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // the file is cached once however many threads map it together.
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.getUsedCacheSize(), 5);
+        assertEquals(cache.getHitCount() + cache.getMissCount(), threads * 100);
+    }
+
+    private File write(String name, String content) throws Exception {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    private static String read(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,146 @@
+package com.dalcomlab.sattang.resource;
+
+import com.dalcomlab.sattang.server.HttpServer;
+import com.dalcomlab.sattang.server.ServerOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.dalcomlab.sattang.server.ServerTestSupport.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceHandlerTest {
+    private static final String SCRIPT = "function hello() { return 'hello'; }\n";
+    private HttpServer server;
+    private File directory;
+    private ResourceRoot root;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("resource").toFile();
+        File script = new File(directory, "app.js");
+        Files.write(script.toPath(), SCRIPT.getBytes(StandardCharsets.US_ASCII));
+        File gzip = new File(directory, "app.js.gz");
+        Files.write(gzip.toPath(), gzip(SCRIPT));
+        gzip.setLastModified(script.lastModified() + 1000);
+        Files.write(new File(directory, "plain.txt").toPath(), "plain".getBytes(StandardCharsets.US_ASCII));
+
+        root = ResourceRoot.create(directory.getPath());
+        server = new HttpServer("127.0.0.1", 0);
+        server.handle("/static", new ResourceHandler("/static", root));
+
+        start(server, new ServerOptions());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testGzipSidecar() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/static/app.js", "Accept-Encoding: gzip, deflate\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.contains("content-encoding:gzip"));
+            assertTrue(head.contains("vary:accept-encoding"));
+
+            byte[] body = readFully(socket.getInputStream(), contentLength(head));
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                assertEquals(new String(readFully(input, SCRIPT.length()), StandardCharsets.US_ASCII), SCRIPT);
+            }
+
+            // the client which refuses the gzip coding gets the original file.
+            send(socket, "/static/app.js", "Accept-Encoding: gzip;q=0, identity\r\n");
+            head = readHead(socket.getInputStream()).toLowerCase();
+            assertFalse(head.contains("content-encoding"));
+            assertTrue(head.contains("vary:accept-encoding"));
+            assertEquals(new String(readFully(socket.getInputStream(), contentLength(head)), StandardCharsets.US_ASCII), SCRIPT);
+        }
+
+        // the sidecar is looked up once and kept in the cached resource.
+        ResourceCache cached = (ResourceCache) root.getFile("/app.js");
+        assertTrue(cached.isGzipSidecarResolved());
+        assertEquals(cached.getGzipSidecar().getName(), "app.js.gz");
+    }
+
+    @Test
+    public void testGzipSidecar_Missing() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/static/plain.txt", "Accept-Encoding: gzip\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 200"));
+            assertFalse(head.contains("content-encoding") || head.contains("vary"));
+            assertEquals(new String(readFully(socket.getInputStream(), contentLength(head)), StandardCharsets.US_ASCII), "plain");
+
+            send(socket, "/static/none.txt", "");
+            assertTrue(readHead(socket.getInputStream()).startsWith("HTTP/1.1 404"));
+        }
+    }
+
+    @Test
+    public void testGzipSidecar_Removed() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/static/app.js", "Accept-Encoding: gzip\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.contains("content-encoding:gzip"));
+            readFully(socket.getInputStream(), contentLength(head));
+
+            // the sidecar is removed while it is still kept in the cached resource.
+            assertTrue(new File(directory, "app.js.gz").delete());
+            send(socket, "/static/app.js", "Accept-Encoding: gzip\r\n");
+            head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 200"));
+            assertFalse(head.contains("content-encoding"));
+            assertEquals(new String(readFully(socket.getInputStream(), contentLength(head)), StandardCharsets.US_ASCII), SCRIPT);
+        }
+    }
+
+    @Test
+    public void testGzipSidecar_Revalidated() throws Exception {
+        root.setRevalidateInterval(0);
+        try (Socket socket = connect(server)) {
+            send(socket, "/static/plain.txt", "Accept-Encoding: gzip\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertFalse(head.contains("content-encoding"));
+            readFully(socket.getInputStream(), contentLength(head));
+
+            // the sidecar which is created later is picked up.
+            File plain = new File(directory, "plain.txt");
+            File gzip = new File(directory, "plain.txt.gz");
+            Files.write(gzip.toPath(), gzip("plain"));
+            gzip.setLastModified(plain.lastModified() + 1000);
+            send(socket, "/static/plain.txt", "Accept-Encoding: gzip\r\n");
+            head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.contains("content-encoding:gzip"));
+            byte[] body = readFully(socket.getInputStream(), contentLength(head));
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                assertEquals(new String(readFully(input, 5), StandardCharsets.US_ASCII), "plain");
+            }
+        }
+    }
+
+    private static byte[] gzip(String content) throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+            output.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,137 @@
+package com.dalcomlab.sattang.server;
+
+import com.dalcomlab.sattang.protocol.http.CompressionOptions;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static com.dalcomlab.sattang.server.ServerTestSupport.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpServerCompressionTest {
+    private final CompressionOptions compression = new CompressionOptions();
+    private HttpServer server;
+    private String text;
+
+    @Before
+    public void setUp() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            builder.append("line ").append(i).append(" of the compressible text.\n");
+        }
+        text = builder.toString();
+
+        server = new HttpServer("127.0.0.1", 0);
+        server.handle("/text", (request, response) -> {
+            try {
+                byte[] body = text.getBytes(StandardCharsets.US_ASCII);
+                response.addHeader(HttpHeader.CONTENT_TYPE, "text/plain; charset=us-ascii");
+                response.addHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length));
+                response.addHeader(HttpHeader.ETAG, "\"text\"");
+                OutputStream output = response.getOutputStream();
+                output.write(body, 0, body.length / 2);
+                output.write(body, body.length / 2, body.length - body.length / 2);
+                output.flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        server.handle("/small", (request, response) -> {
+            try {
+                response.addHeader(HttpHeader.CONTENT_TYPE, "text/plain");
+                response.addHeader(HttpHeader.CONTENT_LENGTH, "5");
+                OutputStream output = response.getOutputStream();
+                output.write("small".getBytes(StandardCharsets.US_ASCII));
+                output.flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        ServerOptions options = new ServerOptions();
+        options.setCompression(compression);
+        start(server, options);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testCompression_Gzip() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/text", "Accept-Encoding: gzip, deflate\r\n");
+            InputStream input = socket.getInputStream();
+            String head = readHead(input).toLowerCase();
+            assertTrue(head.contains("content-encoding:gzip"));
+            assertTrue(head.contains("vary:accept-encoding"));
+            assertTrue(head.contains("transfer-encoding:chunked"));
+            assertTrue(head.contains("etag:w/\"text\""));
+            assertFalse(head.contains("content-length"));
+
+            byte[] body = readChunked(input);
+            assertTrue(body.length < text.length() / 4);
+            assertEquals(gunzip(body), text);
+
+            // the response without the Accept-Encoding header is not compressed.
+            send(socket, "/text", "");
+            head = readHead(input).toLowerCase();
+            assertFalse(head.contains("content-encoding"));
+            assertTrue(head.contains("content-length:" + text.length()));
+            assertEquals(new String(readFully(input, text.length()), StandardCharsets.US_ASCII), text);
+        }
+    }
+
+    @Test
+    public void testCompression_MinSize() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/small", "Accept-Encoding: gzip\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertFalse(head.contains("content-encoding"));
+            assertEquals(new String(readFully(socket.getInputStream(), 5), StandardCharsets.US_ASCII), "small");
+        }
+    }
+
+    @Test
+    public void testCompression_Level() throws Exception {
+        try (Socket socket = connect(server)) {
+
+            // the level is applied to the next responses.
+            compression.setLevel(0);
+            send(socket, "/text", "Accept-Encoding: gzip\r\n");
+            readHead(socket.getInputStream());
+            byte[] stored = readChunked(socket.getInputStream());
+            assertTrue(stored.length > text.length());
+            assertEquals(gunzip(stored), text);
+
+            compression.setLevel(9);
+            send(socket, "/text", "Accept-Encoding: gzip\r\n");
+            readHead(socket.getInputStream());
+            assertTrue(readChunked(socket.getInputStream()).length < text.length() / 4);
+        }
+    }
+
+    private static String gunzip(byte[] body) throws Exception {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                output.write(buffer, 0, n);
+            }
+            return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+}
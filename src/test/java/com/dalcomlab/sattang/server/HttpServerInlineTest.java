@@ -0,0 +1,109 @@
+package com.dalcomlab.sattang.server;
+
+import com.dalcomlab.sattang.net.io.channel.SocketOptions;
+import com.dalcomlab.sattang.protocol.HttpResponse;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.dalcomlab.sattang.server.ServerTestSupport.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpServerInlineTest {
+    private static final int LARGE = 8 * 1024 * 1024;
+    private final byte[] large = new byte[LARGE];
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        Arrays.fill(large, (byte) 'x');
+        server = new HttpServer("127.0.0.1", 0);
+        server.handle("/large", (request, response) -> respond(response, large), ExecutionMode.INLINE);
+        server.handle("/echo", (request, response) -> {
+            try {
+                byte[] body = readFully(request.getInputStream(), (int) request.getContentLength());
+                respond(response, body);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, ExecutionMode.INLINE);
+        server.handle("/", (request, response) -> respond(response, "ok".getBytes(StandardCharsets.US_ASCII)), ExecutionMode.INLINE);
+
+        ServerOptions options = new ServerOptions();
+        // one event loop serves all connections.
+        options.setEventLoopCount(1);
+        SocketOptions socketOptions = SocketOptions.defaults();
+        socketOptions.setSendBufferSize(16 * 1024);
+        options.setSocketOptions(socketOptions);
+        start(server, options);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testInline_SlowReader() throws Exception {
+        try (Socket slow = new Socket()) {
+            slow.setReceiveBufferSize(16 * 1024);
+            slow.connect(new InetSocketAddress("127.0.0.1", server.getLocalAddress().getPort()));
+            slow.setSoTimeout(5000);
+            send(slow, "/large");
+            // the slow reader does not read the response yet.
+            Thread.sleep(200);
+
+            try (Socket socket = connect(server)) {
+                send(socket, "/");
+                assertTrue(receive(socket).endsWith("ok"));
+            }
+
+            InputStream input = slow.getInputStream();
+            String head = readHead(input);
+            assertEquals(LARGE, contentLength(head));
+            assertArrayEquals(large, readFully(input, LARGE));
+
+            // the connection is kept alive after the rest of the response.
+            send(slow, "/");
+            assertTrue(receive(slow).endsWith("ok"));
+        }
+    }
+
+    @Test
+    public void testInline_SlowBody() throws Exception {
+        try (Socket slow = connect(server)) {
+            // the body is not arrived when the header block is decoded.
+            write(slow, "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nhe");
+            Thread.sleep(200);
+
+            try (Socket socket = connect(server)) {
+                send(socket, "/");
+                assertTrue(receive(socket).endsWith("ok"));
+            }
+
+            write(slow, "llo");
+            assertTrue(receive(slow).endsWith("hello"));
+        }
+    }
+
+    private static void respond(HttpResponse response, byte[] body) {
+        try {
+            response.addHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length));
+            OutputStream output = response.getOutputStream();
+            output.write(body);
+            output.flush();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
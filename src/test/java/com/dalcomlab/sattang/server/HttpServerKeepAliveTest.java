@@ -0,0 +1,160 @@
+package com.dalcomlab.sattang.server;
+
+import com.dalcomlab.sattang.protocol.HttpResponse;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static com.dalcomlab.sattang.server.ServerTestSupport.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpServerKeepAliveTest {
+    private final ServerOptions options = new ServerOptions();
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new HttpServer("127.0.0.1", 0);
+        server.handle("/", (request, response) -> respond(response, "ok", true));
+        server.handle("/close", (request, response) -> {
+            response.addHeader(HttpHeader.CONNECTION, "close");
+            respond(response, "bye", true);
+        });
+        server.handle("/stream", (request, response) -> respond(response, "stream", false));
+
+        options.setMaxKeepAliveRequests(3);
+        start(server, options);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testKeepAlive_Sequential() throws Exception {
+        try (Socket socket = connect(server)) {
+            for (int i = 0; i < 2; i++) {
+                send(socket, "/");
+                String response = receive(socket);
+                assertTrue(response.startsWith("HTTP/1.1 200"));
+                assertFalse(response.toLowerCase().contains("connection:close"));
+                assertTrue(response.endsWith("ok"));
+            }
+        }
+    }
+
+    @Test
+    public void testKeepAlive_RequestClose() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/", "Connection: close\r\n");
+            String response = receive(socket);
+            assertTrue(response.toLowerCase().contains("connection:close"));
+            assertTrue(response.endsWith("ok"));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testKeepAlive_HandlerClose() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/close");
+            String response = receive(socket);
+            assertTrue(response.toLowerCase().contains("connection:close"));
+            assertTrue(response.endsWith("bye"));
+            // the connection is closed without waiting for the keep-alive timeout.
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testKeepAlive_Http10() throws Exception {
+        try (Socket socket = connect(server)) {
+            write(socket, "GET / HTTP/1.0\r\n\r\n");
+            assertTrue(receive(socket).endsWith("ok"));
+            assertEquals(-1, socket.getInputStream().read());
+        }
+
+        try (Socket socket = connect(server)) {
+            for (int i = 0; i < 2; i++) {
+                write(socket, "GET / HTTP/1.0\r\nConnection: keep-alive\r\n\r\n");
+                String response = receive(socket);
+                assertTrue(response.toLowerCase().contains("connection:keep-alive"));
+                assertTrue(response.endsWith("ok"));
+            }
+        }
+    }
+
+    @Test
+    public void testKeepAlive_Http10WithoutLength() throws Exception {
+        try (Socket socket = connect(server)) {
+            write(socket, "GET /stream HTTP/1.0\r\nConnection: keep-alive\r\n\r\n");
+            InputStream input = socket.getInputStream();
+            String head = readHead(input).toLowerCase();
+            assertFalse(head.contains("transfer-encoding"));
+            assertFalse(head.contains("keep-alive"));
+            assertTrue(head.contains("connection:close"));
+
+            // the end of the body is the end of the connection.
+            assertEquals("stream", readToEnd(input));
+        }
+    }
+
+    @Test
+    public void testKeepAlive_MaxRequests() throws Exception {
+        try (Socket socket = connect(server)) {
+            for (int i = 1; i <= options.getMaxKeepAliveRequests(); i++) {
+                send(socket, "/");
+                String response = receive(socket);
+                assertEquals(i == options.getMaxKeepAliveRequests(), response.toLowerCase().contains("connection:close"));
+            }
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void testKeepAlive_SkipBody() throws Exception {
+        try (Socket socket = connect(server)) {
+            // the handler does not read the body, which is skipped before the next request.
+            write(socket, "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 11\r\n\r\nhello world");
+            assertTrue(receive(socket).endsWith("ok"));
+
+            send(socket, "/");
+            String response = receive(socket);
+            assertTrue(response.startsWith("HTTP/1.1 200"));
+            assertTrue(response.endsWith("ok"));
+        }
+    }
+
+    private static void respond(HttpResponse response, String body, boolean length) {
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+            if (length) {
+                response.addHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(bytes.length));
+            }
+            OutputStream output = response.getOutputStream();
+            output.write(bytes);
+            output.flush();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String readToEnd(InputStream input) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int b;
+        while ((b = input.read()) >= 0) {
+            output.write(b);
+        }
+        return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
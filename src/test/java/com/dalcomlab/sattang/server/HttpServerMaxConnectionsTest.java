@@ -0,0 +1,84 @@
+package com.dalcomlab.sattang.server;
+
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static com.dalcomlab.sattang.server.ServerTestSupport.*;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpServerMaxConnectionsTest {
+    private HttpServer server;
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testMaxConnections_Backlog() throws Exception {
+        startServer(false);
+
+        try (Socket first = connect(server)) {
+            assertTrue(request(first).startsWith("HTTP/1.1 200"));
+
+            try (Socket second = connect(server)) {
+                // the second connection waits in the backlog.
+                second.setSoTimeout(300);
+                send(second, "/");
+                try {
+                    second.getInputStream().read();
+                    fail();
+                } catch (SocketTimeoutException expected) {
+                }
+
+                // the second connection is accepted after the first is closed.
+                first.close();
+                second.setSoTimeout(5000);
+                assertTrue(receive(second).startsWith("HTTP/1.1 200"));
+            }
+        }
+    }
+
+    @Test
+    public void testMaxConnections_Shed() throws Exception {
+        startServer(true);
+
+        try (Socket first = connect(server)) {
+            assertTrue(request(first).startsWith("HTTP/1.1 200"));
+
+            try (Socket second = connect(server)) {
+                assertTrue(receive(second).startsWith("HTTP/1.1 503"));
+            }
+        }
+    }
+
+    private void startServer(boolean shed) throws Exception {
+        server = new HttpServer("127.0.0.1", 0);
+        server.handle("/", (request, response) -> {
+            try {
+                response.addHeader(HttpHeader.CONTENT_LENGTH, "2");
+                OutputStream output = response.getOutputStream();
+                output.write("ok".getBytes());
+                output.flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        ServerOptions options = new ServerOptions();
+        options.setMaxConnections(1);
+        options.setShedConnections(shed);
+        start(server, options);
+    }
+
+    private static String request(Socket socket) throws Exception {
+        send(socket, "/");
+        return receive(socket);
+    }
+}
@@ -0,0 +1,206 @@
+package com.dalcomlab.sattang.server;
+
+import com.dalcomlab.sattang.protocol.http.HttpDateFormat;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import com.dalcomlab.sattang.resource.MappedFileCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static com.dalcomlab.sattang.server.ServerTestSupport.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpServerSendFileTest {
+    private final MappedFileCache fileCache = new MappedFileCache(1024 * 1024, 4 * 1024 * 1024);
+    private HttpServer server;
+    private File file;
+    private File small;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        content = new byte[3 * 1024 * 1024 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31 + (i >> 8));
+        }
+        file = File.createTempFile("sendfile", ".bin");
+        Files.write(file.toPath(), content);
+        small = File.createTempFile("sendfile", ".txt");
+        Files.write(small.toPath(), "small file".getBytes(StandardCharsets.US_ASCII));
+
+        server = new HttpServer("127.0.0.1", 0);
+        server.handle("/file", (request, response) -> {
+            try {
+                response.sendFile(file.getPath());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        server.handle("/small", (request, response) -> {
+            try {
+                response.sendFile(small.getPath());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        server.handle("/chunked", (request, response) -> {
+            try {
+                response.addHeader(HttpHeader.TRANSFER_ENCODING, "chunked");
+                response.sendFile(file.getPath());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        ServerOptions options = new ServerOptions();
+        options.setFileCache(fileCache);
+        start(server, options);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        file.delete();
+        small.delete();
+    }
+
+    @Test
+    public void testSendFile_ContentLength() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/file");
+            String head = readHead(socket.getInputStream());
+            assertTrue(head.toLowerCase().contains("content-length:" + content.length));
+
+            byte[] body = readFully(socket.getInputStream(), content.length);
+            assertTrue(Arrays.equals(body, content));
+        }
+    }
+
+    @Test
+    public void testSendFile_Mapped() throws Exception {
+        try (Socket socket = connect(server)) {
+            for (int i = 0; i < 2; i++) {
+                send(socket, "/small");
+                String head = readHead(socket.getInputStream());
+                assertTrue(head.toLowerCase().contains("content-length:10"));
+                byte[] body = readFully(socket.getInputStream(), 10);
+                assertEquals(new String(body, StandardCharsets.US_ASCII), "small file");
+            }
+        }
+        // the large file is not mapped, and the small file is mapped once.
+        assertEquals(fileCache.size(), 1);
+        assertEquals(fileCache.getHitCount(), 1);
+    }
+
+    @Test
+    public void testSendFile_Chunked() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/chunked");
+            InputStream input = socket.getInputStream();
+            String head = readHead(input);
+            assertTrue(head.toLowerCase().contains("transfer-encoding:chunked"));
+
+            // the chunk filter sees the bytes through the pooled buffer.
+            assertTrue(Arrays.equals(readChunked(input), content));
+        }
+    }
+
+    @Test
+    public void testSendFile_Range() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/file", "Range: bytes=100000-299999\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 206"));
+            assertTrue(head.contains("content-range:bytes 100000-299999/" + content.length));
+            assertTrue(head.contains("content-length:200000"));
+
+            byte[] body = readFully(socket.getInputStream(), 200000);
+            assertTrue(Arrays.equals(body, Arrays.copyOfRange(content, 100000, 300000)));
+
+            // the mapped file is sliced, and the connection is kept alive.
+            send(socket, "/small", "Range: bytes=-4\r\n");
+            head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.contains("content-range:bytes 6-9/10"));
+            assertEquals(new String(readFully(socket.getInputStream(), 4), StandardCharsets.US_ASCII), "file");
+        }
+    }
+
+    @Test
+    public void testSendFile_MultipleRanges() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/small", "Range: bytes=0-4,6-9\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 206"));
+            assertTrue(head.contains("multipart/byteranges; boundary="));
+
+            int length = contentLength(head);
+            String body = new String(readFully(socket.getInputStream(), length), StandardCharsets.US_ASCII);
+            assertEquals(body.length(), length);
+            assertTrue(body.contains("Content-Range: bytes 0-4/10\r\n\r\nsmall\r\n"));
+            assertTrue(body.contains("Content-Range: bytes 6-9/10\r\n\r\nfile\r\n"));
+            assertTrue(body.endsWith("--\r\n"));
+        }
+    }
+
+    @Test
+    public void testSendFile_RangeNotSatisfiable() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/small", "Range: bytes=10-\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 416"));
+            assertTrue(head.contains("content-range:bytes */10"));
+        }
+    }
+
+    @Test
+    public void testSendFile_IfRange() throws Exception {
+        try (Socket socket = connect(server)) {
+            // the validator does not match, so the whole file is sent.
+            send(socket, "/small", "Range: bytes=0-4\r\nIf-Range: \"stale\"\r\n");
+            String head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 200"));
+            assertTrue(head.contains("content-length:10"));
+            assertEquals(new String(readFully(socket.getInputStream(), 10), StandardCharsets.US_ASCII), "small file");
+
+            String date = HttpDateFormat.formatDate(small.lastModified());
+            send(socket, "/small", "Range: bytes=0-4\r\nIf-Range: " + date + "\r\n");
+            head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 206"));
+            assertEquals(new String(readFully(socket.getInputStream(), 5), StandardCharsets.US_ASCII), "small");
+        }
+    }
+
+    @Test
+    public void testSendFile_NotModified() throws Exception {
+        try (Socket socket = connect(server)) {
+            send(socket, "/small");
+            String head = readHead(socket.getInputStream());
+            readFully(socket.getInputStream(), 10);
+            int index = head.toLowerCase().indexOf("etag:");
+            String etag = head.substring(index + 5, head.indexOf("\r\n", index)).trim();
+            assertTrue(etag.startsWith("\""));
+            assertTrue(head.toLowerCase().contains("last-modified:"));
+
+            // the response ends with the header, so the connection can be reused.
+            send(socket, "/small", "If-None-Match: \"other\", W/" + etag + "\r\n");
+            head = readHead(socket.getInputStream()).toLowerCase();
+            assertTrue(head.startsWith("http/1.1 304"));
+            assertTrue(!head.contains("content-length") && !head.contains("transfer-encoding"));
+
+            send(socket, "/small", "If-Modified-Since: " + HttpDateFormat.formatDate(small.lastModified()) + "\r\n");
+            assertTrue(readHead(socket.getInputStream()).startsWith("HTTP/1.1 304"));
+
+            send(socket, "/small", "If-Modified-Since: " + HttpDateFormat.formatDate(small.lastModified() - 60000) + "\r\n");
+            assertTrue(readHead(socket.getInputStream()).startsWith("HTTP/1.1 200"));
+            assertEquals("small file", new String(readFully(socket.getInputStream(), 10), StandardCharsets.US_ASCII));
+        }
+    }
+}
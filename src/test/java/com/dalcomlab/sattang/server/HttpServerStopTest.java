@@ -0,0 +1,83 @@
+package com.dalcomlab.sattang.server;
+
+import com.dalcomlab.sattang.protocol.HttpResponse;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.dalcomlab.sattang.server.ServerTestSupport.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpServerStopTest {
+    private final CountDownLatch handling = new CountDownLatch(1);
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new HttpServer("127.0.0.1", 0);
+        server.handle("/", (request, response) -> respond(response, "ok"));
+        server.handle("/slow", (request, response) -> {
+            handling.countDown();
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(response, "done");
+        });
+
+        start(server, new ServerOptions());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testStop_Drain() throws Exception {
+        try (Socket idle = connect(server);
+             Socket active = connect(server)) {
+
+            send(idle, "/");
+            assertTrue(receive(idle).endsWith("ok"));
+
+            send(active, "/slow");
+            assertTrue(handling.await(5, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+            server.stop(5, TimeUnit.SECONDS);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // the in-flight request is completed with the Connection: close header.
+            String response = receive(active);
+            assertTrue(response.toLowerCase().contains("connection:close"));
+            assertTrue(response.endsWith("done"));
+            assertTrue(elapsed < 5000);
+
+            // the idle keep-alive connection is closed.
+            assertEquals(idle.getInputStream().read(), -1);
+            assertEquals(server.getConnectionCount(), 0);
+        }
+    }
+
+    private static void respond(HttpResponse response, String body) {
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+            response.addHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(bytes.length));
+            OutputStream output = response.getOutputStream();
+            output.write(bytes);
+            output.flush();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.dalcomlab.sattang.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the servers of the tests and reads their responses.
+ */
+public final class ServerTestSupport {
+    private static final int TIMEOUT = 5000;
+
+    private ServerTestSupport() {
+    }
+
+    /**
+     * Starts the server on a daemon thread, and waits until it accepts the
+     * connections. The server should listen on the port 0.
+     */
+    public static void start(HttpServer server, ServerOptions options) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        server.listen(new ServerListener() {
+            @Override
+            public void onStart() {
+                started.countDown();
+            }
+        });
+
+        // the start method blocks until the server is stopped.
+        Thread thread = new Thread(() -> {
+            try {
+                server.start(options);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+
+        if (!started.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("the server is not started.");
+        }
+    }
+
+    public static Socket connect(HttpServer server) throws Exception {
+        Socket socket = new Socket("127.0.0.1", server.getLocalAddress().getPort());
+        socket.setSoTimeout(TIMEOUT);
+        return socket;
+    }
+
+    public static void send(Socket socket, String uri) throws Exception {
+        send(socket, uri, "");
+    }
+
+    public static void send(Socket socket, String uri, String headers) throws Exception {
+        write(socket, "GET " + uri + " HTTP/1.1\r\nHost: localhost\r\n" + headers + "\r\n");
+    }
+
+    public static void write(Socket socket, String request) throws Exception {
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static String readHead(InputStream input) throws Exception {
+        StringBuilder head = new StringBuilder();
+        while (!head.toString().endsWith("\r\n\r\n")) {
+            int b = input.read();
+            if (b < 0) {
+                break;
+            }
+            head.append((char) b);
+        }
+        return head.toString();
+    }
+
+    public static String readLine(InputStream input) throws Exception {
+        StringBuilder line = new StringBuilder();
+        while (!line.toString().endsWith("\r\n")) {
+            int b = input.read();
+            if (b < 0) {
+                break;
+            }
+            line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    public static byte[] readFully(InputStream input, int length) throws Exception {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int n = input.read(bytes, offset, length - offset);
+            if (n < 0) {
+                break;
+            }
+            offset += n;
+        }
+        return Arrays.copyOf(bytes, offset);
+    }
+
+    public static byte[] readChunked(InputStream input) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            int size = Integer.parseInt(readLine(input).trim(), 16);
+            if (size == 0) {
+                readLine(input);
+                break;
+            }
+            body.write(readFully(input, size));
+            readLine(input);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Returns the value of the Content-Length header in the given head, or -1.
+     */
+    public static int contentLength(String head) {
+        String lower = head.toLowerCase();
+        int index = lower.indexOf("content-length:");
+        if (index < 0) {
+            return -1;
+        }
+        return Integer.parseInt(lower.substring(index + 15, lower.indexOf("\r\n", index)).trim());
+    }
+
+    /**
+     * Reads the head and the body of the response which has the Content-Length
+     * header.
+     */
+    public static String receive(Socket socket) throws Exception {
+        InputStream input = socket.getInputStream();
+        String head = readHead(input);
+        int length = contentLength(head);
+        if (length <= 0) {
+            return head;
+        }
+        return head + new String(readFully(input, length), StandardCharsets.US_ASCII);
+    }
+}
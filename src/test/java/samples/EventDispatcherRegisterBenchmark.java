@@ -0,0 +1,155 @@
+package samples;
+
+import com.dalcomlab.sattang.concurrent.MpscArrayQueue;
+import com.dalcomlab.sattang.net.event.EventExecutor;
+import com.dalcomlab.sattang.net.event.SocketEvent;
+import com.dalcomlab.sattang.net.event.nio.NioEventDispatcher;
+
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compares the registration path of the event loop before and after the ring
+ * queue, with the producers registering the events as fast as possible. The
+ * number of the producers is the first argument (4 by default); use fewer
+ * producers than the processors, or the producers preempted between the
+ * claim and the publication of a slot stall the consumer of the ring.
+ * <ul>
+ *     <li>linked : the linked queue and a selector wakeup per event (the previous path).</li>
+ *     <li>ring : the ring queue and the coalesced wakeup (the current path).</li>
+ *     <li>dispatcher : {@link NioEventDispatcher#register} with its wakeup count.</li>
+ * </ul>
+ */
+public class EventDispatcherRegisterBenchmark {
+    private static int PRODUCERS = 4;
+    private static final int EVENTS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            PRODUCERS = Integer.parseInt(args[0]);
+        }
+        for (int round = 0; round < 3; round++) {
+            System.out.println("round " + round);
+            runQueue("linked", false);
+            runQueue("ring  ", true);
+            runDispatcher();
+        }
+    }
+
+    /**
+     * Runs a consumer which selects and polls like the event loop.
+     *
+     * @param name
+     * @param ring
+     * @throws Exception
+     */
+    private static void runQueue(String name, boolean ring) throws Exception {
+        final Selector selector = Selector.open();
+        final Queue<Object> linked = new ConcurrentLinkedQueue<>();
+        final MpscArrayQueue<Object> array = new MpscArrayQueue<>(1024);
+        final AtomicBoolean wakeupPending = new AtomicBoolean();
+        final Object event = new Object();
+        final int total = PRODUCERS * EVENTS;
+
+        Thread consumer = new Thread(() -> {
+            try {
+                int received = 0;
+                while (received < total) {
+                    wakeupPending.set(false);
+                    while ((ring ? array.poll() : linked.poll()) != null) {
+                        received++;
+                    }
+                    if (ring ? array.isEmpty() : linked.isEmpty()) {
+                        selector.select(10);
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        consumer.start();
+
+        long start = System.nanoTime();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < EVENTS; i++) {
+                    if (ring) {
+                        while (!array.offer(event)) {
+                            Thread.yield();
+                        }
+                        if (wakeupPending.compareAndSet(false, true)) {
+                            selector.wakeup();
+                        }
+                    } else {
+                        linked.offer(event);
+                        selector.wakeup();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        consumer.join();
+        report(name, start, total, -1);
+        selector.close();
+    }
+
+    /**
+     * @throws Exception
+     */
+    private static void runDispatcher() throws Exception {
+        final NioEventDispatcher dispatcher = new NioEventDispatcher(null);
+        new Thread(dispatcher::start).start();
+        while (dispatcher.getThread() == null) {
+            Thread.sleep(1);
+        }
+
+        // the events of a closed channel are dropped when they are registered.
+        final Pipe pipe = Pipe.open();
+        pipe.source().close();
+        pipe.sink().close();
+        final EventExecutor<SelectableChannel> event = new EventExecutor<SelectableChannel>() {
+            @Override
+            public SocketEvent event() {
+                return SocketEvent.READ;
+            }
+
+            @Override
+            public SelectableChannel channel() {
+                return pipe.source();
+            }
+        };
+
+        final CountDownLatch done = new CountDownLatch(PRODUCERS);
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < EVENTS; i++) {
+                    dispatcher.register(event);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        while (dispatcher.getPendingTaskCount() > 0) {
+            Thread.yield();
+        }
+        report("dispatcher", start, PRODUCERS * EVENTS, dispatcher.getWakeups().get());
+        dispatcher.stop();
+    }
+
+    private static void report(String name, long start, int total, long wakeups) {
+        long elapsed = System.nanoTime() - start;
+        System.out.println("  " + name + " : " + (total * 1000L / Math.max(TimeUnit.NANOSECONDS.toMicros(elapsed), 1))
+                + " events/ms" + (wakeups >= 0 ? ", wakeups = " + wakeups : ""));
+    }
+}
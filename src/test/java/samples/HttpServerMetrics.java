@@ -0,0 +1,35 @@
+package samples;
+
+import com.dalcomlab.sattang.metrics.PrometheusHandler;
+import com.dalcomlab.sattang.protocol.HttpRequest;
+import com.dalcomlab.sattang.protocol.HttpResponse;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import com.dalcomlab.sattang.server.HttpServer;
+import com.dalcomlab.sattang.server.ServerOptions;
+
+import java.io.OutputStream;
+
+public class HttpServerMetrics {
+
+    public static void main(String[] args) throws Exception {
+        HttpServer server = new HttpServer("0.0.0.0", 8080);
+        server.handle("/", (request, response) -> sendText(request, response, "Hello World!"));
+        server.handle("/metrics", new PrometheusHandler(server.getMetrics().getRegistry()));
+
+        server.start(new ServerOptions());
+    }
+
+    public static void sendText(HttpRequest request, HttpResponse response, String text) {
+        try {
+            response.addHeader(HttpHeader.CONTENT_TYPE, "text/plain");
+            response.addHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(text.getBytes().length));
+            OutputStream output = response.getOutputStream();
+            if (output != null) {
+                output.write(text.getBytes());
+                output.flush();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package samples;
+
+import com.dalcomlab.sattang.net.io.channel.SocketOptions;
+import com.dalcomlab.sattang.protocol.http.HttpHeader;
+import com.dalcomlab.sattang.server.HttpServer;
+import com.dalcomlab.sattang.server.ServerOptions;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the small chunked responses over a keep-alive
+ * connection, with the Nagle's algorithm enabled (the system default) and
+ * disabled (the default profile of {@link ServerOptions}).
+ * <p>
+ * A chunked response is written in two segments, the head with the first
+ * chunk and the last chunk. With the Nagle's algorithm the second segment
+ * waits for the delayed acknowledgement of the client.
+ */
+public class HttpServerSocketOptionsLatency {
+    private static final int REQUESTS = 200;
+    private static final byte[] REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        SocketOptions nagle = new SocketOptions();
+        nagle.setTcpNodelay(false);
+        run("TCP_NODELAY off", 8080, nagle);
+
+        SocketOptions noDelay = SocketOptions.defaults();
+        noDelay.setTcpQuickAck(true);
+        run("TCP_NODELAY on ", 8081, noDelay);
+    }
+
+    private static void run(String name, int port, SocketOptions socketOptions) throws Exception {
+        HttpServer server = new HttpServer("127.0.0.1", port);
+        server.handle("/", (request, response) -> {
+            try {
+                response.addHeader(HttpHeader.CONTENT_TYPE, "text/plain");
+                OutputStream output = response.getOutputStream();
+                output.write("hello".getBytes());
+                output.flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        ServerOptions options = new ServerOptions();
+        options.setSocketOptions(socketOptions);
+        options.setMaxKeepAliveRequests(0);
+        Thread thread = new Thread(() -> {
+            try {
+                server.start(options);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        Thread.sleep(500);
+
+        long[] latencies = new long[REQUESTS];
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream output = socket.getOutputStream();
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            for (int i = 0; i < REQUESTS; i++) {
+                long start = System.nanoTime();
+                output.write(REQUEST);
+                output.flush();
+                readResponse(input, buffer);
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        server.stop();
+
+        Arrays.sort(latencies);
+        System.out.println(name + " : p50 = " + toMicros(latencies[REQUESTS / 2])
+                + "us, p99 = " + toMicros(latencies[REQUESTS * 99 / 100])
+                + "us, max = " + toMicros(latencies[REQUESTS - 1]) + "us");
+    }
+
+    private static void readResponse(InputStream input, byte[] buffer) throws Exception {
+        int length = 0;
+        while (!endsWith(buffer, length, LAST_CHUNK)) {
+            int read = input.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                throw new IllegalStateException("the connection is closed.");
+            }
+            length += read;
+        }
+    }
+
+    private static boolean endsWith(byte[] buffer, int length, byte[] suffix) {
+        if (length < suffix.length) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            if (buffer[length - suffix.length + i] != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}